@@ -2,9 +2,11 @@ package net.sacredlabyrinth.phaed.simpleclans;
 
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
@@ -632,6 +634,32 @@ public class ChatBlock {
         }
     }
 
+    /**
+     * Outputs a message to many users, wrapping and coloring it only once
+     *
+     * @param receivers the receivers, offline ones are skipped
+     * @param msg
+     */
+    public static void sendMessage(Collection<ClanPlayer> receivers, String msg) {
+        if (receivers.isEmpty()) {
+            return;
+        }
+
+        String[] message = colorize(wordWrap(msg));
+
+        for (ClanPlayer cp : receivers) {
+            Player receiver = cp.toPlayer();
+
+            if (receiver == null) {
+                continue;
+            }
+
+            for (String out : message) {
+                receiver.sendMessage(out);
+            }
+        }
+    }
+
     /**
      * Send blank lie
      *
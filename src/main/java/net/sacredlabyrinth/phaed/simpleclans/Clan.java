@@ -3,6 +3,8 @@ package net.sacredlabyrinth.phaed.simpleclans;
 import net.md_5.bungee.api.chat.HoverEvent;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.sacredlabyrinth.phaed.simpleclans.events.*;
+import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanDAO.Column;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -19,6 +21,8 @@ import java.io.Serializable;
 import java.sql.Timestamp;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -38,10 +42,18 @@ public class Clan implements Serializable, Comparable<Clan> {
     private long founded;
     private long lastUsed;
     private String capeUrl;
-    private List<String> allies = new ArrayList<>();
-    private List<String> rivals = new ArrayList<>();
-    private List<String> bb = new ArrayList<>();
-    private List<String> members = new ArrayList<>();
+    // copy-on-write, so readers on other threads always see a complete set
+    private volatile Set<String> allies = Collections.emptySet();
+    private volatile Set<String> rivals = Collections.emptySet();
+    private volatile List<String> bb = Collections.emptyList();
+    // copy-on-write in join order, so readers on other threads always see a complete map
+    private volatile Map<UUID, ClanPlayer> members = Collections.emptyMap();
+    private final Set<UUID> onlineMembers = ConcurrentHashMap.newKeySet();
+    // changed under the clan's lock, read without it
+    private volatile int totalRival;
+    private volatile int totalNeutral;
+    private volatile int totalCivilian;
+    private volatile int totalDeaths;
     private HashMap<String, Clan> warringClans = new HashMap<>();
     private int homeX = 0;
     private int homeY = 0;
@@ -50,7 +62,9 @@ public class Clan implements Serializable, Comparable<Clan> {
     private boolean allowWithdraw = false;
     private boolean allowDeposit = true;
     private boolean feeEnabled;
-    private List<Rank> ranks = new ArrayList<>();
+    private volatile List<Rank> ranks = new ArrayList<>();
+    private volatile String packedRanks;
+    private final AtomicInteger dirtyColumns = new AtomicInteger();
 
     /**
      *
@@ -160,6 +174,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setName(String name) {
         this.name = name;
+        markDirty(Column.NAME);
     }
     
     /**
@@ -178,6 +193,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
 	public void setDescription(String description) {
 		this.description = description;
+		markDirty(Column.DESCRIPTION);
 	}
 
 	/**
@@ -190,6 +206,7 @@ public class Clan implements Serializable, Comparable<Clan> {
             fee = 0;
         }
         this.fee = fee;
+        markDirty(Column.FEE_VALUE);
     }
     
     /**
@@ -217,6 +234,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setBalance(double balance) {
         this.balance = balance;
+        markDirty(Column.BALANCE);
     }
 
     /**
@@ -270,6 +288,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setLastUsed(long lastUsed) {
         this.lastUsed = lastUsed;
+        markDirty(Column.LAST_USED);
     }
 
     /**
@@ -288,6 +307,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setFriendlyFire(boolean friendlyFire) {
         this.friendlyFire = friendlyFire;
+        markDirty(Column.FRIENDLY_FIRE);
     }
 
     /**
@@ -297,7 +317,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return confirmation
      */
     public boolean isMember(Player player) {
-    	return this.members.contains(player.getUniqueId().toString());
+    	return this.members.containsKey(player.getUniqueId());
     }
 
     /**
@@ -307,7 +327,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return confirmation
      */
     public boolean isMember(UUID playerUniqueId) {
-        return this.members.contains(playerUniqueId.toString());
+        return this.members.containsKey(playerUniqueId);
     }
 
 
@@ -317,7 +337,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the bb
      */
     public List<String> getBb() {
-        return Collections.unmodifiableList(bb);
+        return bb;
     }
 
     /**
@@ -326,19 +346,21 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the allies
      */
     public List<String> getAllies() {
-        return Collections.unmodifiableList(allies);
+        return Collections.unmodifiableList(new ArrayList<>(allies));
     }
 
-    private void addAlly(String tag) {
-        allies.add(tag);
+    synchronized void addAlly(String tag) {
+        allies = with(allies, tag);
+        markDirty(Column.PACKED_ALLIES);
     }
 
-    private boolean removeAlly(String ally) {
+    synchronized boolean removeAlly(String ally) {
         if (!allies.contains(ally)) {
             return false;
         }
 
-        allies.remove(ally);
+        allies = without(allies, ally);
+        markDirty(Column.PACKED_ALLIES);
         return true;
     }
 
@@ -367,6 +389,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setFounded(long founded) {
         this.founded = founded;
+        markDirty(Column.FOUNDED);
     }
 
     /**
@@ -385,6 +408,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setColorTag(String colorTag) {
         this.colorTag = Helper.parseColors(colorTag);
+        markDirty(Column.COLOR_TAG);
     }
 
     /**
@@ -404,11 +428,18 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @param msg
      */
     public void addBbWithoutSaving(String msg) {
-        while (bb.size() > SimpleClans.getInstance().getSettingsManager().getBbSize()) {
-            bb.remove(0);
+        addBbWithoutSaving(msg, SimpleClans.getInstance().getSettingsManager().getBbSize());
+    }
+
+    synchronized void addBbWithoutSaving(String msg, int maxSize) {
+        List<String> copy = new ArrayList<>(bb);
+        while (!copy.isEmpty() && copy.size() > maxSize) {
+            copy.remove(0);
         }
 
-        bb.add(System.currentTimeMillis() + "_" + msg);   
+        copy.add(System.currentTimeMillis() + "_" + msg);
+        bb = Collections.unmodifiableList(copy);
+        markDirty(Column.PACKED_BB);
     }
     
     /**
@@ -427,7 +458,10 @@ public class Clan implements Serializable, Comparable<Clan> {
      * Clears the bulletin board
      */
     public void clearBb() {
-        bb.clear();
+        synchronized (this) {
+            bb = Collections.emptyList();
+        }
+        markDirty(Column.PACKED_BB);
         SimpleClans.getInstance().getStorageManager().updateClan(this);
     }
 
@@ -436,17 +470,22 @@ public class Clan implements Serializable, Comparable<Clan> {
      *
      * @param cp
      */
-    public void importMember(ClanPlayer cp) {
-        String uuid;
-		if (cp.getUniqueId() != null) {
-			uuid = cp.getUniqueId().toString();
-		} else {
+    public synchronized void importMember(ClanPlayer cp) {
+		if (cp.getUniqueId() == null) {
 			return;
 		}
-     
-        if (!this.members.contains(uuid)) {
-            this.members.add(uuid);
+
+        // replaces a previous instance of the same player, e.g. reloaded from the database, keeping their position
+        Map<UUID, ClanPlayer> copy = new LinkedHashMap<>(members);
+        ClanPlayer previous = copy.put(cp.getUniqueId(), cp);
+        members = Collections.unmodifiableMap(copy);
+        if (previous != null && previous.getClan() != null) {
+            addToTotals(previous, -1);
+        }
+        if (cp.getClan() != null) {
+            addToTotals(cp, 1);
         }
+        setMemberOnline(cp.getUniqueId(), Bukkit.getPlayer(cp.getUniqueId()) != null);
     }
 
     /**
@@ -454,8 +493,32 @@ public class Clan implements Serializable, Comparable<Clan> {
      *
      * @param playerUniqueId
      */
-    public void removeMember(UUID playerUniqueId) {
-        this.members.remove(playerUniqueId.toString());
+    public synchronized void removeMember(UUID playerUniqueId) {
+        if (!members.containsKey(playerUniqueId)) {
+            onlineMembers.remove(playerUniqueId);
+            return;
+        }
+        Map<UUID, ClanPlayer> copy = new LinkedHashMap<>(members);
+        ClanPlayer removed = copy.remove(playerUniqueId);
+        members = Collections.unmodifiableMap(copy);
+        if (removed != null && removed.getClan() != null) {
+            addToTotals(removed, -1);
+        }
+        onlineMembers.remove(playerUniqueId);
+    }
+
+    /**
+     * Tracks whether a member is online, called when they join or leave the server (used internally)
+     *
+     * @param playerUniqueId the member's UUID
+     * @param online whether they are online
+     */
+    public void setMemberOnline(UUID playerUniqueId, boolean online) {
+        if (online && members.containsKey(playerUniqueId)) {
+            onlineMembers.add(playerUniqueId);
+        } else {
+            onlineMembers.remove(playerUniqueId);
+        }
     }
 
     /**
@@ -473,22 +536,54 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the rivals
      */
     public List<String> getRivals() {
-        return Collections.unmodifiableList(rivals);
+        return Collections.unmodifiableList(new ArrayList<>(rivals));
     }
 
-    private void addRival(String tag) {
-        rivals.add(tag);
+    /**
+     * Get the amount of rivals of the clan
+     *
+     * @return the amount
+     */
+    public int getRivalsCount() {
+        return rivals.size();
     }
 
-    private boolean removeRival(String rival) {
+    /**
+     * Get the amount of allies of the clan
+     *
+     * @return the amount
+     */
+    public int getAlliesCount() {
+        return allies.size();
+    }
+
+    synchronized void addRival(String tag) {
+        rivals = with(rivals, tag);
+        markDirty(Column.PACKED_RIVALS);
+    }
+
+    synchronized boolean removeRival(String rival) {
         if (!rivals.contains(rival)) {
             return false;
         }
 
-        rivals.remove(rival);
+        rivals = without(rivals, rival);
+        markDirty(Column.PACKED_RIVALS);
         return true;
     }
 
+    private static Set<String> with(Set<String> tags, String tag) {
+        Set<String> copy = new LinkedHashSet<>(tags);
+        copy.add(tag);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static Set<String> without(Set<String> tags, String tag) {
+        Set<String> copy = new LinkedHashSet<>(tags);
+        copy.remove(tag);
+        return Collections.unmodifiableSet(copy);
+    }
+
     /**
      * Check if the tag is a rival
      *
@@ -527,6 +622,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setVerified(boolean verified) {
         this.verified = verified;
+        markDirty(Column.VERIFIED);
     }
 
     /**
@@ -545,6 +641,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setCapeUrl(String capeUrl) {
         this.capeUrl = capeUrl;
+        markDirty(Column.CAPE_URL);
     }
 
     /**
@@ -562,7 +659,8 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @param packedBb the packedBb to set
      */
     public void setPackedBb(String packedBb) {
-        this.bb = Helper.fromArray(packedBb.split("[|]"));
+        this.bb = Collections.unmodifiableList(Helper.fromArray(packedBb.split("[|]")));
+        markDirty(Column.PACKED_BB);
     }
 
     /**
@@ -571,7 +669,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the packedAllies
      */
     public String getPackedAllies() {
-        return Helper.toMessage(allies, "|");
+        return String.join("|", allies);
     }
 
     /**
@@ -580,7 +678,8 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @param packedAllies the packedAllies to set
      */
     public void setPackedAllies(String packedAllies) {
-        this.allies = Helper.fromArray(packedAllies.split("[|]"));
+        this.allies = Collections.unmodifiableSet(new LinkedHashSet<>(Helper.fromArray(packedAllies.split("[|]"))));
+        markDirty(Column.PACKED_ALLIES);
     }
 
     /**
@@ -589,7 +688,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the packedRivals
      */
     public String getPackedRivals() {
-        return Helper.toMessage(rivals, "|");
+        return String.join("|", rivals);
     }
 
     /**
@@ -598,7 +697,8 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @param packedRivals the packedRivals to set
      */
     public void setPackedRivals(String packedRivals) {
-        this.rivals = Helper.fromArray(packedRivals.split("[|]"));
+        this.rivals = Collections.unmodifiableSet(new LinkedHashSet<>(Helper.fromArray(packedRivals.split("[|]"))));
+        markDirty(Column.PACKED_RIVALS);
     }
 
     /**
@@ -611,7 +711,7 @@ public class Clan implements Serializable, Comparable<Clan> {
     public String getAllyString(String sep) {
         String out = "";
 
-        for (String allyTag : getAllies()) {
+        for (String allyTag : allies) {
             Clan ally = SimpleClans.getInstance().getClanManager().getClan(allyTag);
 
             if (ally != null) {
@@ -638,7 +738,7 @@ public class Clan implements Serializable, Comparable<Clan> {
     public String getRivalString(String sep) {
         String out = "";
 
-        for (String rivalTag : getRivals()) {
+        for (String rivalTag : rivals) {
             Clan rival = SimpleClans.getInstance().getClanManager().getClan(rivalTag);
 
             if (rival != null) {
@@ -670,9 +770,8 @@ public class Clan implements Serializable, Comparable<Clan> {
     public String getLeadersString(String prefix, String sep) {
         String out = "";
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
                 continue;
             }
 
@@ -702,15 +801,9 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the leaders
      */
     public boolean isLeader(UUID playerUniqueId) {
-        if (isMember(playerUniqueId)) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(playerUniqueId);
-
-            if (cp != null && cp.isLeader()) {
-                return true;
-            }
-        }
+        ClanPlayer cp = members.get(playerUniqueId);
 
-        return false;
+        return cp != null && cp.getClan() != null && cp.isLeader();
     }
 
     /**
@@ -739,9 +832,8 @@ public class Clan implements Serializable, Comparable<Clan> {
     public List<ClanPlayer> getMembers() {
         List<ClanPlayer> out = new ArrayList<>();
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
                 continue;
             }
             out.add(cp);
@@ -756,14 +848,11 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return the members
      */
     public List<ClanPlayer> getOnlineMembers() {
-        List<ClanPlayer> out = new ArrayList<>();
+        List<ClanPlayer> out = new ArrayList<>(onlineMembers.size());
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-            if (cp.toPlayer() != null && cp.toPlayer().isOnline()) {
+        // in join order, like the other member lists
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() != null && onlineMembers.contains(cp.getUniqueId())) {
                 out.add(cp);
             }
         }
@@ -771,6 +860,15 @@ public class Clan implements Serializable, Comparable<Clan> {
         return out;
     }
 
+    /**
+     * Get the amount of online members in the clan
+     *
+     * @return the amount
+     */
+    public int getOnlineMembersCount() {
+        return onlineMembers.size();
+    }
+
     /**
      * Get all leaders in the clan
      *
@@ -779,9 +877,8 @@ public class Clan implements Serializable, Comparable<Clan> {
     public List<ClanPlayer> getLeaders() {
         List<ClanPlayer> out = new ArrayList<>();
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
                 continue;
             }
 
@@ -801,9 +898,8 @@ public class Clan implements Serializable, Comparable<Clan> {
     public List<ClanPlayer> getNonLeaders() {
         List<ClanPlayer> out = new ArrayList<>();
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
                 continue;
             }
 
@@ -825,9 +921,8 @@ public class Clan implements Serializable, Comparable<Clan> {
     public List<ClanPlayer> getAllMembers() {
         List<ClanPlayer> out = new ArrayList<>();
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
                 continue;
             }
 
@@ -867,25 +962,14 @@ public class Clan implements Serializable, Comparable<Clan> {
         if (members.isEmpty()) {
             return 0;
         }
+        checkTotals();
 
-        double totalWeightedKills = 0;
-        int totalDeaths = 0;
-
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-
-            totalWeightedKills += cp.getWeightedKills();
-            totalDeaths += cp.getDeaths();
-        }
-
-        if (totalDeaths == 0) {
-            totalDeaths = 1;
+        int deaths = totalDeaths;
+        if (deaths == 0) {
+            deaths = 1;
         }
 
-        return ((float) totalWeightedKills) / ((float) totalDeaths);
+        return ((float) getTotalWeightedKills()) / ((float) deaths);
     }
 
     /**
@@ -894,21 +978,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public int getTotalDeaths() {
-        int totalDeaths = 0;
-
-        if (members.isEmpty()) {
-            return totalDeaths;
-        }
-
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-
-            totalDeaths += cp.getDeaths();
-        }
-
+        checkTotals();
         return totalDeaths;
     }
 
@@ -918,22 +988,12 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public int getAverageWK() {
-        int total = 0;
-
         if (members.isEmpty()) {
-            return total;
-        }
-
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-
-            total += cp.getWeightedKills();
+            return 0;
         }
+        checkTotals();
 
-        return total / getSize();
+        return (int) getTotalWeightedKills() / getSize();
     }
 
     /**
@@ -942,22 +1002,8 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public int getTotalRival() {
-        int total = 0;
-
-        if (members.isEmpty()) {
-            return total;
-        }
-
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-
-            total += cp.getRivalKills();
-        }
-
-        return total;
+        checkTotals();
+        return totalRival;
     }
 
     /**
@@ -966,22 +1012,8 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public int getTotalNeutral() {
-        int total = 0;
-
-        if (members.isEmpty()) {
-            return total;
-        }
-
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
-
-            total += cp.getNeutralKills();
-        }
-
-        return total;
+        checkTotals();
+        return totalNeutral;
     }
 
     /**
@@ -990,22 +1022,88 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public int getTotalCivilian() {
-        int total = 0;
+        checkTotals();
+        return totalCivilian;
+    }
 
-        if (members.isEmpty()) {
-            return total;
+    /**
+     * (used internally) Applies a change to a member's kills and deaths to the clan totals
+     *
+     * @param cp the member
+     * @param rival the change of rival kills
+     * @param neutral the change of neutral kills
+     * @param civilian the change of civilian kills
+     * @param deaths the change of deaths
+     */
+    synchronized void updateTotals(ClanPlayer cp, int rival, int neutral, int civilian, int deaths) {
+        // ignores a stale instance replaced by importMember
+        if (members.get(cp.getUniqueId()) != cp) {
+            return;
         }
+        totalRival += rival;
+        totalNeutral += neutral;
+        totalCivilian += civilian;
+        totalDeaths += deaths;
+    }
 
-        for (String member : members) {
-            ClanPlayer cp = SimpleClans.getInstance().getClanManager().getClanPlayer(UUID.fromString(member));
-            if (cp == null) {
-                continue;
-            }
+    /**
+     * (used internally) Adds or removes a member's kills and deaths when their clan is set or cleared,
+     * as the totals only count the members that have a clan
+     *
+     * @param cp the member
+     * @param sign 1 to add them, -1 to remove them
+     */
+    synchronized void updateMemberTotals(ClanPlayer cp, int sign) {
+        if (members.get(cp.getUniqueId()) == cp) {
+            addToTotals(cp, sign);
+        }
+    }
+
+    private void addToTotals(ClanPlayer cp, int sign) {
+        totalRival += sign * cp.getRivalKills();
+        totalNeutral += sign * cp.getNeutralKills();
+        totalCivilian += sign * cp.getCivilianKills();
+        totalDeaths += sign * cp.getDeaths();
+    }
+
+    private double getTotalWeightedKills() {
+        SettingsManager settings = SimpleClans.getInstance().getSettingsManager();
+        return ((double) totalRival * settings.getKwRival()) + ((double) totalNeutral * settings.getKwNeutral())
+                + ((double) totalCivilian * settings.getKwCivilian());
+    }
 
-            total += cp.getCivilianKills();
+    /**
+     * Recomputes the totals from the members in debug mode, logging and fixing any difference.
+     * Outside debug mode the reads do not take the clan lock
+     */
+    private void checkTotals() {
+        if (SimpleClans.getInstance().getSettingsManager().isDebugging()) {
+            recomputeTotals();
         }
+    }
 
-        return total;
+    private synchronized void recomputeTotals() {
+        int rival = 0;
+        int neutral = 0;
+        int civilian = 0;
+        int deaths = 0;
+        for (ClanPlayer cp : members.values()) {
+            if (cp.getClan() == null) {
+                continue;
+            }
+            rival += cp.getRivalKills();
+            neutral += cp.getNeutralKills();
+            civilian += cp.getCivilianKills();
+            deaths += cp.getDeaths();
+        }
+        if (rival != totalRival || neutral != totalNeutral || civilian != totalCivilian || deaths != totalDeaths) {
+            SimpleClans.debug(String.format("Totals of %s were out of sync: rival %d/%d, neutral %d/%d, civilian %d/%d, deaths %d/%d",
+                    tag, totalRival, rival, totalNeutral, neutral, totalCivilian, civilian, totalDeaths, deaths));
+            totalRival = rival;
+            totalNeutral = neutral;
+            totalCivilian = civilian;
+            totalDeaths = deaths;
+        }
     }
 
     /**
@@ -1100,6 +1198,7 @@ public class Clan implements Serializable, Comparable<Clan> {
 
         // add clan permission
         SimpleClans.getInstance().getPermissionsManager().addClanPermissions(cp);
+        SimpleClans.getInstance().getClanManager().updateDisplayName(cp.toPlayer());
         SimpleClans.getInstance().getServer().getPluginManager().callEvent(new PlayerPromoteEvent(this, cp));
     }
 
@@ -1118,6 +1217,7 @@ public class Clan implements Serializable, Comparable<Clan> {
 
         // add clan permission
         SimpleClans.getInstance().getPermissionsManager().addClanPermissions(cp);
+        SimpleClans.getInstance().getClanManager().updateDisplayName(cp.toPlayer());
         SimpleClans.getInstance().getServer().getPluginManager().callEvent(new PlayerDemoteEvent(this, cp));
     }
 
@@ -1197,13 +1297,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      * @return
      */
     public boolean isAnyOnline() {
-		for (String member : members) {
-			if (Helper.isOnline(UUID.fromString(member))) {
-				return true;
-			}
-		}
-
-        return false;
+        return !onlineMembers.isEmpty();
     }
     
     /**
@@ -1243,7 +1337,7 @@ public class Clan implements Serializable, Comparable<Clan> {
         List<ClanPlayer> leaders = getLeaders();
 
 		for (ClanPlayer leader : leaders) {
-			if (!Helper.isOnline(leader.getUniqueId())) {
+			if (!onlineMembers.contains(leader.getUniqueId())) {
 				return false;
 			}
 		}
@@ -1288,7 +1382,7 @@ public class Clan implements Serializable, Comparable<Clan> {
                 continue;
             }
 
-            if (!Helper.isOnline(leader.getUniqueId())) {
+            if (!onlineMembers.contains(leader.getUniqueId())) {
                 return false;
             }
         }
@@ -1385,11 +1479,8 @@ public class Clan implements Serializable, Comparable<Clan> {
 
             int maxSize = SimpleClans.getInstance().getSettingsManager().getBbSize();
 
-            while (bb.size() > maxSize) {
-                bb.remove(0);
-            }
-
-            for (String msg : bb) {
+            List<String> localBb = bb;
+            for (String msg : localBb.subList(Math.max(0, localBb.size() - maxSize), localBb.size())) {
                 if (!sendBbTime(player, msg)) {
                     ChatBlock.sendMessage(player, SimpleClans.getInstance().getSettingsManager().getBbAccentColor() + "* " + SimpleClans.getInstance().getSettingsManager().getBbColor() + Helper.parseColors(msg));
                 }
@@ -1474,12 +1565,14 @@ public class Clan implements Serializable, Comparable<Clan> {
                 }
 
                 cp.setLeader(false);
+                SimpleClans.getInstance().getClanManager().updateDisplayName(cp.toPlayer());
             }
         }
 
-        clans.remove(this);
-
         for (Clan c : clans) {
+            if (c.equals(this)) {
+                continue;
+            }
             String disbanded = SimpleClans.getInstance().getLang("clan.disbanded");
 
             if (c.removeWarringClan(this)) {
@@ -1544,6 +1637,7 @@ public class Clan implements Serializable, Comparable<Clan> {
     public void addWarringClan(Clan clan) {
         if (!warringClans.containsKey(clan.getTag())) {
             warringClans.put(clan.getTag(), clan);
+            markDirty(Column.FLAGS);
         }
         SimpleClans.getInstance().getStorageManager().updateClan(this);
     }
@@ -1558,6 +1652,7 @@ public class Clan implements Serializable, Comparable<Clan> {
         Clan warring = warringClans.remove(clan.getTag());
 
         if (warring != null) {
+            markDirty(Column.FLAGS);
             SimpleClans.getInstance().getStorageManager().updateClan(this);
             return true;
         }
@@ -1647,6 +1742,7 @@ public class Clan implements Serializable, Comparable<Clan> {
                 }
             }
         }
+        markDirty(Column.FLAGS);
     }
 
     public void validateWarring() {
@@ -1657,6 +1753,7 @@ public class Clan implements Serializable, Comparable<Clan> {
 
             if (clan == null) {
                 iter.remove();
+                markDirty(Column.FLAGS);
             } else {
                 SimpleClans.debug("validated: " + clanName);
                 warringClans.put(clanName, clan);
@@ -1678,6 +1775,7 @@ public class Clan implements Serializable, Comparable<Clan> {
             homeZ = home.getBlockZ();
             homeWorld = home.getWorld().getName();
         }
+        markDirty(Column.FLAGS);
         SimpleClans.getInstance().getStorageManager().updateClan(this);
     }
 
@@ -1739,6 +1837,7 @@ public class Clan implements Serializable, Comparable<Clan> {
      */
     public void setMemberFeeEnabled(boolean enable) {
         feeEnabled = enable;
+        markDirty(Column.FEE_ENABLED);
     }
     
     /**
@@ -1785,7 +1884,8 @@ public class Clan implements Serializable, Comparable<Clan> {
 	 * @param name
 	 */
 	public void createRank(String name) {
-		ranks.add(new Rank(name));
+		ranks().add(new Rank(name));
+		markDirty(Column.RANKS);
 	}
 
 	/**
@@ -1794,7 +1894,7 @@ public class Clan implements Serializable, Comparable<Clan> {
 	 * @return the ranks
 	 */
 	public List<Rank> getRanks() {
-		return ranks;
+		return ranks();
 	}
 
 	/**
@@ -1807,6 +1907,32 @@ public class Clan implements Serializable, Comparable<Clan> {
 			ranks = new ArrayList<>();
 		}
 		this.ranks = ranks;
+		packedRanks = null;
+		markDirty(Column.RANKS);
+	}
+
+	/**
+	 * (used internally) Sets the ranks json string, it is read when the ranks are first used
+	 *
+	 * @param packedRanks the ranks as json
+	 */
+	public void setPackedRanks(String packedRanks) {
+		this.packedRanks = packedRanks;
+		markDirty(Column.RANKS);
+	}
+
+	private List<Rank> ranks() {
+		if (packedRanks != null) {
+			synchronized (this) {
+				String json = packedRanks;
+				if (json != null) {
+					List<Rank> parsed = Helper.ranksFromJson(json);
+					ranks = parsed == null ? new ArrayList<>() : parsed;
+					packedRanks = null;
+				}
+			}
+		}
+		return ranks;
 	}
 
 	/**
@@ -1817,7 +1943,8 @@ public class Clan implements Serializable, Comparable<Clan> {
 	public void deleteRank(String name) {
 		Rank r = getRank(name);
 		if (r != null) {
-			ranks.remove(r);
+			ranks().remove(r);
+			markDirty(Column.RANKS);
 			getMembers().forEach(cp -> {
 				if (cp.getRankId().equals(r.getName())) {
 					cp.setRank("");
@@ -1835,7 +1962,7 @@ public class Clan implements Serializable, Comparable<Clan> {
 	 */
 	public Rank getRank(String name) {
 		if (name != null) {
-			for (Rank r : ranks) {
+			for (Rank r : ranks()) {
 				if (r.getName().equals(name)) {
 					return r;
 				}
@@ -1843,4 +1970,38 @@ public class Clan implements Serializable, Comparable<Clan> {
 		}
 		return null;
 	}
+
+	/**
+	 * Marks a column to be written on the next save, e.g. after changing a {@link Rank} returned by {@link #getRanks()}
+	 *
+	 * @param column the changed column
+	 */
+	public void markDirty(Column column) {
+		dirtyColumns.accumulateAndGet(column.getMask(), (a, b) -> a | b);
+	}
+
+	/**
+	 * Marks all the columns to be written on the next save
+	 */
+	public void markAllDirty() {
+		dirtyColumns.set(Column.ALL);
+	}
+
+	/**
+	 * (used internally)
+	 *
+	 * @return the mask of the columns changed since the last call, clearing it
+	 */
+	public int pollDirtyColumns() {
+		return dirtyColumns.getAndSet(0);
+	}
+
+	/**
+	 * (used internally) Marks the columns of a failed save to be written again
+	 *
+	 * @param columns the mask returned by {@link #pollDirtyColumns()}
+	 */
+	public void restoreDirtyColumns(int columns) {
+		dirtyColumns.accumulateAndGet(columns, (a, b) -> a | b);
+	}
 }
@@ -1,5 +1,7 @@
 package net.sacredlabyrinth.phaed.simpleclans;
 
+import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanPlayerDAO.Column;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
@@ -13,6 +15,7 @@ import java.text.MessageFormat;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author phaed
@@ -50,6 +53,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     private boolean clanChatMute = false;
 
     private String rank = "";
+    private volatile String packedFlags;
+    private final AtomicInteger dirtyColumns = new AtomicInteger();
+    // the KDR this player is ranked with, NaN while they are not ranked, e.g. while loading
+    private volatile float rankedKdr = Float.NaN;
 
     /**
      *
@@ -167,6 +174,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setName(String name)
     {
         this.displayName = name;
+        markDirty(Column.NAME);
     }
 
     /**
@@ -199,9 +207,11 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
         if (leader)
         {
             trusted = leader;
+            markDirty(Column.TRUSTED);
         }
 
         this.leader = leader;
+        markDirty(Column.LEADER);
     }
 
     /**
@@ -259,6 +269,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setLastSeen(long lastSeen)
     {
         this.lastSeen = lastSeen;
+        markDirty(Column.LAST_SEEN);
     }
 
     /**
@@ -267,6 +278,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void updateLastSeen()
     {
         this.lastSeen = (new Date()).getTime();
+        markDirty(Column.LAST_SEEN);
     }
 
     /**
@@ -319,7 +331,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setRivalKills(int rivalKills)
     {
+        updateClanTotals(rivalKills - this.rivalKills, 0, 0, 0);
         this.rivalKills = rivalKills;
+        markDirty(Column.RIVAL_KILLS);
+        updateRanking();
     }
 
     /**
@@ -348,7 +363,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setCivilianKills(int civilianKills)
     {
+        updateClanTotals(0, 0, civilianKills - this.civilianKills, 0);
         this.civilianKills = civilianKills;
+        markDirty(Column.CIVILIAN_KILLS);
+        updateRanking();
     }
 
     /**
@@ -377,7 +395,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setNeutralKills(int neutralKills)
     {
+        updateClanTotals(0, neutralKills - this.neutralKills, 0, 0);
         this.neutralKills = neutralKills;
+        markDirty(Column.NEUTRAL_KILLS);
+        updateRanking();
     }
 
     /**
@@ -396,13 +417,57 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     	switch (type) {
     		case CIVILIAN:
     			civilianKills++;
+    			markDirty(Column.CIVILIAN_KILLS);
+    			updateClanTotals(0, 0, 1, 0);
     			break;
     		case NEUTRAL:
     			neutralKills++;
+    			markDirty(Column.NEUTRAL_KILLS);
+    			updateClanTotals(0, 1, 0, 0);
     			break;
     		case RIVAL:
     			rivalKills++;
+    			markDirty(Column.RIVAL_KILLS);
+    			updateClanTotals(1, 0, 0, 0);
     	}
+    	updateRanking();
+    }
+
+    private void updateRanking()
+    {
+        float ranked = rankedKdr;
+
+        if (Float.isNaN(ranked) || ranked == getKDR())
+        {
+            return;
+        }
+
+        ClanManager clanManager = SimpleClans.getInstance().getClanManager();
+
+        if (clanManager != null)
+        {
+            clanManager.getPlayerRanking().update(this);
+        }
+    }
+
+    /**
+     * (used internally)
+     *
+     * @param rankedKdr the KDR this player is ranked with, or NaN if they are not ranked
+     */
+    void setRankedKdr(float rankedKdr)
+    {
+        this.rankedKdr = rankedKdr;
+    }
+
+    private void updateClanTotals(int rival, int neutral, int civilian, int deaths)
+    {
+        Clan clan = this.clan;
+
+        if (clan != null)
+        {
+            clan.updateTotals(this, rival, neutral, civilian, deaths);
+        }
     }
 
     /**
@@ -423,6 +488,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setFriendlyFire(boolean friendlyFire)
     {
         this.friendlyFire = friendlyFire;
+        markDirty(Column.FRIENDLY_FIRE);
     }
 
     /**
@@ -462,7 +528,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setDeaths(int deaths)
     {
+        updateClanTotals(0, 0, 0, deaths - this.deaths);
         this.deaths = deaths;
+        markDirty(Column.DEATHS);
+        updateRanking();
     }
 
     /**
@@ -519,6 +588,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setJoinDate(long joinDate)
     {
         this.joinDate = joinDate;
+        markDirty(Column.JOIN_DATE);
     }
 
     /**
@@ -587,6 +657,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setPackedPastClans(String PackedPastClans)
     {
         this.pastClans = Helper.fromArray2(PackedPastClans.split("[|]"));
+        markDirty(Column.PACKED_PAST_CLANS);
     }
 
     /**
@@ -597,6 +668,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void addPastClan(String tag)
     {
         this.getPastClans().add(tag);
+        markDirty(Column.PACKED_PAST_CLANS);
     }
 
     /**
@@ -607,6 +679,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void removePastClan(String tag)
     {
         this.getPastClans().remove(tag);
+        markDirty(Column.PACKED_PAST_CLANS);
     }
 
     /**
@@ -681,6 +754,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     			}
     		});
     	}
+    	markDirty(Column.RESIGN_TIMES);
     }
     
     /**
@@ -689,7 +763,10 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      * @param tag
      */
     public void addResignTime(String tag) {
-    	if (tag != null) resignTimes.put(tag, System.currentTimeMillis());
+    	if (tag != null) {
+    		resignTimes.put(tag, System.currentTimeMillis());
+    		markDirty(Column.RESIGN_TIMES);
+    	}
     }
 
     /**
@@ -709,6 +786,8 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setClan(Clan clan)
     {
+        Clan previous = this.clan;
+
         if (clan == null)
         {
             this.tag = "";
@@ -719,6 +798,17 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
         }
 
         this.clan = clan;
+        markDirty(Column.TAG);
+
+        // the clan totals only count the members that have a clan
+        if (previous == null && clan != null)
+        {
+            clan.updateMemberTotals(this, 1);
+        }
+        else if (previous != null && clan == null)
+        {
+            previous.updateMemberTotals(this, -1);
+        }
     }
 
     /**
@@ -764,6 +854,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     public void setTrusted(boolean trusted)
     {
         this.trusted = trusted;
+        markDirty(Column.TRUSTED);
     }
 
     /**
@@ -774,6 +865,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     @SuppressWarnings("unchecked")
 	public String getFlags()
     {
+        loadFlags();
         JSONObject json = new JSONObject();
 
         // the player's rank inside his clan
@@ -807,11 +899,41 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
     }
 
     /**
-     * Read the list of flags in from a json string
+     * Sets the flags json string, it is read when one of the flags is first used
      *
      * @param flagString the flags to set
      */
     public void setFlags(String flagString)
+    {
+        packedFlags = flagString;
+        markDirty(Column.FLAGS);
+    }
+
+    /**
+     * Reads the flags set by {@link #setFlags(String)} if they were not read yet
+     */
+    private void loadFlags()
+    {
+        if (packedFlags != null)
+        {
+            synchronized (this)
+            {
+                String flags = packedFlags;
+                if (flags != null)
+                {
+                    parseFlags(flags);
+                    packedFlags = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the list of flags in from a json string
+     *
+     * @param flagString the flags to set
+     */
+    private void parseFlags(String flagString)
     {
         if (flagString != null && !flagString.isEmpty())
         {
@@ -903,84 +1025,110 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
 
     public Channel getChannel()
     {
+        loadFlags();
         return channel;
     }
 
     public boolean isGlobalChat()
     {
+        loadFlags();
         return globalChat;
     }
 
     public boolean isAllyChat()
     {
+        loadFlags();
         return allyChat;
     }
 
     public boolean isClanChat()
     {
+        loadFlags();
         return clanChat;
     }
 
     public void setGlobalChat(boolean globalChat)
     {
+        loadFlags();
         this.globalChat = globalChat;
+        markDirty(Column.FLAGS);
+        SimpleClans.getInstance().getClanManager().updateHiddenChannels(this);
     }
 
     public void setAllyChat(boolean allyChat)
     {
+        loadFlags();
         this.allyChat = allyChat;
+        markDirty(Column.FLAGS);
+        SimpleClans.getInstance().getClanManager().updateHiddenChannels(this);
     }
 
     public void setClanChat(boolean clanChat)
     {
+        loadFlags();
         this.clanChat = clanChat;
+        markDirty(Column.FLAGS);
+        SimpleClans.getInstance().getClanManager().updateHiddenChannels(this);
     }
 
     public void setChannel(Channel channel)
     {
+        loadFlags();
         this.channel = channel;
+        markDirty(Column.FLAGS);
     }
 
     public boolean isBbEnabled()
     {
+        loadFlags();
         return bbEnabled;
     }
 
     public void setBbEnabled(boolean bbEnabled)
     {
+        loadFlags();
         this.bbEnabled = bbEnabled;
+        markDirty(Column.FLAGS);
         SimpleClans.getInstance().getStorageManager().updateClanPlayer(this);
     }
 
     public boolean isCapeEnabled()
     {
+        loadFlags();
         return capeEnabled;
     }
 
     public void setCapeEnabled(boolean capeEnabled)
     {
+        loadFlags();
         this.capeEnabled = capeEnabled;
+        markDirty(Column.FLAGS);
         SimpleClans.getInstance().getStorageManager().updateClanPlayer(this);
     }
 
     public boolean isTagEnabled()
     {
+        loadFlags();
         return tagEnabled;
     }
 
     public void setTagEnabled(boolean tagEnabled)
     {
+        loadFlags();
         this.tagEnabled = tagEnabled;
+        markDirty(Column.FLAGS);
         SimpleClans.getInstance().getStorageManager().updateClanPlayer(this);
         SimpleClans.getInstance().getClanManager().updateDisplayName(this.toPlayer());
     }
 
     public boolean isUseChatShortcut()
     {
+        loadFlags();
         return useChatShortcut;
     }
 
     public String getRankDisplayName() {
+    	loadFlags();
     	if (clan != null) {
     		Rank r = clan.getRank(rank);
     		if (r != null) {
@@ -996,6 +1144,7 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      * @return
      */
     public String getRankId() {
+    	loadFlags();
     	return rank;
     }
     
@@ -1017,10 +1166,12 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
      */
     public void setRank(String rank)
     {
+        loadFlags();
     	if (rank == null) {
     		rank = "";
     	}
         this.rank = rank;
+        markDirty(Column.FLAGS);
     }
 
     public enum Channel
@@ -1059,4 +1210,42 @@ public class ClanPlayer implements Serializable, Comparable<ClanPlayer>
    {
        return allyChatMute;
    }
+
+    /**
+     * Marks a column to be written on the next save
+     *
+     * @param column the changed column
+     */
+    public void markDirty(Column column)
+    {
+        dirtyColumns.accumulateAndGet(column.getMask(), (a, b) -> a | b);
+    }
+
+    /**
+     * Marks all the columns to be written on the next save
+     */
+    public void markAllDirty()
+    {
+        dirtyColumns.set(Column.ALL);
+    }
+
+    /**
+     * (used internally)
+     *
+     * @return the mask of the columns changed since the last call, clearing it
+     */
+    public int pollDirtyColumns()
+    {
+        return dirtyColumns.getAndSet(0);
+    }
+
+    /**
+     * (used internally) Marks the columns of a failed save to be written again
+     *
+     * @param columns the mask returned by {@link #pollDirtyColumns()}
+     */
+    public void restoreDirtyColumns(int columns)
+    {
+        dirtyColumns.accumulateAndGet(columns, (a, b) -> a | b);
+    }
 }
@@ -0,0 +1,204 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Clan players who are neither in a clan nor online, loaded from the database on demand when the lazy mode is on
+ * <p>
+ * The least recently used players are evicted when the cache is full, and every player is evicted after the
+ * configured expiry. Players who have no data are cached as well, so repeated lookups do not hit the database.
+ */
+public class ClanPlayerCache {
+
+    private final SimpleClans plugin = SimpleClans.getInstance();
+    private final Function<UUID, ClanPlayer> loader;
+    private final Map<UUID, Entry> entries = new LinkedHashMap<UUID, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+            return size() > plugin.getSettingsManager().getLazyPlayersCacheSize() || isExpired(eldest.getValue());
+        }
+    };
+    private final Set<UUID> loading = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param loader reads a player from the database, returning null if there is no data
+     */
+    public ClanPlayerCache(Function<UUID, ClanPlayer> loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Returns a cached player, requesting it to be loaded in the background on a miss
+     *
+     * @param uuid the player's UUID
+     * @return the player, or null if it has no data or is not loaded yet
+     */
+    public ClanPlayer get(UUID uuid) {
+        Entry entry = getEntry(uuid);
+        if (entry != null) {
+            return entry.clanPlayer;
+        }
+        if (loading.add(uuid)) {
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    try {
+                        load(uuid);
+                    } finally {
+                        loading.remove(uuid);
+                    }
+                }
+            }.runTaskAsynchronously(plugin);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a player through the callback, loading it in the background on a miss
+     *
+     * @param uuid the player's UUID
+     * @param callback called on the main thread with the player, or null if it has no data
+     */
+    public void get(UUID uuid, Consumer<ClanPlayer> callback) {
+        Entry entry = getEntry(uuid);
+        if (entry != null) {
+            callback.accept(entry.clanPlayer);
+            return;
+        }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                ClanPlayer cp = load(uuid);
+                new BukkitRunnable() {
+                    @Override
+                    public void run() {
+                        callback.accept(cp);
+                    }
+                }.runTask(plugin);
+            }
+        }.runTaskAsynchronously(plugin);
+    }
+
+    /**
+     * Loads a player from the database into the cache, blocking the current thread
+     *
+     * @param uuid the player's UUID
+     * @return the player, or null if it has no data
+     */
+    public ClanPlayer load(UUID uuid) {
+        ClanPlayer cp = loader.apply(uuid);
+        put(uuid, cp);
+        return cp;
+    }
+
+    /**
+     * Removes a player from the cache, e.g. to make it resident, loading it from the database if it is not cached
+     *
+     * @param uuid the player's UUID
+     * @return the player, or null if it has no data
+     */
+    public ClanPlayer take(UUID uuid) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(uuid);
+        }
+        if (entry != null && !isExpired(entry)) {
+            hits.incrementAndGet();
+            return entry.clanPlayer;
+        }
+        misses.incrementAndGet();
+        return loader.apply(uuid);
+    }
+
+    /**
+     * Adds a player to the cache, e.g. a player who is no longer resident
+     *
+     * @param uuid the player's UUID
+     * @param cp the player, or null if it has no data
+     */
+    public void put(UUID uuid, ClanPlayer cp) {
+        synchronized (entries) {
+            entries.put(uuid, new Entry(cp));
+        }
+    }
+
+    /**
+     * Removes a player from the cache
+     *
+     * @param uuid the player's UUID
+     */
+    public void invalidate(UUID uuid) {
+        synchronized (entries) {
+            entries.remove(uuid);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * @return the amount of cached players
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the ratio of lookups answered from the cache, between 0 and 1
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private Entry getEntry(UUID uuid) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(uuid);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(uuid);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private boolean isExpired(Entry entry) {
+        long expiry = TimeUnit.MINUTES.toMillis(plugin.getSettingsManager().getLazyPlayersCacheExpiry());
+        return System.currentTimeMillis() - entry.loadedAt > expiry;
+    }
+
+    private static final class Entry {
+        private final ClanPlayer clanPlayer;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Entry(ClanPlayer clanPlayer) {
+            this.clanPlayer = clanPlayer;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sorted views of the clans, shared by the topclans placeholders, /clan list and the clan menus
+ * <p>
+ * A view is rebuilt when it is read after the clans were added or removed, or after the refresh interval passed,
+ * so many reads between two changes share the same sort.
+ */
+public class ClanRanking {
+
+    /**
+     * The criteria clans are ranked by
+     */
+    public enum Order {
+        KDR(Clan::getTotalKDR),
+        SIZE(Clan::getSize),
+        FOUNDED(Clan::getFounded),
+        ACTIVE(Clan::getLastUsed),
+        NAME(Clan::getName);
+
+        private final Function<Clan, Comparable<?>> key;
+
+        Order(Function<Clan, Comparable<?>> key) {
+            this.key = key;
+        }
+    }
+
+    private final SimpleClans plugin = SimpleClans.getInstance();
+    private final Map<Order, View> views = new EnumMap<>(Order.class);
+    private volatile int version;
+
+    public ClanRanking() {
+        for (Order order : Order.values()) {
+            views.put(order, new View(order));
+        }
+    }
+
+    /**
+     * Returns the clans sorted by the order
+     *
+     * @param order the criteria
+     * @param ascending whether the lowest values come first
+     * @return an unmodifiable list
+     */
+    public List<Clan> getRanking(Order order, boolean ascending) {
+        Snapshot snapshot = views.get(order).get();
+        return ascending ? snapshot.ascending : snapshot.descending;
+    }
+
+    /**
+     * Returns the clan at a position, highest values first
+     *
+     * @param order the criteria
+     * @param position the position, starting at 1
+     * @return the clan, or null if there is no clan at that position
+     */
+    public Clan getClan(Order order, int position) {
+        List<Clan> clans = views.get(order).get().descending;
+        if (position < 1 || position > clans.size()) {
+            return null;
+        }
+        return clans.get(position - 1);
+    }
+
+    /**
+     * Marks the views to be rebuilt on the next read, e.g. when a clan is created or disbanded
+     */
+    public void invalidate() {
+        version++;
+    }
+
+    private final class View {
+        private final Order order;
+        private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), -1);
+
+        private View(Order order) {
+            this.order = order;
+        }
+
+        private Snapshot get() {
+            if (isStale()) {
+                synchronized (this) {
+                    if (isStale()) {
+                        rebuild();
+                    }
+                }
+            }
+            return snapshot;
+        }
+
+        private boolean isStale() {
+            long interval = TimeUnit.SECONDS.toMillis(plugin.getSettingsManager().getClanRankingRefreshInterval());
+            Snapshot current = snapshot;
+            return current.version != version || System.currentTimeMillis() - current.builtAt >= interval;
+        }
+
+        private void rebuild() {
+            int currentVersion = version;
+            List<Clan> all = plugin.getClanManager().getClans();
+            // the keys are read once, so concurrent changes cannot break the sort
+            Entry[] entries = new Entry[all.size()];
+            for (int i = 0; i < entries.length; i++) {
+                Clan clan = all.get(i);
+                entries[i] = new Entry(clan, order.key.apply(clan));
+            }
+            Arrays.sort(entries);
+
+            List<Clan> sorted = new ArrayList<>(entries.length);
+            for (Entry entry : entries) {
+                sorted.add(entry.clan);
+            }
+            snapshot = new Snapshot(sorted, currentVersion);
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<Clan> ascending;
+        private final List<Clan> descending;
+        private final int version;
+        private final long builtAt = System.currentTimeMillis();
+
+        private Snapshot(List<Clan> sorted, int version) {
+            List<Clan> reversed = new ArrayList<>(sorted);
+            Collections.reverse(reversed);
+            this.ascending = Collections.unmodifiableList(sorted);
+            this.descending = Collections.unmodifiableList(reversed);
+            this.version = version;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final Clan clan;
+        private final Comparable<Object> key;
+        private final String tag;
+
+        @SuppressWarnings("unchecked")
+        private Entry(Clan clan, Comparable<?> key) {
+            this.clan = clan;
+            this.key = (Comparable<Object>) key;
+            this.tag = clan.getTag();
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = key.compareTo(other.key);
+            return result != 0 ? result : tag.compareTo(other.tag);
+        }
+    }
+}
@@ -19,9 +19,9 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.Map.Entry;
 
 import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+import net.sacredlabyrinth.phaed.simpleclans.utils.ChatTemplate;
 
 /**
  * @author phaed
@@ -764,7 +764,8 @@ public class Helper {
     }
 
     public static Player getPlayer(String playerName) {
-    	return SimpleClans.getInstance().getServer().getPlayer(UUIDMigration.getForcedPlayerUUID(playerName));
+    	UUID uuid = UUIDMigration.getForcedPlayerUUID(playerName);
+    	return uuid == null ? null : SimpleClans.getInstance().getServer().getPlayer(uuid);
     }
 
     /**
@@ -778,28 +779,31 @@ public class Helper {
     public static String formatAllyChat(ClanPlayer cp, String msg, Map<String, String> placeholders) {
         SettingsManager sm = SimpleClans.getInstance().getSettingsManager();
 
-        String leaderColor = sm.getAllyChatLeaderColor();
-        String memberColor = sm.getAllyChatMemberColor();
-        String rank = cp.getRankId().isEmpty() ? null : ChatColor.translateAlternateColorCodes('&', cp.getRankDisplayName());
-        String rankFormat = rank != null ? ChatColor.translateAlternateColorCodes('&', sm.getAllyChatRank()).replace("%rank%", rank) : "";
-
-        String message = replacePlaceholders(sm.getAllyChatFormat(), cp, leaderColor, memberColor, rankFormat, msg);
-        if (placeholders != null) {
-            for (Entry<String, String> e : placeholders.entrySet()) {
-                message = message.replace("%"+e.getKey()+"%", e.getValue());
-            }
-        }
-        return message;
+        return formatChat(sm.getAllyChatTemplate(), sm.getAllyChatRankTemplate(), cp, sm.getAllyChatLeaderColor(),
+                sm.getAllyChatMemberColor(), msg, placeholders);
     }
 
-    private static String replacePlaceholders(String messageFormat, ClanPlayer cp, String leaderColor, String memberColor, String rankFormat, String msg) {
-        String message = ChatColor.translateAlternateColorCodes('&', messageFormat)
-                .replace("%clan%", cp.getClan().getColorTag())
-                .replace("%nick-color%", (cp.isLeader() ? leaderColor : memberColor))
-                .replace("%player%", cp.getName())
-                .replace("%rank%", rankFormat)
-                .replace("%message%", msg);
-        return message;
+    private static String formatChat(ChatTemplate format, ChatTemplate rankFormat, ClanPlayer cp, String leaderColor,
+                                     String memberColor, String msg, Map<String, String> placeholders) {
+        String rank = cp.getRankId().isEmpty() ? null : ChatColor.translateAlternateColorCodes('&', cp.getRankDisplayName());
+        String rankText = rank != null ? rankFormat.render(name -> name.equals("rank") ? rank : null) : "";
+
+        return format.render(name -> {
+            switch (name) {
+                case "clan":
+                    return cp.getClan().getColorTag();
+                case "nick-color":
+                    return cp.isLeader() ? leaderColor : memberColor;
+                case "player":
+                    return cp.getName();
+                case "rank":
+                    return rankText;
+                case "message":
+                    return msg;
+                default:
+                    return placeholders != null ? placeholders.get(name) : null;
+            }
+        });
     }
 
     /**
@@ -813,19 +817,8 @@ public class Helper {
     public static String formatClanChat(ClanPlayer cp, String msg, Map<String, String> placeholders) {
         SettingsManager sm = SimpleClans.getInstance().getSettingsManager();
 
-        String leaderColor = sm.getClanChatLeaderColor();
-        String memberColor = sm.getClanChatMemberColor();
-        String rank = cp.getRankId().isEmpty() ? null : ChatColor.translateAlternateColorCodes('&', cp.getRankDisplayName());
-        String rankFormat = rank != null ? ChatColor.translateAlternateColorCodes('&', sm.getClanChatRank()).replace("%rank%", rank) : "";
-
-        String message = replacePlaceholders(sm.getClanChatFormat(), cp, leaderColor, memberColor, rankFormat, msg);
-        
-        if (placeholders != null) {
-            for (Entry<String, String> e : placeholders.entrySet()) {
-                message = message.replace("%"+e.getKey()+"%", e.getValue());
-            }
-        }
-        return message;
+        return formatChat(sm.getClanChatTemplate(), sm.getClanChatRankTemplate(), cp, sm.getClanChatLeaderColor(),
+                sm.getClanChatMemberColor(), msg, placeholders);
     }
 
     /**
@@ -0,0 +1,101 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory count of how many times each attacker killed each victim
+ */
+public class KillCounter {
+
+    private final Map<Pair, Integer> counts = new ConcurrentHashMap<>();
+
+    /**
+     * @param attacker the attacker's UUID
+     * @param victim the victim's UUID
+     * @return how many times the attacker killed the victim
+     */
+    public int get(UUID attacker, UUID victim) {
+        Integer kills = counts.get(new Pair(attacker, victim));
+        return kills == null ? 0 : kills;
+    }
+
+    /**
+     * Adds one kill of the victim to the attacker
+     *
+     * @param attacker the attacker's UUID
+     * @param victim the victim's UUID
+     * @return the new count
+     */
+    public int increment(UUID attacker, UUID victim) {
+        return counts.merge(new Pair(attacker, victim), 1, Integer::sum);
+    }
+
+    /**
+     * (used internally)
+     *
+     * @param attacker the attacker's UUID
+     * @param victim the victim's UUID
+     * @param kills how many times the attacker killed the victim
+     */
+    public void set(UUID attacker, UUID victim, int kills) {
+        counts.put(new Pair(attacker, victim), kills);
+    }
+
+    /**
+     * Forgets the kills made by a player
+     *
+     * @param attacker the attacker's UUID
+     */
+    public void removeAttacker(UUID attacker) {
+        long most = attacker.getMostSignificantBits();
+        long least = attacker.getLeastSignificantBits();
+        counts.keySet().removeIf(pair -> pair.attackerMost == most && pair.attackerLeast == least);
+    }
+
+    /**
+     * @return the amount of attacker and victim pairs
+     */
+    public int size() {
+        return counts.size();
+    }
+
+    public void clear() {
+        counts.clear();
+    }
+
+    /**
+     * An attacker and a victim, stored as the bits of their UUIDs
+     */
+    private static final class Pair {
+        private final long attackerMost;
+        private final long attackerLeast;
+        private final long victimMost;
+        private final long victimLeast;
+        private final int hash;
+
+        private Pair(UUID attacker, UUID victim) {
+            attackerMost = attacker.getMostSignificantBits();
+            attackerLeast = attacker.getLeastSignificantBits();
+            victimMost = victim.getMostSignificantBits();
+            victimLeast = victim.getLeastSignificantBits();
+            hash = 31 * attacker.hashCode() + victim.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Pair)) {
+                return false;
+            }
+            Pair other = (Pair) obj;
+            return attackerMost == other.attackerMost && attackerLeast == other.attackerLeast
+                    && victimMost == other.victimMost && victimLeast == other.victimLeast;
+        }
+    }
+}
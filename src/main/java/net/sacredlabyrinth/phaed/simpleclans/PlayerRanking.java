@@ -0,0 +1,254 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The clan players in memory ranked by KDR, highest first
+ * <p>
+ * Backed by a treap whose nodes know the size of their subtree, so a player's position is found in O(log n)
+ * and a page of k players is read in O(log n + k). The ranking is updated when a player's kills or deaths change.
+ */
+public class PlayerRanking {
+
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Adds a player to the ranking, replacing a previous instance of the same player
+     *
+     * @param cp the player
+     */
+    public synchronized void add(ClanPlayer cp) {
+        UUID uuid = cp.getUniqueId();
+        if (uuid == null) {
+            return;
+        }
+        Node old = nodes.remove(uuid);
+        if (old != null) {
+            root = remove(root, old);
+            old.clanPlayer.setRankedKdr(Float.NaN);
+        }
+        Node node = new Node(cp, random.nextInt());
+        nodes.put(uuid, node);
+        root = insert(root, node);
+        cp.setRankedKdr(node.kdr);
+    }
+
+    /**
+     * Moves a ranked player to the position of their current KDR.
+     * Players only call it when their KDR changed after they were ranked
+     *
+     * @param cp the player
+     */
+    public synchronized void update(ClanPlayer cp) {
+        UUID uuid = cp.getUniqueId();
+        if (uuid == null) {
+            return;
+        }
+        Node node = nodes.get(uuid);
+        // not ranked yet, or a stale instance
+        if (node == null || node.clanPlayer != cp || node.kdr == cp.getKDR()) {
+            return;
+        }
+        add(cp);
+    }
+
+    /**
+     * Removes a player from the ranking
+     *
+     * @param uuid the player's UUID
+     */
+    public synchronized void remove(UUID uuid) {
+        Node node = nodes.remove(uuid);
+        if (node != null) {
+            root = remove(root, node);
+            node.clanPlayer.setRankedKdr(Float.NaN);
+        }
+    }
+
+    /**
+     * @param uuid the player's UUID
+     * @return the player's position, starting at 1, or 0 if they are not ranked
+     */
+    public synchronized int getPosition(UUID uuid) {
+        Node node = nodes.get(uuid);
+        if (node == null) {
+            return 0;
+        }
+        int position = 1;
+        Node current = root;
+        while (current != null) {
+            int cmp = compare(node, current);
+            if (cmp < 0) {
+                current = current.left;
+            } else {
+                position += size(current.left);
+                if (cmp == 0) {
+                    break;
+                }
+                position++;
+                current = current.right;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Returns a page of the ranking
+     *
+     * @param from the index of the first player, starting at 0
+     * @param count the max amount of players
+     * @return the players, highest KDR first
+     */
+    public synchronized List<ClanPlayer> getPage(int from, int count) {
+        List<ClanPlayer> out = new ArrayList<>(Math.max(0, Math.min(count, size(root) - from)));
+        collect(root, Math.max(0, from), from + count, out);
+        return out;
+    }
+
+    /**
+     * @return the amount of ranked players
+     */
+    public synchronized int size() {
+        return size(root);
+    }
+
+    public synchronized void clear() {
+        for (Node node : nodes.values()) {
+            node.clanPlayer.setRankedKdr(Float.NaN);
+        }
+        nodes.clear();
+        root = null;
+    }
+
+    private void collect(Node node, int from, int to, List<ClanPlayer> out) {
+        if (node == null || from >= to) {
+            return;
+        }
+        int leftSize = size(node.left);
+        if (from < leftSize) {
+            collect(node.left, from, Math.min(to, leftSize), out);
+        }
+        if (from <= leftSize && leftSize < to) {
+            out.add(node.clanPlayer);
+        }
+        if (to > leftSize + 1) {
+            collect(node.right, Math.max(0, from - leftSize - 1), to - leftSize - 1, out);
+        }
+    }
+
+    private Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (inserted.priority > node.priority) {
+            Node[] split = split(node, inserted);
+            inserted.left = split[0];
+            inserted.right = split[1];
+            return inserted.update();
+        }
+        if (compare(inserted, node) < 0) {
+            node.left = insert(node.left, inserted);
+        } else {
+            node.right = insert(node.right, inserted);
+        }
+        return node.update();
+    }
+
+    private Node remove(Node node, Node removed) {
+        if (node == null) {
+            return null;
+        }
+        if (node == removed) {
+            return merge(node.left, node.right);
+        }
+        if (compare(removed, node) < 0) {
+            node.left = remove(node.left, removed);
+        } else {
+            node.right = remove(node.right, removed);
+        }
+        return node.update();
+    }
+
+    /**
+     * Splits a subtree into the nodes ranked before the key and the others
+     */
+    private Node[] split(Node node, Node key) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(node, key) < 0) {
+            Node[] split = split(node.right, key);
+            node.right = split[0];
+            split[0] = node.update();
+            return split;
+        }
+        Node[] split = split(node.left, key);
+        node.left = split[1];
+        split[1] = node.update();
+        return split;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return left.update();
+        }
+        right.left = merge(left, right.left);
+        return right.update();
+    }
+
+    /**
+     * Highest KDR first, ties broken by UUID
+     */
+    private static int compare(Node a, Node b) {
+        int result = Float.compare(b.kdr, a.kdr);
+        if (result == 0) {
+            result = Long.compare(a.uuidMost, b.uuidMost);
+        }
+        if (result == 0) {
+            result = Long.compare(a.uuidLeast, b.uuidLeast);
+        }
+        return result;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final ClanPlayer clanPlayer;
+        private final float kdr;
+        private final long uuidMost;
+        private final long uuidLeast;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(ClanPlayer clanPlayer, int priority) {
+            this.clanPlayer = clanPlayer;
+            this.kdr = clanPlayer.getKDR();
+            this.uuidMost = clanPlayer.getUniqueId().getMostSignificantBits();
+            this.uuidLeast = clanPlayer.getUniqueId().getLeastSignificantBits();
+            this.priority = priority;
+        }
+
+        private Node update() {
+            size = 1 + size(left) + size(right);
+            return this;
+        }
+    }
+}
@@ -31,6 +31,9 @@ import net.sacredlabyrinth.phaed.simpleclans.managers.StorageManager;
 import net.sacredlabyrinth.phaed.simpleclans.managers.TeleportManager;
 import net.sacredlabyrinth.phaed.simpleclans.tasks.CollectFeeTask;
 import net.sacredlabyrinth.phaed.simpleclans.tasks.CollectUpkeepTask;
+import net.sacredlabyrinth.phaed.simpleclans.tasks.FlushKillJournalTask;
+import net.sacredlabyrinth.phaed.simpleclans.tasks.RefreshAllSeeingTask;
+import net.sacredlabyrinth.phaed.simpleclans.tasks.RollupKillsTask;
 import net.sacredlabyrinth.phaed.simpleclans.tasks.SaveDataTask;
 import net.sacredlabyrinth.phaed.simpleclans.tasks.UpkeepWarningTask;
 import net.sacredlabyrinth.phaed.simpleclans.ui.InventoryController;
@@ -55,6 +58,7 @@ public class SimpleClans extends JavaPlugin {
     private SettingsManager settingsManager;
     private PermissionsManager permissionsManager;
     private TeleportManager teleportManager;
+    private PlaceholdersManager placeholdersManager;
     private boolean hasUUID;
 
     /**
@@ -144,7 +148,7 @@ public class SimpleClans extends JavaPlugin {
     private void hookIntoPAPI() {
 		if (getServer().getPluginManager().getPlugin("PlaceholderAPI") != null) {
 			getLogger().info("PlaceholderAPI found. Registering hook...");
-			new PlaceholdersManager(this);
+			placeholdersManager = new PlaceholdersManager(this);
 		}
     }
     
@@ -175,6 +179,13 @@ public class SimpleClans extends JavaPlugin {
     	if (getSettingsManager().isSavePeriodically()) {
     		new SaveDataTask().start();
     	}
+        if (getStorageManager().isKillJournalEnabled()) {
+            new FlushKillJournalTask().start();
+        }
+        new RefreshAllSeeingTask().start();
+        if (getSettingsManager().isKillRetention()) {
+            new RollupKillsTask().start();
+        }
         if (getSettingsManager().isMemberFee()) {
             new CollectFeeTask().start();
         }
@@ -222,6 +233,14 @@ public class SimpleClans extends JavaPlugin {
         return settingsManager;
     }
 
+    /**
+     * @return the placeholdersManager, or null if PlaceholderAPI is not installed
+     */
+    @Nullable
+    public PlaceholdersManager getPlaceholdersManager() {
+        return placeholdersManager;
+    }
+
     /**
      * @return the permissionsManager
      */
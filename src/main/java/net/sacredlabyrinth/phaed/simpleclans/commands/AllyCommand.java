@@ -75,7 +75,7 @@ public class AllyCommand {
                 return;
             }
 
-            List<ClanPlayer> onlineLeaders = Helper.stripOffLinePlayers(clan.getLeaders());
+            List<ClanPlayer> onlineLeaders = clan.getOnlineLeaders();
 
             if (onlineLeaders.isEmpty()) {
                 ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("at.least.one.leader.accept.the.alliance"));
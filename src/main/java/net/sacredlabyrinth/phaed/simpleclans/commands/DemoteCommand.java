@@ -43,7 +43,12 @@ public class DemoteCommand {
         }
         ClanPlayer toDemote;
         UUID uuid = UUIDMigration.getForcedPlayerUUID(demotedName);
-        toDemote = plugin.getClanManager().getAnyClanPlayer(uuid);
+        toDemote = uuid == null ? null : plugin.getClanManager().getAnyClanPlayer(uuid);
+
+        if (toDemote == null) {
+            ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("no.player.matched"));
+            return;
+        }
         
         if (plugin.getPermissionsManager().has(player, "simpleclans.admin.demote")) {
             if (!toDemote.isLeader()) {
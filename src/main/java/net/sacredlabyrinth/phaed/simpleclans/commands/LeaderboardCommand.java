@@ -3,6 +3,7 @@ package net.sacredlabyrinth.phaed.simpleclans.commands;
 import net.sacredlabyrinth.phaed.simpleclans.ChatBlock;
 import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
+import net.sacredlabyrinth.phaed.simpleclans.PlayerRanking;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
@@ -40,8 +41,8 @@ public class LeaderboardCommand {
             return;
         }
 
-        List<ClanPlayer> clanPlayers = plugin.getClanManager().getAllClanPlayers();
-        plugin.getClanManager().sortClanPlayersByKDR(clanPlayers);
+        PlayerRanking ranking = plugin.getClanManager().getPlayerRanking();
+        List<ClanPlayer> clanPlayers = ranking.getPage(0, ranking.size());
 
         ChatBlock chatBlock = new ChatBlock();
 
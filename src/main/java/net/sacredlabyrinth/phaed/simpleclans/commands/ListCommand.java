@@ -2,9 +2,10 @@ package net.sacredlabyrinth.phaed.simpleclans.commands;
 
 import net.sacredlabyrinth.phaed.simpleclans.ChatBlock;
 import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanRanking;
+import net.sacredlabyrinth.phaed.simpleclans.ClanRanking.Order;
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
-import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
 import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
 
 import org.bukkit.ChatColor;
@@ -43,9 +44,7 @@ public class ListCommand {
             ChatBlock.sendMessage(player, ChatColor.RED + MessageFormat.format(plugin.getLang("usage.list"), plugin.getSettingsManager().getCommandClan()));
             return;
         }
-        List<Clan> clans = plugin.getClanManager().getClans();
-
-        sort(plugin, clans, args);
+        List<Clan> clans = sort(plugin, args);
 
         if (clans.isEmpty()) {
             ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("no.clans.have.been.created"));
@@ -90,7 +89,7 @@ public class ListCommand {
         ChatBlock.sendBlank(player);
     }
 
-	private void sort(SimpleClans plugin, List<Clan> clans, String[] args) {
+	private List<Clan> sort(SimpleClans plugin, String[] args) {
 		SettingsManager sm = plugin.getSettingsManager();
 		String type = sm.getListDefault();
         String order = null;
@@ -105,33 +104,27 @@ public class ListCommand {
         		order = null;
         	}
         }
-        ClanManager cm = plugin.getClanManager();
-        //in case the default type is invalid
-        cm.sortClansByKDR(clans);
-        
+        ClanRanking ranking = plugin.getClanManager().getClanRanking();
+
 		if (type.equalsIgnoreCase(sm.getListActive())) {
-        	cm.sortClansByActive(clans, asc.equalsIgnoreCase(order));
+        	return ranking.getRanking(Order.ACTIVE, asc.equalsIgnoreCase(order));
         }
         if (type.equalsIgnoreCase(sm.getListFounded())) {
         	if (order == null) {
         		order = asc;
         	}
-        	cm.sortClansByFounded(clans, asc.equalsIgnoreCase(order));
-        }
-        if (type.equalsIgnoreCase(sm.getListKdr())) {
-        	cm.sortClansByKDR(clans, asc.equalsIgnoreCase(order));
+        	return ranking.getRanking(Order.FOUNDED, asc.equalsIgnoreCase(order));
         }
         if (type.equalsIgnoreCase(sm.getListName())) {
         	if (order == null) {
         		order = asc;
         	}
-        	cm.sortClansByName(clans, asc.equalsIgnoreCase(order));
+        	return ranking.getRanking(Order.NAME, asc.equalsIgnoreCase(order));
         }
         if (type.equalsIgnoreCase(sm.getListSize())) {
-        	cm.sortClansBySize(clans, asc.equalsIgnoreCase(order));
+        	return ranking.getRanking(Order.SIZE, asc.equalsIgnoreCase(order));
         }
+        //kdr, also in case the default type is invalid
+        return ranking.getRanking(Order.KDR, asc.equalsIgnoreCase(order));
 	}
 }
-
-
-
@@ -9,7 +9,6 @@ import org.bukkit.entity.Player;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
 import java.text.NumberFormat;
-import java.util.UUID;
 
 /**
  * @author phaed
@@ -26,10 +25,6 @@ public class LookupCommand {
      */
     public void execute(Player player, String[] arg) {
         SimpleClans plugin = SimpleClans.getInstance();
-        String headColor = plugin.getSettingsManager().getPageHeadingsColor();
-        String subColor = plugin.getSettingsManager().getPageSubTitleColor();
-        NumberFormat formatter = new DecimalFormat("#.#");
-
         String playerName = null;
 
         if (arg.length == 0) {
@@ -49,12 +44,21 @@ public class LookupCommand {
             return;
         }
 
-        UUID targetUuid = UUIDMigration.getForcedPlayerUUID(playerName);
-        if (targetUuid == null) {
-            ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("no.player.matched"));
-            return;
-        }
-        ClanPlayer targetCp = plugin.getClanManager().getAnyClanPlayer(targetUuid);
+        UUIDMigration.getForcedPlayerUUID(playerName, targetUuid -> {
+            if (targetUuid == null) {
+                ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("no.player.matched"));
+                return;
+            }
+            plugin.getClanManager().getAnyClanPlayer(targetUuid, targetCp -> show(player, arg, targetCp));
+        });
+    }
+
+    private void show(Player player, String[] arg, ClanPlayer targetCp) {
+        SimpleClans plugin = SimpleClans.getInstance();
+        String headColor = plugin.getSettingsManager().getPageHeadingsColor();
+        String subColor = plugin.getSettingsManager().getPageSubTitleColor();
+        NumberFormat formatter = new DecimalFormat("#.#");
+
         ClanPlayer myCp = plugin.getClanManager().getClanPlayer(player.getUniqueId());
         Clan myClan = myCp == null ? null : myCp.getClan();
 
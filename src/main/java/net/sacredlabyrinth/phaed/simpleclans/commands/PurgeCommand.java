@@ -36,28 +36,36 @@ public class PurgeCommand {
         }
 
         if (args.length == 1) {
-            UUID uuid = UUIDMigration.getForcedPlayerUUID(args[0]);
-            if (uuid == null || plugin.getClanManager().getAnyClanPlayer(uuid) == null) {
-                ChatBlock.sendMessage(sender, ChatColor.RED + plugin.getLang("no.player.matched"));
-                return;
-            }
-            Player player = plugin.getServer().getPlayer(uuid);
-            if (player != null && InventoryController.isRegistered(player)) {
-                player.closeInventory();
-            }
-
-            ClanPlayer cp = plugin.getClanManager().getAnyClanPlayer(uuid);
-
-            Clan clan = cp.getClan();
-            if (clan != null && clan.getMembers().size() == 1) {
-                clan.disband();
-            }
-            plugin.getClanManager().deleteClanPlayer(cp);
-            ChatBlock.sendMessage(sender, ChatColor.AQUA + plugin.getLang("player.purged"));
+            UUIDMigration.getForcedPlayerUUID(args[0], uuid -> {
+                if (uuid == null) {
+                    ChatBlock.sendMessage(sender, ChatColor.RED + plugin.getLang("no.player.matched"));
+                    return;
+                }
+                plugin.getClanManager().getAnyClanPlayer(uuid, cp -> purge(sender, uuid, cp));
+            });
             return;
         }
 
         ChatBlock.sendMessage(sender, ChatColor.RED
                 + MessageFormat.format(plugin.getLang("usage.purge"), plugin.getSettingsManager().getCommandClan()));
     }
+
+    private void purge(CommandSender sender, UUID uuid, ClanPlayer cp) {
+        SimpleClans plugin = SimpleClans.getInstance();
+        if (cp == null) {
+            ChatBlock.sendMessage(sender, ChatColor.RED + plugin.getLang("no.player.matched"));
+            return;
+        }
+        Player player = plugin.getServer().getPlayer(uuid);
+        if (player != null && InventoryController.isRegistered(player)) {
+            player.closeInventory();
+        }
+
+        Clan clan = cp.getClan();
+        if (clan != null && clan.getMembers().size() == 1) {
+            clan.disband();
+        }
+        plugin.getClanManager().deleteClanPlayer(cp);
+        ChatBlock.sendMessage(sender, ChatColor.AQUA + plugin.getLang("player.purged"));
+    }
 }
@@ -14,6 +14,7 @@ import net.sacredlabyrinth.phaed.simpleclans.RankPermission;
 import net.sacredlabyrinth.phaed.simpleclans.Rank;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanDAO;
 import net.sacredlabyrinth.phaed.simpleclans.uuid.UUIDMigration;
 
 import static net.sacredlabyrinth.phaed.simpleclans.SimpleClans.lang;
@@ -230,6 +231,7 @@ public class RankCommand {
         	return;
         }
 		rank.setDisplayName(dn);
+		clan.markDirty(ClanDAO.Column.RANKS);
 		plugin.getStorageManager().updateClan(clan, true);
 		ChatBlock.sendMessage(player, ChatColor.AQUA + lang("rank.displayname.updated"));
 	}
@@ -298,6 +300,7 @@ public class RankCommand {
 			}
 
 			if (changed) {
+				clan.markDirty(ClanDAO.Column.RANKS);
 				plugin.getStorageManager().updateClan(clan, true);
 				return;
 			}
@@ -2,6 +2,7 @@ package net.sacredlabyrinth.phaed.simpleclans.commands;
 
 import net.sacredlabyrinth.phaed.simpleclans.ChatBlock;
 import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.Helper;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import net.sacredlabyrinth.phaed.simpleclans.language.LanguageResource;
 
@@ -45,6 +46,11 @@ public class ReloadCommand
         {
             SimpleClans.getInstance().getPermissionsManager().updateClanPermissions(clan);
         }
+
+        for (Player player : Helper.getOnlinePlayers())
+        {
+            plugin.getClanManager().updateDisplayName(player);
+        }
         ChatBlock.sendMessage(sender, ChatColor.AQUA + plugin.getLang("configuration.reloaded"));
 
     }
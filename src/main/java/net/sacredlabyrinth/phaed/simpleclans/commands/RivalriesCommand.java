@@ -2,6 +2,7 @@ package net.sacredlabyrinth.phaed.simpleclans.commands;
 
 import net.sacredlabyrinth.phaed.simpleclans.ChatBlock;
 import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanRanking;
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import org.bukkit.ChatColor;
@@ -36,8 +37,7 @@ public class RivalriesCommand {
             ChatBlock.sendMessage(player, ChatColor.RED + plugin.getLang("insufficient.permissions"));
             return;
         }
-        List<Clan> clans = plugin.getClanManager().getClans();
-        plugin.getClanManager().sortClansByKDR(clans);
+        List<Clan> clans = plugin.getClanManager().getClanRanking().getRanking(ClanRanking.Order.KDR, false);
 
         ChatBlock chatBlock = new ChatBlock();
 
@@ -63,7 +63,7 @@ public class WarCommand {
             	return;
             }
             if (!clan.isWarring(war.getTag())) {
-                List<ClanPlayer> onlineLeaders = Helper.stripOffLinePlayers(clan.getLeaders());
+                List<ClanPlayer> onlineLeaders = clan.getOnlineLeaders();
 
                 if (!onlineLeaders.isEmpty()) {
                     plugin.getRequestManager().addWarStartRequest(cp, war, clan);
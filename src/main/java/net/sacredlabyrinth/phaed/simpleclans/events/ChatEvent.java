@@ -24,6 +24,14 @@ public class ChatEvent extends Event implements Cancellable {
     private boolean cancelled;
     
     public ChatEvent(String message, ClanPlayer sender, List<ClanPlayer> receivers, Type type) {
+        this(message, sender, receivers, type, false);
+    }
+
+    /**
+     * @param async whether the event is fired off the main thread, e.g. from the chat thread
+     */
+    public ChatEvent(String message, ClanPlayer sender, List<ClanPlayer> receivers, Type type, boolean async) {
+        super(async);
         if (message == null || sender == null || receivers == null || type == null) {
             throw new IllegalArgumentException("none of the args can be null");
         }
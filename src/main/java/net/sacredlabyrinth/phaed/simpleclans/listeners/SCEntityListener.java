@@ -6,7 +6,6 @@ import net.sacredlabyrinth.phaed.simpleclans.Kill;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import net.sacredlabyrinth.phaed.simpleclans.events.AddKillEvent;
 import net.sacredlabyrinth.phaed.simpleclans.managers.PermissionsManager;
-import net.sacredlabyrinth.phaed.simpleclans.managers.StorageManager.DataCallback;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.*;
@@ -21,7 +20,7 @@ import org.bukkit.event.player.PlayerInteractEntityEvent;
 
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Level;
 
 /**
@@ -134,17 +133,19 @@ public class SCEntityListener implements Listener
 
                 if (reward != 0 && plugin.getSettingsManager().isMoneyPerKill())
                 {
-                    for (ClanPlayer cp : attackerCp.getClan().getOnlineMembers())
+                    List<ClanPlayer> onlineMembers = attackerCp.getClan().getOnlineMembers();
+                    double money = Math.round((reward / onlineMembers.size()) * 100D) / 100D;
+                    for (ClanPlayer cp : onlineMembers)
                     {
-                        double money = Math.round((reward / attackerCp.getClan().getOnlineMembers().size()) * 100D) / 100D;
-                        cp.toPlayer().sendMessage(ChatColor.AQUA + MessageFormat.format(plugin.getLang("player.got.money"), money, victim.getName(), kdr));
-                        plugin.getPermissionsManager().playerGrantMoney(cp.toPlayer(), money);
+                        Player member = cp.toPlayer();
+                        member.sendMessage(ChatColor.AQUA + MessageFormat.format(plugin.getLang("player.got.money"), money, victim.getName(), kdr));
+                        plugin.getPermissionsManager().playerGrantMoney(member, money);
                     }
                 }
 
                 // record death for victim
                 victimCp.addDeath();
-                plugin.getStorageManager().updateClanPlayer(victimCp);
+                plugin.getStorageManager().updateKillCounters(victimCp);
             }
         }
     }
@@ -158,29 +159,24 @@ public class SCEntityListener implements Listener
     	}
     	
     	if (plugin.getSettingsManager().isMaxKillsPerVictim()) {
-    		plugin.getStorageManager().getKillsPerPlayer(attacker.getName(), new DataCallback<Map<String,Integer>>() {
-				
-				@Override
-				public void onResultReady(Map<String, Integer> data) {
-		    		final int max = plugin.getSettingsManager().getMaxKillsPerVictim();
-		    		Integer kills = data.get(kill.getVictim().getName());
-		    		if (kills != null) {
-		    			if (kills.intValue() < max) {
-		    				saveKill(kill, type);
-		    			}
-		    		}
-				}
-			});
-    		return;
+    		final int max = plugin.getSettingsManager().getMaxKillsPerVictim();
+    		if (plugin.getClanManager().getKillCounter().get(attacker.getUniqueId(), victim.getUniqueId()) >= max) {
+    			return;
+    		}
     	}
     	saveKill(kill, type);
     }
 
 	private void saveKill(Kill kill, Kill.Type type) {
 		plugin.getClanManager().addKill(kill);
+		// the counter is only loaded and read while the limit is enabled
+		if (plugin.getSettingsManager().isMaxKillsPerVictim()) {
+			plugin.getClanManager().getKillCounter().increment(kill.getKiller().getUniqueId(), kill.getVictim().getUniqueId());
+		}
     	ClanPlayer killer = kill.getKiller();
     	ClanPlayer victim = kill.getVictim();
 		killer.addKill(type);
+		plugin.getStorageManager().updateKillCounters(killer);
 		plugin.getStorageManager().insertKill(killer.toPlayer(), killer.getTag(), victim.toPlayer(), victim.getTag(), type.getShortname());
 	}
     
@@ -290,13 +286,14 @@ public class SCEntityListener implements Listener
             }
         }
 
-        if (victim != null && plugin.getSettingsManager().isBlacklistedWorld(victim.getLocation().getWorld().getName()))
-        {
-        	return;
-        }
-
         if (attacker != null && victim != null)
         {
+            // getWorld() does not copy the location
+            if (plugin.getSettingsManager().isBlacklistedWorld(victim.getWorld().getName()))
+            {
+                return;
+            }
+
             ClanPlayer acp = plugin.getClanManager().getClanPlayer(attacker);
             ClanPlayer vcp = plugin.getClanManager().getClanPlayer(victim);
 
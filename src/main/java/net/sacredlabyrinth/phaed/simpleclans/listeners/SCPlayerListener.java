@@ -12,14 +12,16 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.*;
 
-import java.util.Iterator;
 import net.sacredlabyrinth.phaed.simpleclans.ChatBlock;
+import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
 
 /**
  * @author phaed
  */
 public class SCPlayerListener implements Listener {
 
+    private static final String CLAN_CHAT_MARKER = "" + ChatColor.RED + ChatColor.WHITE + ChatColor.RED + ChatColor.BLACK;
+    private static final String ALLY_CHAT_MARKER = "" + ChatColor.AQUA + ChatColor.WHITE + ChatColor.AQUA + ChatColor.BLACK;
     private SimpleClans plugin;
 
     /**
@@ -177,29 +179,20 @@ public class SCPlayerListener implements Listener {
         }
 
         if (!plugin.getPermissionsManager().has(event.getPlayer(), "simpleclans.mod.nohide")) {
-            boolean isClanChat = event.getMessage().contains("" + ChatColor.RED + ChatColor.WHITE + ChatColor.RED + ChatColor.BLACK);
-            boolean isAllyChat = event.getMessage().contains("" + ChatColor.AQUA + ChatColor.WHITE + ChatColor.AQUA + ChatColor.BLACK);
+            ClanManager clanManager = plugin.getClanManager();
 
-            for (Iterator<Player> iter = event.getRecipients().iterator(); iter.hasNext();) {
-                Player player = iter.next();
-
-                ClanPlayer rcp = plugin.getClanManager().getClanPlayer(player);
-
-                if (rcp != null) {
-                    if (!rcp.isClanChat() && isClanChat) {
-                        iter.remove();
-                        continue;
-                    }
-
-                    if (!rcp.isAllyChat() && isAllyChat) {
-                        iter.remove();
-                        continue;
-                    }
-
-                    if (!rcp.isGlobalChat() && !isAllyChat && !isClanChat) {
-                        iter.remove();
-                    }
+            // nobody turned a channel off, which is the usual case
+            if (clanManager.hasHiddenChannels()) {
+                int channels = 0;
+                if (message.contains(CLAN_CHAT_MARKER)) {
+                    channels |= ClanManager.CHANNEL_CLAN;
                 }
+                if (message.contains(ALLY_CHAT_MARKER)) {
+                    channels |= ClanManager.CHANNEL_ALLY;
+                }
+                int channel = channels == 0 ? ClanManager.CHANNEL_GLOBAL : channels;
+
+                event.getRecipients().removeIf(player -> clanManager.isChannelHidden(player, channel));
             }
         }
 
@@ -223,8 +216,16 @@ public class SCPlayerListener implements Listener {
                     event.setFormat(event.getFormat().replace("tagLabel", ""));
                 }
             }
-        } else {
-            plugin.getClanManager().updateDisplayName(event.getPlayer());
+        }
+    }
+
+    /**
+     * @param event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            plugin.getClanManager().preloadClanPlayer(event.getUniqueId());
         }
     }
 
@@ -234,6 +235,10 @@ public class SCPlayerListener implements Listener {
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         final Player player = event.getPlayer();
+        plugin.getClanManager().makeResident(player);
+        plugin.getClanManager().updateOnlineMember(player, true);
+        plugin.getClanManager().updateAllSeeing(player, true);
+        plugin.getClanManager().updateHiddenChannels(player, true);
 
         if (SimpleClans.getInstance().getSettingsManager().isBlacklistedWorld(player.getLocation().getWorld().getName())) {
             return;
@@ -242,10 +247,13 @@ public class SCPlayerListener implements Listener {
         ClanPlayer cp;
         if (SimpleClans.getInstance().getSettingsManager().getUseBungeeCord()) {
             cp = SimpleClans.getInstance().getClanManager().getClanPlayerJoinEvent(player);
+            // the player was reloaded from the database, their chat toggles may have changed on another server
+            plugin.getClanManager().updateHiddenChannels(player, true);
         } else {
             cp = SimpleClans.getInstance().getClanManager().getClanPlayer(player);
         }
 
+        SimpleClans.getInstance().getClanManager().updatePlayerName(player);
         SimpleClans.getInstance().getStorageManager().updatePlayerNameAsync(player);
         SimpleClans.getInstance().getClanManager().updateLastSeen(player);
         SimpleClans.getInstance().getClanManager().updateDisplayName(player);
@@ -253,7 +261,6 @@ public class SCPlayerListener implements Listener {
         if (cp == null) {
             return;
         }
-        cp.setName(player.getName());
 
         SimpleClans.getInstance().getPermissionsManager().addPlayerPermissions(cp);
 
@@ -299,7 +306,11 @@ public class SCPlayerListener implements Listener {
      */
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getClanManager().updateOnlineMember(event.getPlayer(), false);
+        plugin.getClanManager().updateAllSeeing(event.getPlayer(), false);
+        plugin.getClanManager().updateHiddenChannels(event.getPlayer(), false);
         if (plugin.getSettingsManager().isBlacklistedWorld(event.getPlayer().getLocation().getWorld().getName())) {
+            plugin.getClanManager().releaseResident(event.getPlayer());
             return;
         }
 
@@ -308,6 +319,7 @@ public class SCPlayerListener implements Listener {
         SimpleClans.getInstance().getPermissionsManager().removeClanPlayerPermissions(cp);
         plugin.getClanManager().updateLastSeen(event.getPlayer());
         plugin.getRequestManager().endPendingRequest(event.getPlayer().getName());
+        plugin.getClanManager().releaseResident(event.getPlayer());
     }
 
     /**
@@ -315,10 +327,23 @@ public class SCPlayerListener implements Listener {
      */
     @EventHandler
     public void onPlayerKick(PlayerKickEvent event) {
+        if (!event.isCancelled()) {
+            plugin.getClanManager().updateOnlineMember(event.getPlayer(), false);
+        }
         if (plugin.getSettingsManager().isBlacklistedWorld(event.getPlayer().getLocation().getWorld().getName())) {
             return;
         }
 
         plugin.getClanManager().updateLastSeen(event.getPlayer());
     }
+
+    /**
+     * Updates the display name, as the prefix may be different in the new world
+     *
+     * @param event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        plugin.getClanManager().updateDisplayName(event.getPlayer());
+    }
 }
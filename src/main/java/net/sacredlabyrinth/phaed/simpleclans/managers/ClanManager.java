@@ -1,6 +1,7 @@
 package net.sacredlabyrinth.phaed.simpleclans.managers;
 
 import net.sacredlabyrinth.phaed.simpleclans.*;
+import net.sacredlabyrinth.phaed.simpleclans.utils.Snapshot;
 import net.sacredlabyrinth.phaed.simpleclans.uuid.UUIDMigration;
 import net.sacredlabyrinth.phaed.simpleclans.events.CreateClanEvent;
 import org.bukkit.ChatColor;
@@ -13,10 +14,11 @@ import java.text.MessageFormat;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import net.sacredlabyrinth.phaed.simpleclans.events.ChatEvent;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import static net.sacredlabyrinth.phaed.simpleclans.SimpleClans.lang;
 
@@ -25,16 +27,31 @@ import static net.sacredlabyrinth.phaed.simpleclans.SimpleClans.lang;
  */
 public final class ClanManager {
 
+    public static final int CHANNEL_GLOBAL = 1;
+    public static final int CHANNEL_ALLY = 1 << 1;
+    public static final int CHANNEL_CLAN = 1 << 2;
     private final SimpleClans plugin;
-    private final HashMap<String, Clan> clans = new HashMap<>();
-    private final HashMap<String, ClanPlayer> clanPlayers = new HashMap<>();
-    private final HashMap<ClanPlayer, List<Kill>> kills = new HashMap<>();
+    // read by the chat and the async tasks while commands change them on the main thread
+    private final Map<String, Clan> clans = new ConcurrentHashMap<>();
+    private final Map<UUID, ClanPlayer> clanPlayers = new ConcurrentHashMap<>();
+    private final Map<String, UUID> playerNames = new ConcurrentHashMap<>();
+    private final Map<ClanPlayer, List<Kill>> kills = new ConcurrentHashMap<>();
+    private final Set<UUID> allSeeing = ConcurrentHashMap.newKeySet();
+    // the chat channels each online player turned off, only for players who turned off at least one
+    private final Map<UUID, Integer> hiddenChannels = new ConcurrentHashMap<>();
+    private final Snapshot<Clan> clansSnapshot = new Snapshot<>(clans::values);
+    private final Snapshot<ClanPlayer> clanPlayersSnapshot = new Snapshot<>(clanPlayers::values);
+    private final KillCounter killCounter = new KillCounter();
+    private final ClanPlayerCache clanPlayerCache;
+    private final ClanRanking clanRanking = new ClanRanking();
+    private final PlayerRanking playerRanking = new PlayerRanking();
 
     /**
      *
      */
     public ClanManager() {
         plugin = SimpleClans.getInstance();
+        clanPlayerCache = new ClanPlayerCache(uuid -> plugin.getStorageManager().retrieveClanPlayer(uuid));
     }
 
     /**
@@ -43,7 +60,57 @@ public final class ClanManager {
     public void cleanData() {
         clans.clear();
         clanPlayers.clear();
+        playerNames.clear();
         kills.clear();
+        killCounter.clear();
+        clanPlayerCache.clear();
+        clansSnapshot.invalidate();
+        clanPlayersSnapshot.invalidate();
+        clanRanking.invalidate();
+        playerRanking.clear();
+    }
+
+    /**
+     * Returns how many times each player killed each other player
+     *
+     * @return the kill counter
+     */
+    public KillCounter getKillCounter() {
+        return killCounter;
+    }
+
+    /**
+     * Returns the players loaded on demand, only used when the lazy mode is on
+     *
+     * @return the clan player cache
+     */
+    public ClanPlayerCache getClanPlayerCache() {
+        return clanPlayerCache;
+    }
+
+    /**
+     * Returns the sorted views of the clans
+     *
+     * @return the clan ranking
+     */
+    public ClanRanking getClanRanking() {
+        return clanRanking;
+    }
+
+    /**
+     * Returns the clan players in memory ranked by KDR
+     *
+     * @return the player ranking
+     */
+    public PlayerRanking getPlayerRanking() {
+        return playerRanking;
+    }
+
+    /**
+     * @return the amount of clan players kept in memory
+     */
+    public int getResidentClanPlayersCount() {
+        return clanPlayers.size();
     }
 
     /**
@@ -120,6 +187,8 @@ public final class ClanManager {
      */
     public void importClan(Clan clan) {
         this.clans.put(clan.getTag(), clan);
+        clansSnapshot.invalidate();
+        clanRanking.invalidate();
     }
 
     /**
@@ -129,10 +198,56 @@ public final class ClanManager {
      */
     public void importClanPlayer(ClanPlayer cp) {
 		if (cp.getUniqueId() != null) {
-			this.clanPlayers.put(cp.getUniqueId().toString(), cp);
+			this.clanPlayers.put(cp.getUniqueId(), cp);
+			clanPlayersSnapshot.invalidate();
+			indexName(cp.getName(), cp.getUniqueId());
+			playerRanking.add(cp);
 		}
     }
 
+    /**
+     * Returns the UUID of a clan player in memory by their name, ignoring case
+     *
+     * @param playerName
+     * @return null if no clan player in memory has that name
+     */
+    public UUID getPlayerUniqueId(String playerName) {
+        if (playerName == null) {
+            return null;
+        }
+        return playerNames.get(playerName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Updates the name of a joining player's data and the name index
+     *
+     * @param player
+     */
+    public void updatePlayerName(Player player) {
+        ClanPlayer cp = clanPlayers.get(player.getUniqueId());
+
+        if (cp == null) {
+            return;
+        }
+        if (!player.getName().equals(cp.getName())) {
+            unindexName(cp.getName(), cp.getUniqueId());
+            cp.setName(player.getName());
+        }
+        indexName(cp.getName(), cp.getUniqueId());
+    }
+
+    private void indexName(String name, UUID uuid) {
+        if (name != null) {
+            playerNames.put(name.toLowerCase(Locale.ROOT), uuid);
+        }
+    }
+
+    private void unindexName(String name, UUID uuid) {
+        if (name != null) {
+            playerNames.remove(name.toLowerCase(Locale.ROOT), uuid);
+        }
+    }
+
     /**
      * Create a new clan
      *
@@ -148,6 +263,7 @@ public final class ClanManager {
         Clan clan = new Clan(colorTag, name, verified);
         clan.addPlayerToClan(cp);
         cp.setLeader(true);
+        updateDisplayName(player);
 
         plugin.getStorageManager().insertClan(clan);
         importClan(clan);
@@ -167,7 +283,7 @@ public final class ClanManager {
         cp.setNeutralKills(0);
         cp.setRivalKills(0);
         cp.setDeaths(0);
-        plugin.getStorageManager().updateClanPlayer(cp);
+        plugin.getStorageManager().resetKillCounters(cp);
     }
 
     /**
@@ -180,7 +296,11 @@ public final class ClanManager {
 		if (clan != null) {
 			clan.removePlayerFromClan(cp.getUniqueId());
 		}
-        clanPlayers.remove(cp.getUniqueId().toString());
+        clanPlayers.remove(cp.getUniqueId());
+        clanPlayersSnapshot.invalidate();
+        unindexName(cp.getName(), cp.getUniqueId());
+        playerRanking.remove(cp.getUniqueId());
+        clanPlayerCache.invalidate(cp.getUniqueId());
         plugin.getStorageManager().deleteClanPlayer(cp);
     }
 
@@ -190,7 +310,13 @@ public final class ClanManager {
      * @param playerUniqueId
      */
     public void deleteClanPlayerFromMemory(UUID playerUniqueId) {
-        clanPlayers.remove(playerUniqueId.toString());
+        ClanPlayer cp = clanPlayers.remove(playerUniqueId);
+
+        if (cp != null) {
+            clanPlayersSnapshot.invalidate();
+            unindexName(cp.getName(), playerUniqueId);
+            playerRanking.remove(playerUniqueId);
+        }
     }
 
     /**
@@ -200,6 +326,8 @@ public final class ClanManager {
      */
     public void removeClan(String tag) {
         clans.remove(tag);
+        clansSnapshot.invalidate();
+        clanRanking.invalidate();
     }
 
     /**
@@ -240,19 +368,31 @@ public final class ClanManager {
     }
 
     /**
-     * @return the clans
+     * Returns the clans, shared until a clan is added or removed
+     *
+     * @return an unmodifiable snapshot of the clans
      */
     public List<Clan> getClans() {
-        return new ArrayList<>(clans.values());
+        return clansSnapshot.getList();
     }
 
     /**
      * Returns the collection of all clan players, including the disabled ones
+     * (only the ones in memory if the lazy mode is on), shared until a player is added or removed
      *
-     * @return
+     * @return an unmodifiable snapshot of the clan players
      */
     public List<ClanPlayer> getAllClanPlayers() {
-        return new ArrayList<>(clanPlayers.values());
+        return clanPlayersSnapshot.getList();
+    }
+
+    /**
+     * Returns the same players as {@link #getAllClanPlayers()}, as a set for fast contains checks
+     *
+     * @return an unmodifiable snapshot of the clan players
+     */
+    public Set<ClanPlayer> getAllClanPlayersSet() {
+        return clanPlayersSnapshot.getSet();
     }
 
     /**
@@ -297,7 +437,11 @@ public final class ClanManager {
      * @return
      */
     public ClanPlayer getClanPlayer(UUID playerUniqueId) {
-        ClanPlayer cp = clanPlayers.get(playerUniqueId.toString());
+        if (playerUniqueId == null) {
+            return null;
+        }
+
+        ClanPlayer cp = clanPlayers.get(playerUniqueId);
 
         if (cp == null) {
             return null;
@@ -324,7 +468,7 @@ public final class ClanManager {
             return null;
         }
 
-        ClanPlayer cp = clanPlayers.get(uuid.toString());
+        ClanPlayer cp = clanPlayers.get(uuid);
 
         if (cp == null) {
             return null;
@@ -347,7 +491,96 @@ public final class ClanManager {
      * @return
      */
     public ClanPlayer getAnyClanPlayer(UUID playerUniqueId) {
-        return clanPlayers.get(playerUniqueId.toString());
+        if (playerUniqueId == null) {
+            return null;
+        }
+
+        ClanPlayer cp = clanPlayers.get(playerUniqueId);
+
+        if (cp == null && plugin.getSettingsManager().isLazyPlayers()) {
+            // answered by a later call once the player is loaded
+            cp = clanPlayerCache.get(playerUniqueId);
+        }
+
+        return cp;
+    }
+
+    /**
+     * Gets the ClanPlayer data object for the player, like {@link #getAnyClanPlayer(UUID)}, loading it from the
+     * database first if the lazy mode is on and it is not in memory
+     *
+     * @param playerUniqueId
+     * @param callback called on the main thread with the player, or null if it has no data
+     */
+    public void getAnyClanPlayer(UUID playerUniqueId, Consumer<ClanPlayer> callback) {
+        ClanPlayer cp = clanPlayers.get(playerUniqueId);
+
+        if (cp == null && plugin.getSettingsManager().isLazyPlayers()) {
+            clanPlayerCache.get(playerUniqueId, callback);
+            return;
+        }
+
+        callback.accept(cp);
+    }
+
+    /**
+     * Loads the player into the cache before they join, if the lazy mode is on and they are not in memory
+     * (called off the main thread)
+     *
+     * @param playerUniqueId
+     */
+    public void preloadClanPlayer(UUID playerUniqueId) {
+        if (plugin.getSettingsManager().isLazyPlayers() && !clanPlayers.containsKey(playerUniqueId)) {
+            clanPlayerCache.load(playerUniqueId);
+        }
+    }
+
+    /**
+     * Keeps the player in memory while they are online, if the lazy mode is on
+     *
+     * @param player
+     */
+    public void makeResident(Player player) {
+        UUID uuid = player.getUniqueId();
+
+        if (plugin.getSettingsManager().isLazyPlayers() && !clanPlayers.containsKey(uuid)) {
+            ClanPlayer cp = clanPlayerCache.take(uuid);
+
+            if (cp != null) {
+                importClanPlayer(cp);
+            }
+        }
+    }
+
+    /**
+     * Tracks the player in their clan's online members
+     *
+     * @param player
+     * @param online whether the player joined or left the server
+     */
+    public void updateOnlineMember(Player player, boolean online) {
+        ClanPlayer cp = clanPlayers.get(player.getUniqueId());
+
+        if (cp != null && cp.getClan() != null) {
+            cp.getClan().setMemberOnline(player.getUniqueId(), online);
+        }
+    }
+
+    /**
+     * Moves the player from memory to the cache if the lazy mode is on and they are not in a clan
+     *
+     * @param player
+     */
+    public void releaseResident(Player player) {
+        UUID uuid = player.getUniqueId();
+        ClanPlayer cp = clanPlayers.get(uuid);
+
+        if (plugin.getSettingsManager().isLazyPlayers() && cp != null && cp.getClan() == null) {
+            clanPlayers.remove(uuid);
+            clanPlayersSnapshot.invalidate();
+            playerRanking.remove(uuid);
+            clanPlayerCache.put(uuid, cp);
+        }
     }
 
     /**
@@ -372,8 +605,19 @@ public final class ClanManager {
      * @return
      */
     public ClanPlayer getCreateClanPlayer(UUID playerUniqueId) {
-        if (clanPlayers.containsKey(playerUniqueId.toString())) {
-            return clanPlayers.get(playerUniqueId.toString());
+        ClanPlayer resident = clanPlayers.get(playerUniqueId);
+        if (resident != null) {
+            return resident;
+        }
+
+        if (plugin.getSettingsManager().isLazyPlayers()) {
+            // the player may have data that is not in memory
+            ClanPlayer cp = clanPlayerCache.take(playerUniqueId);
+
+            if (cp != null) {
+                importClanPlayer(cp);
+                return cp;
+            }
         }
 
         ClanPlayer cp = new ClanPlayer(playerUniqueId);
@@ -1116,7 +1360,7 @@ public final class ClanManager {
 
         double price = plugin.getSettingsManager().getHomeRegroupPrice();
         if (!plugin.getSettingsManager().iseUniqueTaxOnRegroup()) {
-            price = price * cp.getClan().getOnlineMembers().size();
+            price = price * cp.getClan().getOnlineMembersCount();
         }
 
         if (plugin.getSettingsManager().iseIssuerPaysRegroup()) {
@@ -1231,63 +1475,175 @@ public final class ClanManager {
                 ChatBlock.sendMessage(player, lang("unmuted.clan.chat", player));
             }
         } else {
-            final List<ClanPlayer> receivers = new LinkedList<>();
-            for (ClanPlayer p : cp.getClan().getOnlineMembers()) {
-                if (!p.isMuted()) {
-                    receivers.add(p);
-                }
-            }
+            List<ClanPlayer> receivers = cp.getClan().getOnlineMembers();
+            receivers.removeIf(ClanPlayer::isMuted);
 
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    ChatEvent ce = new ChatEvent(msg, cp, receivers, ChatEvent.Type.CLAN);
-                    Bukkit.getServer().getPluginManager().callEvent(ce);
+            fireChatEvent(new ChatEvent(msg, cp, receivers, ChatEvent.Type.CLAN, isAsyncChat()), ce -> {
+                String message = Helper.formatClanChat(cp, ce.getMessage(), ce.getPlaceholders());
+                String eyeMessage = Helper.formatSpyClanChat(cp, message);
+                plugin.getServer().getConsoleSender().sendMessage(eyeMessage);
 
-                    if (ce.isCancelled()) {
-                        return;
-                    }
+                ChatBlock.sendMessage(ce.getReceivers(), message);
 
-                    String message = Helper.formatClanChat(cp, ce.getMessage(), ce.getPlaceholders());
-                    String eyeMessage = Helper.formatSpyClanChat(cp, message);
-                    plugin.getServer().getConsoleSender().sendMessage(eyeMessage);
+                sendToAllSeeing(eyeMessage, ce.getReceivers());
+            });
+        }
+    }
 
-                    for (ClanPlayer p : ce.getReceivers()) {
-                        ChatBlock.sendMessage(p.toPlayer(), message);
-                    }
+    /**
+     * Whether the clan and ally chat can be delivered on the current thread without waiting for the main thread:
+     * only the chat thread calls this off the main thread, and no other plugin listens to the {@link ChatEvent}
+     */
+    private boolean isAsyncChat() {
+        return !Bukkit.isPrimaryThread() && ChatEvent.getHandlerList().getRegisteredListeners().length == 0;
+    }
 
-                    sendToAllSeeing(eyeMessage, ce.getReceivers());
-                }
-            }.runTask(plugin);
+    /**
+     * Fires the chat event on the thread it was made for, hopping to the main thread otherwise,
+     * and delivers it if it was not cancelled
+     */
+    private void fireChatEvent(ChatEvent event, Consumer<ChatEvent> delivery) {
+        Runnable fire = () -> {
+            Bukkit.getServer().getPluginManager().callEvent(event);
+
+            if (!event.isCancelled()) {
+                delivery.accept(event);
+            }
+        };
+
+        if (event.isAsynchronous() || Bukkit.isPrimaryThread()) {
+            fire.run();
+        } else {
+            plugin.getServer().getScheduler().runTask(plugin, fire);
         }
     }
 
     public void sendToAllSeeing(String msg, List<ClanPlayer> cps) {
-        Collection<Player> players = Helper.getOnlinePlayers();
+        // kept up to date on the main thread, so the chat thread never queries the permissions plugin
+        Set<UUID> spies = allSeeing;
 
-        for (Player player : players) {
-            if (plugin.getPermissionsManager().has(player, "simpleclans.admin.all-seeing-eye")) {
-                boolean alreadySent = false;
+        if (spies.isEmpty()) {
+            return;
+        }
 
-                ClanPlayer cp = plugin.getClanManager().getClanPlayer(player);
+        Set<UUID> alreadySent = new HashSet<>();
+        for (ClanPlayer cpp : cps) {
+            alreadySent.add(cpp.getUniqueId());
+        }
 
-                if (cp != null && cp.isMuted()) {
-                    continue;
-                }
+        for (UUID uuid : spies) {
+            if (alreadySent.contains(uuid)) {
+                continue;
+            }
 
-                for (ClanPlayer cpp : cps) {
-                    if (cpp.getName().equalsIgnoreCase(player.getName())) {
-                        alreadySent = true;
-                    }
-                }
+            ClanPlayer cp = getClanPlayer(uuid);
 
-                if (!alreadySent) {
-                    ChatBlock.sendMessage(player, msg);
-                }
+            if (cp != null && cp.isMuted()) {
+                continue;
+            }
+
+            // may have left since the set was read
+            Player spy = Bukkit.getPlayer(uuid);
+
+            if (spy != null) {
+                ChatBlock.sendMessage(spy, msg);
             }
         }
     }
 
+    /**
+     * Updates whether an online player has the all-seeing eye, called when they join or leave the server
+     *
+     * @param player
+     * @param online
+     */
+    public void updateAllSeeing(Player player, boolean online) {
+        if (online && plugin.getPermissionsManager().has(player, "simpleclans.admin.all-seeing-eye")) {
+            allSeeing.add(player.getUniqueId());
+        } else {
+            allSeeing.remove(player.getUniqueId());
+        }
+    }
+
+    /**
+     * Updates the chat channels an online player turned off, called when they join or leave the server
+     *
+     * @param player
+     * @param online
+     */
+    public void updateHiddenChannels(Player player, boolean online) {
+        ClanPlayer cp = online ? getAnyClanPlayer(player.getUniqueId()) : null;
+
+        if (cp == null) {
+            hiddenChannels.remove(player.getUniqueId());
+        } else {
+            updateHiddenChannels(cp);
+        }
+    }
+
+    /**
+     * Updates the chat channels a player turned off, called when they toggle a channel
+     *
+     * @param cp
+     */
+    public void updateHiddenChannels(ClanPlayer cp) {
+        UUID uuid = cp.getUniqueId();
+
+        if (uuid == null || Bukkit.getPlayer(uuid) == null) {
+            return;
+        }
+
+        int hidden = (cp.isGlobalChat() ? 0 : CHANNEL_GLOBAL)
+                | (cp.isAllyChat() ? 0 : CHANNEL_ALLY)
+                | (cp.isClanChat() ? 0 : CHANNEL_CLAN);
+
+        if (hidden == 0) {
+            hiddenChannels.remove(uuid);
+        } else {
+            hiddenChannels.put(uuid, hidden);
+        }
+    }
+
+    /**
+     * Rebuilds the chat channels turned off by every online player, called after the players are loaded
+     */
+    public void updateHiddenChannels() {
+        hiddenChannels.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            updateHiddenChannels(player, true);
+        }
+    }
+
+    /**
+     * @return whether any online player turned off a chat channel
+     */
+    public boolean hasHiddenChannels() {
+        return !hiddenChannels.isEmpty();
+    }
+
+    /**
+     * Checks if a player turned off any of the chat channels, which only applies to clan members
+     *
+     * @param player
+     * @param channels the channels, e.g. {@link #CHANNEL_CLAN}
+     * @return
+     */
+    public boolean isChannelHidden(Player player, int channels) {
+        Integer hidden = hiddenChannels.get(player.getUniqueId());
+        return hidden != null && (hidden & channels) != 0 && getClanPlayer(player) != null;
+    }
+
+    /**
+     * Checks the permission of every online player again, called periodically on the main thread
+     * as there is no event for permission changes
+     */
+    public void refreshAllSeeing() {
+        allSeeing.removeIf(uuid -> Bukkit.getPlayer(uuid) == null);
+        for (Player player : Helper.getOnlinePlayers()) {
+            updateAllSeeing(player, true);
+        }
+    }
+
     /**
      * Processes a ally chat command
      *
@@ -1334,40 +1690,26 @@ public final class ClanManager {
                 ChatBlock.sendMessage(player, lang("unmuted.ally.chat", player));
             }
         } else {
-            final List<ClanPlayer> receivers = new LinkedList<>();
-            Set<ClanPlayer> allies = cp.getClan().getAllAllyMembers();
-            allies.addAll(cp.getClan().getMembers());
-            for (ClanPlayer ally : allies) {
-                if (ally.isMutedAlly()) {
-                    continue;
+            // only the online members can receive it
+            List<ClanPlayer> receivers = cp.getClan().getOnlineMembers();
+            for (String tag : cp.getClan().getAllies()) {
+                Clan ally = getClan(tag);
+
+                if (ally != null) {
+                    receivers.addAll(ally.getOnlineMembers());
                 }
-				if (player.getUniqueId().equals(ally.getUniqueId())) {
-					continue;
-				}
-                receivers.add(ally);
             }
+            receivers.removeIf(ally -> ally.isMutedAlly() || player.getUniqueId().equals(ally.getUniqueId()));
 
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    ChatEvent ce = new ChatEvent(msg, cp, receivers, ChatEvent.Type.ALLY);
-                    Bukkit.getServer().getPluginManager().callEvent(ce);
+            fireChatEvent(new ChatEvent(msg, cp, receivers, ChatEvent.Type.ALLY, isAsyncChat()), ce -> {
+                String message = Helper.formatAllyChat(cp, ce.getMessage(), ce.getPlaceholders());
+                plugin.getLogger().info(message);
 
-                    if (ce.isCancelled()) {
-                        return;
-                    }
+                Player self = cp.toPlayer();
+                ChatBlock.sendMessage(self, message);
 
-                    String message = Helper.formatAllyChat(cp, ce.getMessage(), ce.getPlaceholders());
-                    plugin.getLogger().info(message);
-
-                    Player self = cp.toPlayer();
-                    ChatBlock.sendMessage(self, message);
-
-                    for (ClanPlayer p : ce.getReceivers()) {
-                        ChatBlock.sendMessage(p.toPlayer(), message);
-                    }
-                }
-            }.runTask(plugin);
+                ChatBlock.sendMessage(ce.getReceivers(), message);
+            });
         }
     }
 
@@ -0,0 +1,89 @@
+package net.sacredlabyrinth.phaed.simpleclans.managers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Placeholder values grouped by scope, e.g. a player or a clan
+ * <p>
+ * A scope is invalidated as a whole when the plugin fires an event that changes it. Values also expire after the
+ * configured TTL, which covers the values changed without an event, like the chat toggles or the last seen date.
+ */
+public class PlaceholderCache {
+
+    private final SimpleClans plugin;
+    private final Map<String, Map<String, Entry>> scopes = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PlaceholderCache(SimpleClans plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Returns a cached value, computing it on a miss
+     *
+     * @param scope the scope of the value
+     * @param identifier the placeholder identifier
+     * @param value computes the value
+     * @return the value
+     */
+    public String get(String scope, String identifier, Supplier<String> value) {
+        Map<String, Entry> entries = scopes.computeIfAbsent(scope, s -> new ConcurrentHashMap<>());
+        Entry entry = entries.get(identifier);
+        if (entry != null && !isExpired(entry)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        String computed = value.get();
+        entries.put(identifier, new Entry(computed));
+        return computed;
+    }
+
+    /**
+     * Removes all values of a scope
+     *
+     * @param scope the scope
+     */
+    public void invalidate(String scope) {
+        scopes.remove(scope);
+    }
+
+    public void clear() {
+        scopes.clear();
+    }
+
+    /**
+     * @return the amount of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the amount of lookups that computed the value
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private boolean isExpired(Entry entry) {
+        int ttl = plugin.getSettingsManager().getPlaceholderCacheTtl();
+        return ttl > 0 && System.currentTimeMillis() - entry.createdAt >= TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Entry(String value) {
+            this.value = value;
+        }
+    }
+}
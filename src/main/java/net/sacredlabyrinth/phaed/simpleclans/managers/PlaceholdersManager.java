@@ -2,18 +2,36 @@ package net.sacredlabyrinth.phaed.simpleclans.managers;
 
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 
 import me.clip.placeholderapi.PlaceholderAPI;
 import me.clip.placeholderapi.PlaceholderHook;
 
 import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanRanking;
 import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+import net.sacredlabyrinth.phaed.simpleclans.events.AddKillEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.AllyClanAddEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.AllyClanRemoveEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.CreateClanEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.DisbandClanEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.PlayerDemoteEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.PlayerJoinedClanEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.PlayerKickedClanEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.PlayerPromoteEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.RivalClanAddEvent;
+import net.sacredlabyrinth.phaed.simpleclans.events.RivalClanRemoveEvent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.UUID;
 
 import static me.clip.placeholderapi.PlaceholderAPIPlugin.booleanFalse;
 import static me.clip.placeholderapi.PlaceholderAPIPlugin.booleanTrue;
@@ -29,6 +47,8 @@ import static me.clip.placeholderapi.PlaceholderAPIPlugin.booleanTrue;
 public final class PlaceholdersManager {
 
 	private static final String TOP_CLANS_IDENTIFIER = "topclans_";
+	private static final String CLAN_IDENTIFIER = "clan_";
+	private static final String TOP_CLANS_SCOPE = "top";
 	
 	/**
 	 * The {@link SimpleClans} {@link Plugin} instance
@@ -38,6 +58,12 @@ public final class PlaceholdersManager {
 	
 	private final SimpleClans plugin;
 	
+	/**
+	 * The cached placeholder values, invalidated by the {@link CacheListener}
+	 */
+	
+	private final PlaceholderCache cache;
+	
 	/**
 	 * The {@link PlaceholdersManager} constructor
 	 * 
@@ -46,7 +72,17 @@ public final class PlaceholdersManager {
 	
 	public PlaceholdersManager(SimpleClans plugin) {
 		this.plugin = plugin;
+		this.cache = new PlaceholderCache(plugin);
 		setupPlaceholderAPI();
+		plugin.getServer().getPluginManager().registerEvents(new CacheListener(), plugin);
+	}
+	
+	/**
+	 * @return the cached placeholder values
+	 */
+	
+	public PlaceholderCache getCache() {
+		return cache;
 	}
 	
 	/**
@@ -86,6 +122,25 @@ public final class PlaceholdersManager {
 	 */
 	@NotNull
 	public String getPlaceholderValue(@Nullable ClanPlayer player, String identifier) {
+		if (!plugin.getSettingsManager().isPlaceholderCache()) {
+			return computePlaceholderValue(player, identifier);
+		}
+		if (identifier.startsWith(TOP_CLANS_IDENTIFIER)) {
+			return cache.get(TOP_CLANS_SCOPE, identifier, () -> getTopClansPlaceholderValue(identifier));
+		}
+		if (player == null) return "";
+		
+		// the clan values are shared by all members
+		if (identifier.startsWith(CLAN_IDENTIFIER)) {
+			Clan clan = player.getClan();
+			if (clan == null) return "";
+			return cache.get(getScope(clan), identifier, () -> computePlaceholderValue(player, identifier));
+		}
+		return cache.get(getScope(player), identifier, () -> computePlaceholderValue(player, identifier));
+	}
+	
+	@NotNull
+	private String computePlaceholderValue(@Nullable ClanPlayer player, String identifier) {
 		if (identifier.startsWith(TOP_CLANS_IDENTIFIER)) {
 			return getTopClansPlaceholderValue(identifier);
 		}
@@ -116,6 +171,10 @@ public final class PlaceholdersManager {
 			case "kdr": {
 				return String.valueOf(player.getKDR());
 			}
+			case "leaderboard_position": {
+				int position = plugin.getClanManager().getPlayerRanking().getPosition(player.getUniqueId());
+				return position == 0 ? "" : String.valueOf(position);
+			}
 			case "in_clan": {
 				return (clan != null) ? booleanTrue() : booleanFalse();
 			}
@@ -267,13 +326,13 @@ public final class PlaceholdersManager {
 				return String.valueOf(clan.getInactiveDays());
 			}
 			case "clan_onlinemembers_count": {
-				return String.valueOf(clan.getOnlineMembers().size());
+				return String.valueOf(clan.getOnlineMembersCount());
 			}
 			case "clan_allies_count": {
-				return String.valueOf(clan.getAllies().size());
+				return String.valueOf(clan.getAlliesCount());
 			}
 			case "clan_rivals_count": {
-				return String.valueOf(clan.getRivals().size());
+				return String.valueOf(clan.getRivalsCount());
 			}
 			default:
 				break;
@@ -295,15 +354,12 @@ public final class PlaceholdersManager {
 		} catch (NumberFormatException ex) {
 			return "";
 		}
-		List<Clan> clans = plugin.getClanManager().getClans();
+		Clan clan = plugin.getClanManager().getClanRanking().getClan(ClanRanking.Order.KDR, position);
 		//validating position
-		if (position < 1 || position > clans.size()) {
+		if (clan == null) {
 			return "";
 		}
 
-		plugin.getClanManager().sortClansByKDR(clans);
-
-		Clan clan = clans.get(position - 1);
 		if (identifier.endsWith("_color_tag")) {
 			return clan.getColorTag();
 		}
@@ -316,4 +372,122 @@ public final class PlaceholdersManager {
 		}
 		return "";
 	}
+	
+	private static String getScope(ClanPlayer player) {
+		return getScope(player.getUniqueId());
+	}
+	
+	private static String getScope(UUID playerUniqueId) {
+		return "player:" + playerUniqueId;
+	}
+	
+	private static String getScope(Clan clan) {
+		return "clan:" + clan.getTag();
+	}
+	
+	private void invalidate(@Nullable ClanPlayer player) {
+		if (player == null) return;
+		cache.invalidate(getScope(player));
+		if (player.getClan() != null) {
+			invalidate(player.getClan());
+		}
+	}
+	
+	private void invalidate(Clan clan) {
+		cache.invalidate(getScope(clan));
+		cache.invalidate(TOP_CLANS_SCOPE);
+	}
+	
+	/**
+	 * Invalidates the values changed by the events, some of which are fired before the change is applied,
+	 * so those are invalidated again on the next tick
+	 */
+	
+	private class CacheListener implements Listener {
+		
+		@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+		public void onAddKill(AddKillEvent event) {
+			invalidate(event.getAttacker());
+			invalidate(event.getVictim());
+			plugin.getServer().getScheduler().runTask(plugin, () -> {
+				invalidate(event.getAttacker());
+				invalidate(event.getVictim());
+			});
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onJoinedClan(PlayerJoinedClanEvent event) {
+			invalidate(event.getClanPlayer());
+			invalidate(event.getClan());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onKickedClan(PlayerKickedClanEvent event) {
+			invalidate(event.getClanPlayer());
+			invalidate(event.getClan());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onPromote(PlayerPromoteEvent event) {
+			invalidate(event.getClanPlayer());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onDemote(PlayerDemoteEvent event) {
+			invalidate(event.getClanPlayer());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onAllyAdd(AllyClanAddEvent event) {
+			invalidate(event.getClanFirst());
+			invalidate(event.getClanSecond());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onAllyRemove(AllyClanRemoveEvent event) {
+			invalidate(event.getClanFirst());
+			invalidate(event.getClanSecond());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onRivalAdd(RivalClanAddEvent event) {
+			invalidate(event.getClanFirst());
+			invalidate(event.getClanSecond());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onRivalRemove(RivalClanRemoveEvent event) {
+			invalidate(event.getClanFirst());
+			invalidate(event.getClanSecond());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onCreate(CreateClanEvent event) {
+			invalidateMembers(event.getClan());
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onDisband(DisbandClanEvent event) {
+			Clan clan = event.getClan();
+			List<ClanPlayer> members = clan.getMembers();
+			invalidateMembers(clan);
+			plugin.getServer().getScheduler().runTask(plugin, () -> members.forEach(PlaceholdersManager.this::invalidate));
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onJoin(PlayerJoinEvent event) {
+			invalidate(plugin.getClanManager().getClanPlayer(event.getPlayer()));
+		}
+		
+		@EventHandler(priority = EventPriority.MONITOR)
+		public void onQuit(PlayerQuitEvent event) {
+			invalidate(plugin.getClanManager().getClanPlayer(event.getPlayer()));
+			cache.invalidate(getScope(event.getPlayer().getUniqueId()));
+		}
+		
+		private void invalidateMembers(Clan clan) {
+			invalidate(clan);
+			clan.getMembers().forEach(PlaceholdersManager.this::invalidate);
+		}
+	}
 }
\ No newline at end of file
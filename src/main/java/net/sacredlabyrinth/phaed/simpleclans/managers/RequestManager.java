@@ -51,7 +51,7 @@ public final class RequestManager {
 
         ClanPlayer demotedTp = plugin.getClanManager().getClanPlayer(UUIDMigration.getForcedPlayerUUID(demotedName));
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(clan.getLeaders());
+        List<ClanPlayer> acceptors = clan.getOnlineLeaders();
         acceptors.remove(demotedTp);
 
         Request req = new Request(plugin, ClanRequest.DEMOTE, acceptors, requester, demotedName, clan, msg);
@@ -73,7 +73,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("asking.for.the.promotion"), requester.getName(), promotedName);
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(clan.getLeaders());
+        List<ClanPlayer> acceptors = clan.getOnlineLeaders();
 
         Request req = new Request(plugin, ClanRequest.PROMOTE, acceptors, requester, promotedName, clan, msg);
         requests.put(req.getClan().getTag(), req);
@@ -93,7 +93,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("asking.for.the.deletion"), requester.getName());
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(clan.getLeaders());
+        List<ClanPlayer> acceptors = clan.getOnlineLeaders();
 
         Request req = new Request(plugin, ClanRequest.DISBAND, acceptors, requester, clan.getTag(), clan, msg);
         requests.put(req.getTarget(), req);
@@ -131,7 +131,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("proposing.war"), requestingClan.getName(), Helper.stripColors(warClan.getColorTag()));
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(warClan.getLeaders());
+        List<ClanPlayer> acceptors = warClan.getOnlineLeaders();
         acceptors.remove(requester);
 
         Request req = new Request(plugin, ClanRequest.START_WAR, acceptors, requester, warClan.getTag(), requestingClan, msg);
@@ -152,7 +152,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("proposing.to.end.the.war"), requestingClan.getName(), Helper.stripColors(warClan.getColorTag()));
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(warClan.getLeaders());
+        List<ClanPlayer> acceptors = warClan.getOnlineLeaders();
         acceptors.remove(requester);
 
         Request req = new Request(plugin, ClanRequest.END_WAR, acceptors, requester, warClan.getTag(), requestingClan, msg);
@@ -173,7 +173,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("proposing.an.alliance"), requestingClan.getName(), Helper.stripColors(allyClan.getColorTag()));
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(allyClan.getLeaders());
+        List<ClanPlayer> acceptors = allyClan.getOnlineLeaders();
         acceptors.remove(requester);
 
         Request req = new Request(plugin, ClanRequest.CREATE_ALLY, acceptors, requester, allyClan.getTag(), requestingClan, msg);
@@ -194,7 +194,7 @@ public final class RequestManager {
     	}
 		String msg = MessageFormat.format(plugin.getLang("proposing.to.end.the.rivalry"), requestingClan.getName(), Helper.stripColors(rivalClan.getColorTag()));
 
-        List<ClanPlayer> acceptors = Helper.stripOffLinePlayers(rivalClan.getLeaders());
+        List<ClanPlayer> acceptors = rivalClan.getOnlineLeaders();
         acceptors.remove(requester);
 
         Request req = new Request(plugin, ClanRequest.BREAK_RIVALRY, acceptors, requester, rivalClan.getTag(), requestingClan, msg);
@@ -3,14 +3,17 @@ package net.sacredlabyrinth.phaed.simpleclans.managers;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 import org.bukkit.configuration.file.FileConfiguration;
 
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+import net.sacredlabyrinth.phaed.simpleclans.utils.ChatTemplate;
 
 /**
  * @author phaed
@@ -46,7 +49,7 @@ public final class SettingsManager {
     private String listAsc;
     private String listDesc;
     private List<Integer> itemsList;
-    private List<String> blacklistedWorlds;
+    private Set<String> blacklistedWorlds;
     private List<String> bannedPlayers;
     private List<String> disallowedWords;
     private List<String> disallowedColors;
@@ -123,6 +126,8 @@ public final class SettingsManager {
     private boolean allyChatEnable;
     private String allyChatFormat;
     private String allyChatRank;
+    private ChatTemplate allyChatTemplate;
+    private ChatTemplate allyChatRankTemplate;
     private String allyChatLeaderColor;
     private String allyChatTrustedColor;
     private String allyChatMemberColor;
@@ -137,6 +142,8 @@ public final class SettingsManager {
     private boolean clanChatEnable;
     private String clanChatFormat;
     private String clanChatRank;
+    private ChatTemplate clanChatTemplate;
+    private ChatTemplate clanChatRankTemplate;
     private String clanChatLeaderColor;
     private String clanChatTrustedColor;
     private String clanChatMemberColor;
@@ -191,6 +198,26 @@ public final class SettingsManager {
 	private boolean languagePerPlayer;
 	private boolean savePeriodically;
 	private int saveInterval;
+    private int poolMaxSize;
+    private int poolMinIdle;
+    private int poolIdleTimeout;
+    private int poolMaxWait;
+    private int writerThreads;
+    private int writeQueueCapacity;
+    private boolean killJournal;
+    private int killJournalFlushInterval;
+    private int killJournalMaxRows;
+    private boolean killRetention;
+    private int killRetentionDays;
+    private int killRetentionChunkSize;
+    private int killRetentionInterval;
+    private boolean killRetentionDryRun;
+    private boolean lazyPlayers;
+    private int lazyPlayersCacheSize;
+    private int lazyPlayersCacheExpiry;
+    private int clanRankingRefreshInterval;
+    private boolean placeholderCache;
+    private int placeholderCacheTtl;
 
     /**
      *
@@ -236,7 +263,10 @@ public final class SettingsManager {
         allowResetKdr = getConfig().getBoolean("settings.allow-reset-kdr");
         compatMode = getConfig().getBoolean("settings.chat-compatibility-mode");
         disallowedColors = getConfig().getStringList("settings.disallowed-tag-colors");
-        blacklistedWorlds = getConfig().getStringList("settings.blacklisted-worlds");
+        blacklistedWorlds = new HashSet<>();
+        for (String world : getConfig().getStringList("settings.blacklisted-worlds")) {
+            blacklistedWorlds.add(world.toLowerCase(Locale.ROOT));
+        }
         disallowedWords = getConfig().getStringList("settings.disallowed-tags");
         unRivableClans = getConfig().getStringList("settings.unrivable-clans");
         showUnverifiedOnList = getConfig().getBoolean("settings.show-unverified-on-list");
@@ -331,6 +361,8 @@ public final class SettingsManager {
         allyChatEnable = getConfig().getBoolean("allychat.enable");
         allyChatFormat = getConfig().getString("allychat.format");
         allyChatRank = getConfig().getString("allychat.rank");
+        allyChatTemplate = ChatTemplate.compile(allyChatFormat);
+        allyChatRankTemplate = ChatTemplate.compile(allyChatRank);
         allyChatLeaderColor = getConfig().getString("allychat.leader-color");
         allyChatTrustedColor = getConfig().getString("allychat.trusted-color");
         allyChatMemberColor = getConfig().getString("allychat.member-color");
@@ -345,6 +377,8 @@ public final class SettingsManager {
         clanChatEnable = getConfig().getBoolean("clanchat.enable");
         clanChatFormat = getConfig().getString("clanchat.format");
         clanChatRank = getConfig().getString("clanchat.rank");
+        clanChatTemplate = ChatTemplate.compile(clanChatFormat);
+        clanChatRankTemplate = ChatTemplate.compile(clanChatRank);
         clanChatLeaderColor = getConfig().getString("clanchat.leader-color");
         clanChatTrustedColor = getConfig().getString("clanchat.trusted-color");
         clanChatMemberColor = getConfig().getString("clanchat.member-color");
@@ -388,6 +422,26 @@ public final class SettingsManager {
         saveInterval = getConfig().getInt("performance.save-interval");
         useThreads = getConfig().getBoolean("performance.use-threads");
         useBungeeCord = getConfig().getBoolean("performance.use-bungeecord");
+        poolMaxSize = getConfig().getInt("performance.connection-pool.max-size", 10);
+        poolMinIdle = getConfig().getInt("performance.connection-pool.min-idle", 2);
+        poolIdleTimeout = getConfig().getInt("performance.connection-pool.idle-timeout", 600);
+        poolMaxWait = getConfig().getInt("performance.connection-pool.max-wait", 5000);
+        writerThreads = getConfig().getInt("performance.write-queue.threads", 2);
+        writeQueueCapacity = getConfig().getInt("performance.write-queue.capacity", 1000);
+        killJournal = getConfig().getBoolean("performance.kill-journal.enabled", false);
+        killJournalFlushInterval = getConfig().getInt("performance.kill-journal.flush-interval", 2000);
+        killJournalMaxRows = getConfig().getInt("performance.kill-journal.max-rows", 500);
+        killRetention = getConfig().getBoolean("performance.kill-retention.enabled", false);
+        killRetentionDays = getConfig().getInt("performance.kill-retention.max-age-days", 90);
+        killRetentionChunkSize = getConfig().getInt("performance.kill-retention.chunk-size", 5000);
+        killRetentionInterval = getConfig().getInt("performance.kill-retention.interval", 1440);
+        killRetentionDryRun = getConfig().getBoolean("performance.kill-retention.dry-run", false);
+        lazyPlayers = getConfig().getBoolean("performance.lazy-players.enabled", false);
+        lazyPlayersCacheSize = getConfig().getInt("performance.lazy-players.cache-size", 5000);
+        lazyPlayersCacheExpiry = getConfig().getInt("performance.lazy-players.cache-expiry", 30);
+        clanRankingRefreshInterval = getConfig().getInt("performance.clan-ranking.refresh-interval", 5);
+        placeholderCache = getConfig().getBoolean("performance.placeholder-cache.enabled", false);
+        placeholderCacheTtl = getConfig().getInt("performance.placeholder-cache.ttl", 5);
         maxMembers = getConfig().getInt("clan.max-members");
         maxKillsPerVictim = getConfig().getInt("kdr-grinding-prevention.max-kills-per-victim");
         maxKillsPerVictimEnabled = getConfig().getBoolean("kdr-grinding-prevention.enable-max-kills");
@@ -547,13 +601,7 @@ public final class SettingsManager {
      * @return whether the world is blacklisted
      */
     public boolean isBlacklistedWorld(String world) {
-        for (Object w : blacklistedWorlds) {
-            if (((String) w).equalsIgnoreCase(world)) {
-                return true;
-            }
-        }
-
-        return false;
+        return !blacklistedWorlds.isEmpty() && blacklistedWorlds.contains(world.toLowerCase(Locale.ROOT));
     }
 
     /**
@@ -1080,6 +1128,20 @@ public final class SettingsManager {
     public String getClanChatRank() {
         return clanChatRank;
     }
+
+    /**
+     * @return the clan chat format, compiled when the settings are loaded
+     */
+    public ChatTemplate getClanChatTemplate() {
+        return clanChatTemplate;
+    }
+
+    /**
+     * @return the clan chat rank format, compiled when the settings are loaded
+     */
+    public ChatTemplate getClanChatRankTemplate() {
+        return clanChatRankTemplate;
+    }
     
     public String getClanChatLeaderColor() {
         return Helper.toColor(clanChatLeaderColor);
@@ -1387,6 +1449,20 @@ public final class SettingsManager {
     public String getAllyChatRank() {
         return allyChatRank;
     }
+
+    /**
+     * @return the ally chat format, compiled when the settings are loaded
+     */
+    public ChatTemplate getAllyChatTemplate() {
+        return allyChatTemplate;
+    }
+
+    /**
+     * @return the ally chat rank format, compiled when the settings are loaded
+     */
+    public ChatTemplate getAllyChatRankTemplate() {
+        return allyChatRankTemplate;
+    }
     
     public String getAllyChatLeaderColor() {
         return Helper.toColor(allyChatLeaderColor);
@@ -1664,6 +1740,146 @@ public final class SettingsManager {
 		return savePeriodically;
 	}
 
+    /**
+     * @return the max amount of open MySQL connections
+     */
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    /**
+     * @return the amount of idle MySQL connections kept open
+     */
+    public int getPoolMinIdle() {
+        return poolMinIdle;
+    }
+
+    /**
+     * @return how long an idle connection is kept open, in seconds
+     */
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    /**
+     * @return how long to wait for a free connection, in milliseconds
+     */
+    public int getPoolMaxWait() {
+        return poolMaxWait;
+    }
+
+    /**
+     * @return the amount of threads writing to MySQL when threads are enabled
+     */
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    /**
+     * @return the max amount of pending writes per writer thread
+     */
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    /**
+     * @return whether kills and kill counters are buffered and written in batches
+     */
+    public boolean isKillJournal() {
+        return killJournal;
+    }
+
+    /**
+     * @return the interval between kill journal flushes, in milliseconds
+     */
+    public int getKillJournalFlushInterval() {
+        return Math.max(50, killJournalFlushInterval);
+    }
+
+    /**
+     * @return the amount of buffered rows that triggers a kill journal flush
+     */
+    public int getKillJournalMaxRows() {
+        return killJournalMaxRows;
+    }
+
+    /**
+     * @return whether old kills are rolled up into daily totals
+     */
+    public boolean isKillRetention() {
+        return killRetention;
+    }
+
+    /**
+     * @return the age after which kills are rolled up, in days
+     */
+    public int getKillRetentionDays() {
+        return Math.max(1, killRetentionDays);
+    }
+
+    /**
+     * @return the max amount of kills rolled up and deleted per transaction
+     */
+    public int getKillRetentionChunkSize() {
+        return Math.max(100, killRetentionChunkSize);
+    }
+
+    /**
+     * @return the interval between kill rollups, in minutes
+     */
+    public int getKillRetentionInterval() {
+        return Math.max(1, killRetentionInterval);
+    }
+
+    /**
+     * @return whether the kill rollup only reports what it would do
+     */
+    public boolean isKillRetentionDryRun() {
+        return killRetentionDryRun;
+    }
+
+    /**
+     * @return whether only clan members and online players are kept in memory, the others being loaded on demand
+     */
+    public boolean isLazyPlayers() {
+        return lazyPlayers;
+    }
+
+    /**
+     * @return the max amount of players loaded on demand kept in the cache
+     */
+    public int getLazyPlayersCacheSize() {
+        return Math.max(100, lazyPlayersCacheSize);
+    }
+
+    /**
+     * @return the time after which a player loaded on demand is evicted from the cache, in minutes
+     */
+    public int getLazyPlayersCacheExpiry() {
+        return Math.max(1, lazyPlayersCacheExpiry);
+    }
+
+    /**
+     * @return the max age of the clan rankings before they are sorted again, in seconds
+     */
+    public int getClanRankingRefreshInterval() {
+        return Math.max(0, clanRankingRefreshInterval);
+    }
+
+    /**
+     * @return whether the placeholder values are cached
+     */
+    public boolean isPlaceholderCache() {
+        return placeholderCache;
+    }
+
+    /**
+     * @return the max age of a cached placeholder value, in seconds, or 0 if they only expire on events
+     */
+    public int getPlaceholderCacheTtl() {
+        return Math.max(0, placeholderCacheTtl);
+    }
+
 	/**
 	 * Gets the interval to save the data
 	 * 
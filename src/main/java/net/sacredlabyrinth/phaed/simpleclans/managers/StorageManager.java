@@ -3,22 +3,33 @@ package net.sacredlabyrinth.phaed.simpleclans.managers;
 import com.google.common.base.Charsets;
 
 import net.sacredlabyrinth.phaed.simpleclans.*;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanDAO;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanPlayerDAO;
 import net.sacredlabyrinth.phaed.simpleclans.storage.DBCore;
+import net.sacredlabyrinth.phaed.simpleclans.storage.KillDAO;
+import net.sacredlabyrinth.phaed.simpleclans.storage.KillJournal;
+import net.sacredlabyrinth.phaed.simpleclans.storage.KillRollup;
 import net.sacredlabyrinth.phaed.simpleclans.storage.MySQLCore;
 import net.sacredlabyrinth.phaed.simpleclans.storage.SQLiteCore;
+import net.sacredlabyrinth.phaed.simpleclans.storage.StatementBinder;
 import net.sacredlabyrinth.phaed.simpleclans.uuid.UUIDFetcher;
 import net.sacredlabyrinth.phaed.simpleclans.uuid.UUIDMigration;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 
 /**
@@ -28,9 +39,13 @@ public final class StorageManager {
 
     private SimpleClans plugin;
     private DBCore core;
+    private ClanDAO clanDAO;
+    private ClanPlayerDAO clanPlayerDAO;
+    private KillDAO killDAO;
+    private KillJournal killJournal;
     private HashMap<String, ChatBlock> chatBlocks = new HashMap<>();
-    private Set<Clan> modifiedClans = new HashSet<>();
-    private Set<ClanPlayer> modifiedClanPlayers = new HashSet<>();
+    private final Set<Clan> modifiedClans = ConcurrentHashMap.newKeySet();
+    private final Set<ClanPlayer> modifiedClanPlayers = ConcurrentHashMap.newKeySet();
 
     /**
      *
@@ -39,6 +54,7 @@ public final class StorageManager {
         plugin = SimpleClans.getInstance();
         initiateDB();
         updateDatabase();
+        initiateKillJournal();
         importFromDatabase();
     }
 
@@ -220,51 +236,181 @@ public final class StorageManager {
                 SimpleClans.getInstance().getServer().getConsoleSender().sendMessage("[SimpleClans] " + ChatColor.RED + plugin.getLang("sqlite.connection.failed"));
             }
         }
+        clanDAO = new ClanDAO(core);
+        clanPlayerDAO = new ClanPlayerDAO(core);
+        killDAO = new KillDAO(core);
+    }
+
+    private void initiateKillJournal() {
+        if (!plugin.getSettingsManager().isKillJournal()) {
+            return;
+        }
+        File file = new File(plugin.getDataFolder(), "kills.journal");
+        killJournal = new KillJournal(plugin.getLogger(), core, file, plugin.getSettingsManager().getKillJournalMaxRows(), () -> {
+            if (plugin.isEnabled()) {
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::flushKillJournal);
+            }
+        });
+        killJournal.replay();
+    }
+
+    /**
+     * Rolls the kills older than the retention period up into daily totals
+     */
+    public void rollupKills() {
+        SettingsManager settings = plugin.getSettingsManager();
+        new KillRollup(plugin.getLogger(), core).run(settings.getKillRetentionDays(), settings.getKillRetentionChunkSize(),
+                settings.isKillRetentionDryRun());
+    }
+
+    /**
+     * Writes the buffered kills and kill counters to the database
+     */
+    public void flushKillJournal() {
+        if (killJournal != null) {
+            killJournal.flush();
+        }
+    }
+
+    /**
+     * @return whether kills are buffered and written in batches
+     */
+    public boolean isKillJournalEnabled() {
+        return killJournal != null;
     }
 
     /**
      * Closes DB connection
      */
     public void closeConnection() {
+        if (killJournal != null) {
+            killJournal.close();
+        }
+        int pending = core.getWriteExecutor().getQueueDepth();
+        if (pending > 0) {
+            plugin.getLogger().info("Waiting for " + pending + " pending database writes...");
+        }
         core.close();
     }
 
     /**
      * Import all data from database to memory
+     * <p>
+     * The rows are streamed and turned into objects as they arrive, players are attached to their clans in the same pass
      */
     public void importFromDatabase() {
         plugin.getClanManager().cleanData();
-
-        List<Clan> clans = retrieveClans();
-        purgeClans(clans);
-
-        for (Clan clan : clans) {
+        long start = System.currentTimeMillis();
+
+        List<Clan> clans = new ArrayList<>();
+        List<Clan> purgedClans = new ArrayList<>();
+        clanDAO.streamAll(res -> {
+            Clan clan = readClan(res);
+            if (clan == null) {
+                return;
+            }
+            if (isPurgeable(clan)) {
+                purgedClans.add(clan);
+                return;
+            }
             plugin.getClanManager().importClan(clan);
-        }
+            clans.add(clan);
+        });
 
         for (Clan clan : clans) {
             clan.validateWarring();
         }
 
+        // the streamed result must be fully read before using the connection again
+        for (Clan clan : purgedClans) {
+            plugin.getLogger().info(MessageFormat.format(plugin.getLang("purging.clan"), clan.getName()));
+            deleteClan(clan);
+        }
+
         if (!clans.isEmpty()) {
         	plugin.getLogger().info(MessageFormat.format(plugin.getLang("clans"), clans.size()));
         }
-
-        List<ClanPlayer> cps = retrieveClanPlayers();
-        purgeClanPlayers(cps);
-
-        for (ClanPlayer cp : cps) {
+        long clansTime = System.currentTimeMillis() - start;
+
+        int[] players = {0, 0};
+        boolean lazy = plugin.getSettingsManager().isLazyPlayers();
+        List<ClanPlayer> purgedPlayers = new ArrayList<>();
+        clanPlayerDAO.streamAll(res -> {
+            ClanPlayer cp = readClanPlayer(res, plugin.getClanManager()::getClan);
+            if (cp == null) {
+                return;
+            }
+            if (isPurgeable(cp)) {
+                purgedPlayers.add(cp);
+                return;
+            }
             Clan tm = cp.getClan();
 
+            if (tm == null && lazy && (cp.getUniqueId() == null || Bukkit.getPlayer(cp.getUniqueId()) == null)) {
+                // loaded on demand
+                players[1]++;
+                return;
+            }
             if (tm != null) {
                 tm.importMember(cp);
             }
             plugin.getClanManager().importClanPlayer(cp);
+            players[0]++;
+        });
+
+        for (ClanPlayer cp : purgedPlayers) {
+            plugin.getLogger().info(MessageFormat.format(plugin.getLang("purging.player.data"), cp.getName()));
+            deleteClanPlayer(cp);
         }
 
-        if (!cps.isEmpty()) {
-        	plugin.getLogger().info(MessageFormat.format(plugin.getLang("clan.players"), cps.size()));
+        if (players[0] > 0) {
+        	plugin.getLogger().info(MessageFormat.format(plugin.getLang("clan.players"), players[0]));
+        }
+        if (lazy) {
+            plugin.getLogger().info(String.format("%d players without a clan are loaded on demand", players[1]));
+        }
+        long playersTime = System.currentTimeMillis() - start - clansTime;
+
+        if (plugin.getSettingsManager().isMaxKillsPerVictim()) {
+            importKillCounts();
+        }
+        long killsTime = System.currentTimeMillis() - start - clansTime - playersTime;
+
+        // the toggles may have changed since the players were last in memory, e.g. on /clan reload
+        plugin.getClanManager().updateHiddenChannels();
+
+        plugin.getLogger().info(String.format("Data loaded in %d ms (clans: %d ms, players: %d ms, kill counts: %d ms)",
+                System.currentTimeMillis() - start, clansTime, playersTime, killsTime));
+    }
+
+    /**
+     * Loads the kill counts of every attacker and victim into memory, called on startup and reload
+     * when the max kills per victim limit is enabled
+     */
+    private void importKillCounts() {
+        KillCounter counter = plugin.getClanManager().getKillCounter();
+        counter.clear();
+        // the buffered kills are not in the counts table yet
+        flushKillJournal();
+        ResultSet res = killDAO.selectCounts();
+
+        if (res != null) {
+            try {
+                while (res.next()) {
+                    try {
+                        UUID attacker = UUID.fromString(res.getString("attacker_uuid"));
+                        UUID victim = UUID.fromString(res.getString("victim_uuid"));
+                        counter.set(attacker, victim, res.getInt("kills"));
+                    } catch (IllegalArgumentException ex) {
+                        plugin.getLogger().info(ex.getMessage());
+                    }
+                }
+            } catch (SQLException ex) {
+                plugin.getLogger().severe(String.format("An Error occurred: %s", ex.getErrorCode()));
+                plugin.getLogger().log(Level.SEVERE, null, ex);
+            }
         }
+        SimpleClans.debug("Loaded " + counter.size() + " kill counts");
     }
 
     /**
@@ -290,42 +436,151 @@ public final class StorageManager {
         }
     }
 
-    private void purgeClans(List<Clan> clans) {
-        List<Clan> purge = new ArrayList<>();
+    private boolean isPurgeable(Clan clan) {
+        if (clan.isVerified()) {
+            return clan.getInactiveDays() > plugin.getSettingsManager().getPurgeClan();
+        }
+        return clan.getInactiveDays() > plugin.getSettingsManager().getPurgeUnverified();
+    }
 
-        for (Clan clan : clans) {
-            if (clan.isVerified()) {
-                if (clan.getInactiveDays() > plugin.getSettingsManager().getPurgeClan()) {
-                    purge.add(clan);
-                }
-            } else {
-                if (clan.getInactiveDays() > plugin.getSettingsManager().getPurgeUnverified()) {
-                    purge.add(clan);
-                }
+    private boolean isPurgeable(ClanPlayer cp) {
+        return cp.getInactiveDays() > plugin.getSettingsManager().getPurgePlayers() && !cp.isLeader();
+    }
+
+    /**
+     * Reads a clan from the current row
+     *
+     * @param res the result positioned at the row
+     * @return the clan, or null if the row is invalid
+     */
+    private Clan readClan(ResultSet res) {
+        try {
+            boolean verified = res.getBoolean("verified");
+            boolean friendly_fire = res.getBoolean("friendly_fire");
+            String tag = res.getString("tag");
+            String color_tag = Helper.parseColors(res.getString("color_tag"));
+            String name = res.getString("name");
+            String description = res.getString("description");
+            String packed_allies = res.getString("packed_allies");
+            String packed_rivals = res.getString("packed_rivals");
+            String packed_bb = res.getString("packed_bb");
+            String cape_url = res.getString("cape_url");
+            String flags = res.getString("flags");
+            String ranks = res.getString("ranks");
+            long founded = res.getLong("founded");
+            long last_used = res.getLong("last_used");
+            double balance = res.getDouble("balance");
+            double feeValue = res.getDouble("fee_value");
+            boolean feeEnabled = res.getBoolean("fee_enabled");
+
+            if (founded == 0) {
+                founded = (new Date()).getTime();
             }
-        }
 
-        for (Clan clan : purge) {
-        	plugin.getLogger().info(MessageFormat.format(plugin.getLang("purging.clan"), clan.getName()));
-            deleteClan(clan);
-            clans.remove(clan);
+            if (last_used == 0) {
+                last_used = (new Date()).getTime();
+            }
+
+            Clan clan = new Clan();
+            clan.setFlags(flags);
+            clan.setVerified(verified);
+            clan.setFriendlyFire(friendly_fire);
+            clan.setTag(tag);
+            clan.setColorTag(color_tag);
+            clan.setName(name);
+            clan.setDescription(description);
+            clan.setPackedAllies(packed_allies);
+            clan.setPackedRivals(packed_rivals);
+            clan.setPackedBb(packed_bb);
+            clan.setCapeUrl(cape_url);
+            clan.setFounded(founded);
+            clan.setLastUsed(last_used);
+            clan.setBalance(balance);
+            clan.setMemberFee(feeValue);
+            clan.setMemberFeeEnabled(feeEnabled);
+            // parsed on first use
+            clan.setPackedRanks(ranks);
+            clan.pollDirtyColumns();
+
+            return clan;
+        } catch (Exception ex) {
+            for (StackTraceElement el : ex.getStackTrace()) {
+                System.out.print(el.toString());
+            }
         }
+        return null;
     }
 
-    private void purgeClanPlayers(List<ClanPlayer> cps) {
-        List<ClanPlayer> purge = new ArrayList<>();
+    /**
+     * Reads a clan player from the current row
+     *
+     * @param res the result positioned at the row
+     * @param clans resolves the player's clan by its tag
+     * @return the clan player, or null if the row is invalid
+     */
+    private ClanPlayer readClanPlayer(ResultSet res, Function<String, Clan> clans) {
+        try {
+            String uuid = res.getString("uuid");
+            String name = res.getString("name");
+            String tag = res.getString("tag");
+            boolean leader = res.getBoolean("leader");
+            boolean friendly_fire = res.getBoolean("friendly_fire");
+            boolean trusted = res.getBoolean("trusted");
+            int neutral_kills = res.getInt("neutral_kills");
+            int rival_kills = res.getInt("rival_kills");
+            int civilian_kills = res.getInt("civilian_kills");
+            int deaths = res.getInt("deaths");
+            long last_seen = res.getLong("last_seen");
+            long join_date = res.getLong("join_date");
+            String flags = res.getString("flags");
+            String packed_past_clans = Helper.parseColors(res.getString("packed_past_clans"));
+            String resign_times = res.getString("resign_times");
+
+            if (last_seen == 0) {
+                last_seen = (new Date()).getTime();
+            }
 
-        for (ClanPlayer cp : cps) {
-            if (cp.getInactiveDays() > plugin.getSettingsManager().getPurgePlayers() && !cp.isLeader()) {
-                purge.add(cp);
+            if (join_date == 0) {
+                join_date = (new Date()).getTime();
             }
-        }
 
-        for (ClanPlayer cp : purge) {
-        	plugin.getLogger().info(MessageFormat.format(plugin.getLang("purging.player.data"), cp.getName()));
-            deleteClanPlayer(cp);
-            cps.remove(cp);
+            ClanPlayer cp = new ClanPlayer();
+            if (uuid != null) {
+                cp.setUniqueId(UUID.fromString(uuid));
+            }
+            // parsed on first use
+            cp.setFlags(flags);
+            cp.setName(name);
+            cp.setLeader(leader);
+            cp.setFriendlyFire(friendly_fire);
+            cp.setNeutralKills(neutral_kills);
+            cp.setRivalKills(rival_kills);
+            cp.setCivilianKills(civilian_kills);
+            cp.setDeaths(deaths);
+            cp.setLastSeen(last_seen);
+            cp.setJoinDate(join_date);
+            cp.setPackedPastClans(packed_past_clans);
+            cp.setTrusted(leader || trusted);
+            if (resign_times != null && !resign_times.isEmpty() && !resign_times.equals("{}")) {
+                cp.setResignTimes(Helper.resignTimesFromJson(resign_times));
+            }
+
+            if (!tag.isEmpty()) {
+                Clan clan = clans.apply(tag);
+
+                if (clan != null) {
+                    cp.setClan(clan);
+                }
+            }
+            cp.pollDirtyColumns();
+
+            return cp;
+        } catch (Exception ex) {
+            for (StackTraceElement el : ex.getStackTrace()) {
+                System.out.print(el.toString());
+            }
         }
+        return null;
     }
 
     /**
@@ -336,63 +591,14 @@ public final class StorageManager {
     public List<Clan> retrieveClans() {
         List<Clan> out = new ArrayList<>();
 
-        String query = "SELECT * FROM  `sc_clans`;";
-        ResultSet res = core.select(query);
+        ResultSet res = clanDAO.selectAll();
 
         if (res != null) {
             try {
                 while (res.next()) {
-                    try {
-                        boolean verified = res.getBoolean("verified");
-                        boolean friendly_fire = res.getBoolean("friendly_fire");
-                        String tag = res.getString("tag");
-                        String color_tag = Helper.parseColors(res.getString("color_tag"));
-                        String name = res.getString("name");
-                        String description = res.getString("description");
-                        String packed_allies = res.getString("packed_allies");
-                        String packed_rivals = res.getString("packed_rivals");
-                        String packed_bb = res.getString("packed_bb");
-                        String cape_url = res.getString("cape_url");
-                        String flags = res.getString("flags");
-                        String ranks = res.getString("ranks");
-                        long founded = res.getLong("founded");
-                        long last_used = res.getLong("last_used");
-                        double balance = res.getDouble("balance");
-                        double feeValue = res.getDouble("fee_value");
-                        boolean feeEnabled = res.getBoolean("fee_enabled");
-
-                        if (founded == 0) {
-                            founded = (new Date()).getTime();
-                        }
-
-                        if (last_used == 0) {
-                            last_used = (new Date()).getTime();
-                        }
-
-                        Clan clan = new Clan();
-                        clan.setFlags(flags);
-                        clan.setVerified(verified);
-                        clan.setFriendlyFire(friendly_fire);
-                        clan.setTag(tag);
-                        clan.setColorTag(color_tag);
-                        clan.setName(name);
-                        clan.setDescription(description);
-                        clan.setPackedAllies(packed_allies);
-                        clan.setPackedRivals(packed_rivals);
-                        clan.setPackedBb(packed_bb);
-                        clan.setCapeUrl(cape_url);
-                        clan.setFounded(founded);
-                        clan.setLastUsed(last_used);
-                        clan.setBalance(balance);
-                        clan.setMemberFee(feeValue);
-                        clan.setMemberFeeEnabled(feeEnabled);
-                        clan.setRanks(Helper.ranksFromJson(ranks));
-
+                    Clan clan = readClan(res);
+                    if (clan != null) {
                         out.add(clan);
-                    } catch (Exception ex) {
-                        for (StackTraceElement el : ex.getStackTrace()) {
-                            System.out.print(el.toString());
-                        }
                     }
                 }
             } catch (SQLException ex) {
@@ -414,63 +620,14 @@ public final class StorageManager {
     public Clan retrieveOneClan(String tagClan) {
         Clan out = null;
 
-        String query = "SELECT * FROM  `sc_clans` WHERE `tag` = '" + tagClan + "';";
-        ResultSet res = core.select(query);
+        ResultSet res = clanDAO.selectByTag(tagClan);
 
         if (res != null) {
             try {
                 while (res.next()) {
-                    try {
-                        boolean verified = res.getBoolean("verified");
-                        boolean friendly_fire = res.getBoolean("friendly_fire");
-                        String tag = res.getString("tag");
-                        String color_tag = Helper.parseColors(res.getString("color_tag"));
-                        String name = res.getString("name");
-                        String description = res.getString("description");
-                        String packed_allies = res.getString("packed_allies");
-                        String packed_rivals = res.getString("packed_rivals");
-                        String packed_bb = res.getString("packed_bb");
-                        String cape_url = res.getString("cape_url");
-                        String flags = res.getString("flags");
-                        String ranks = res.getString("ranks");
-                        long founded = res.getLong("founded");
-                        long last_used = res.getLong("last_used");
-                        double balance = res.getDouble("balance");
-                        double feeValue = res.getDouble("fee_value");
-                        boolean feeEnabled = res.getBoolean("fee_enabled");
-
-                        if (founded == 0) {
-                            founded = (new Date()).getTime();
-                        }
-
-                        if (last_used == 0) {
-                            last_used = (new Date()).getTime();
-                        }
-
-                        Clan clan = new Clan();
-                        clan.setFlags(flags);
-                        clan.setVerified(verified);
-                        clan.setFriendlyFire(friendly_fire);
-                        clan.setTag(tag);
-                        clan.setColorTag(color_tag);
-                        clan.setName(name);
-                        clan.setDescription(description);
-                        clan.setPackedAllies(packed_allies);
-                        clan.setPackedRivals(packed_rivals);
-                        clan.setPackedBb(packed_bb);
-                        clan.setCapeUrl(cape_url);
-                        clan.setFounded(founded);
-                        clan.setLastUsed(last_used);
-                        clan.setBalance(balance);
-                        clan.setMemberFee(feeValue);
-                        clan.setMemberFeeEnabled(feeEnabled);
-                        clan.setRanks(Helper.ranksFromJson(ranks));
-
+                    Clan clan = readClan(res);
+                    if (clan != null) {
                         out = clan;
-                    } catch (Exception ex) {
-                        for (StackTraceElement el : ex.getStackTrace()) {
-                            System.out.print(el.toString());
-                        }
                     }
                 }
             } catch (SQLException ex) {
@@ -490,68 +647,42 @@ public final class StorageManager {
     public List<ClanPlayer> retrieveClanPlayers() {
         List<ClanPlayer> out = new ArrayList<>();
 
-        String query = "SELECT * FROM  `sc_players`;";
-        ResultSet res = core.select(query);
+        ResultSet res = clanPlayerDAO.selectAll();
 
         if (res != null) {
             try {
                 while (res.next()) {
-                    try {
-                        String uuid = res.getString("uuid");
-                        String name = res.getString("name");
-                        String tag = res.getString("tag");
-                        boolean leader = res.getBoolean("leader");
-                        boolean friendly_fire = res.getBoolean("friendly_fire");
-                        boolean trusted = res.getBoolean("trusted");
-                        int neutral_kills = res.getInt("neutral_kills");
-                        int rival_kills = res.getInt("rival_kills");
-                        int civilian_kills = res.getInt("civilian_kills");
-                        int deaths = res.getInt("deaths");
-                        long last_seen = res.getLong("last_seen");
-                        long join_date = res.getLong("join_date");
-                        String flags = res.getString("flags");
-                        String packed_past_clans = Helper.parseColors(res.getString("packed_past_clans"));
-                        String resign_times = res.getString("resign_times");
-                        
-                        if (last_seen == 0) {
-                            last_seen = (new Date()).getTime();
-                        }
-
-                        if (join_date == 0) {
-                            join_date = (new Date()).getTime();
-                        }
-
-                        ClanPlayer cp = new ClanPlayer();
-                        if (uuid != null) {
-                            cp.setUniqueId(UUID.fromString(uuid));
-                        }
-                        cp.setFlags(flags);
-                        cp.setName(name);
-                        cp.setLeader(leader);
-                        cp.setFriendlyFire(friendly_fire);
-                        cp.setNeutralKills(neutral_kills);
-                        cp.setRivalKills(rival_kills);
-                        cp.setCivilianKills(civilian_kills);
-                        cp.setDeaths(deaths);
-                        cp.setLastSeen(last_seen);
-                        cp.setJoinDate(join_date);
-                        cp.setPackedPastClans(packed_past_clans);
-                        cp.setTrusted(leader || trusted);
-                        cp.setResignTimes(Helper.resignTimesFromJson(resign_times));
-
-                        if (!tag.isEmpty()) {
-                            Clan clan = SimpleClans.getInstance().getClanManager().getClan(tag);
-
-                            if (clan != null) {
-                                cp.setClan(clan);
-                            }
-                        }
-
+                    ClanPlayer cp = readClanPlayer(res, plugin.getClanManager()::getClan);
+                    if (cp != null) {
                         out.add(cp);
-                    } catch (Exception ex) {
-                        for (StackTraceElement el : ex.getStackTrace()) {
-                            System.out.print(el.toString());
-                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                plugin.getLogger().severe(String.format("An Error occurred: %s", ex.getErrorCode()));
+                plugin.getLogger().log(Level.SEVERE, null, ex);
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Retrieves one clan player from the database, without reloading their clan
+     *
+     * @param playerUniqueId
+     * @return the clan player, or null if not found
+     */
+    public ClanPlayer retrieveClanPlayer(UUID playerUniqueId) {
+        ClanPlayer out = null;
+
+        ResultSet res = clanPlayerDAO.selectByUniqueId(playerUniqueId);
+
+        if (res != null) {
+            try {
+                while (res.next()) {
+                    ClanPlayer cp = readClanPlayer(res, plugin.getClanManager()::getClan);
+                    if (cp != null) {
+                        out = cp;
                     }
                 }
             } catch (SQLException ex) {
@@ -573,88 +704,14 @@ public final class StorageManager {
     public ClanPlayer retrieveOneClanPlayer(UUID playerUniqueId) {
         ClanPlayer out = null;
 
-        String query = "SELECT * FROM `sc_players` WHERE `uuid` = '" + playerUniqueId.toString() + "';";
-        ResultSet res = core.select(query);
+        ResultSet res = clanPlayerDAO.selectByUniqueId(playerUniqueId);
 
         if (res != null) {
             try {
                 while (res.next()) {
-                    try {
-                        String uuid = res.getString("uuid");
-                        String name = res.getString("name");
-                        String tag = res.getString("tag");
-                        boolean leader = res.getBoolean("leader");
-                        boolean friendly_fire = res.getBoolean("friendly_fire");
-                        boolean trusted = res.getBoolean("trusted");
-                        int neutral_kills = res.getInt("neutral_kills");
-                        int rival_kills = res.getInt("rival_kills");
-                        int civilian_kills = res.getInt("civilian_kills");
-                        int deaths = res.getInt("deaths");
-                        long last_seen = res.getLong("last_seen");
-                        long join_date = res.getLong("join_date");
-                        String flags = res.getString("flags");
-                        String packed_past_clans = Helper.parseColors(res.getString("packed_past_clans"));
-                        String resign_times = res.getString("resign_times");
-                        
-                        if (last_seen == 0) {
-                            last_seen = (new Date()).getTime();
-                        }
-
-                        if (join_date == 0) {
-                            join_date = (new Date()).getTime();
-                        }
-
-                        ClanPlayer cp = new ClanPlayer();
-                        if (uuid != null) {
-                            cp.setUniqueId(UUID.fromString(uuid));
-                        }
-                        cp.setFlags(flags);
-                        cp.setName(name);
-                        cp.setLeader(leader);
-                        cp.setFriendlyFire(friendly_fire);
-                        cp.setNeutralKills(neutral_kills);
-                        cp.setRivalKills(rival_kills);
-                        cp.setCivilianKills(civilian_kills);
-                        cp.setDeaths(deaths);
-                        cp.setLastSeen(last_seen);
-                        cp.setJoinDate(join_date);
-                        cp.setPackedPastClans(packed_past_clans);
-                        cp.setTrusted(leader || trusted);
-                        cp.setResignTimes(Helper.resignTimesFromJson(resign_times));
-                        
-                        if (!tag.isEmpty()) {
-                            Clan clanDB = retrieveOneClan(tag);
-                            Clan clan = SimpleClans.getInstance().getClanManager().getClan(tag);
-
-                            if (clan != null) {
-                                Clan clanReSync = SimpleClans.getInstance().getClanManager().getClan(tag);
-                                clanReSync.setFlags(clanDB.getFlags());
-                                clanReSync.setVerified(clanDB.isVerified());
-                                clanReSync.setFriendlyFire(clanDB.isFriendlyFire());
-                                clanReSync.setTag(clanDB.getTag());
-                                clanReSync.setColorTag(clanDB.getColorTag());
-                                clanReSync.setName(clanDB.getName());
-                                clanReSync.setPackedAllies(clanDB.getPackedAllies());
-                                clanReSync.setPackedRivals(clanDB.getPackedRivals());
-                                clanReSync.setPackedBb(clanDB.getPackedBb());
-                                clanReSync.setCapeUrl(clanDB.getCapeUrl());
-                                clanReSync.setFounded(clanDB.getFounded());
-                                clanReSync.setLastUsed(clanDB.getLastUsed());
-                                clanReSync.setBalance(clanDB.getBalance());
-                                cp.setClan(clanReSync);
-                            } else {
-                                plugin.getClanManager().importClan(clanDB);
-                                clanDB.validateWarring();
-                                Clan newclan = SimpleClans.getInstance().getClanManager().getClan(clanDB.getTag());
-                                cp.setClan(newclan);
-                            }
-                        }
-
+                    ClanPlayer cp = readClanPlayer(res, this::resyncClan);
+                    if (cp != null) {
                         out = cp;
-                    } catch (Exception ex) {
-                        for (StackTraceElement el : ex.getStackTrace()) {
-                            System.out.print(el.toString());
-                        }
                     }
                 }
             } catch (SQLException ex) {
@@ -666,32 +723,48 @@ public final class StorageManager {
         return out;
     }
 
+    /**
+     * Reloads a clan from the database into memory
+     * Used for BungeeCord Reload ClanPlayer and your Clan
+     *
+     * @param tag the clan tag
+     * @return the clan in memory
+     */
+    private Clan resyncClan(String tag) {
+        Clan clanDB = retrieveOneClan(tag);
+        Clan clan = SimpleClans.getInstance().getClanManager().getClan(tag);
+
+        if (clanDB == null) {
+            return clan;
+        }
+        if (clan != null) {
+            clan.setFlags(clanDB.getFlags());
+            clan.setVerified(clanDB.isVerified());
+            clan.setFriendlyFire(clanDB.isFriendlyFire());
+            clan.setTag(clanDB.getTag());
+            clan.setColorTag(clanDB.getColorTag());
+            clan.setName(clanDB.getName());
+            clan.setPackedAllies(clanDB.getPackedAllies());
+            clan.setPackedRivals(clanDB.getPackedRivals());
+            clan.setPackedBb(clanDB.getPackedBb());
+            clan.setCapeUrl(clanDB.getCapeUrl());
+            clan.setFounded(clanDB.getFounded());
+            clan.setLastUsed(clanDB.getLastUsed());
+            clan.setBalance(clanDB.getBalance());
+            return clan;
+        }
+        plugin.getClanManager().importClan(clanDB);
+        clanDB.validateWarring();
+        return SimpleClans.getInstance().getClanManager().getClan(clanDB.getTag());
+    }
+
     /**
      * Insert a clan into the database
      *
      * @param clan
      */
     public void insertClan(Clan clan) {
-        String query = "INSERT INTO `sc_clans` (`ranks`, `description`, `fee_enabled`, `fee_value`, `verified`, `tag`, `color_tag`, `name`, `friendly_fire`, `founded`, `last_used`, `packed_allies`, `packed_rivals`, `packed_bb`, `cape_url`, `flags`, `balance`) ";
-        String values = "VALUES ( '"
-        							+ Helper.escapeQuotes(Helper.ranksToJson(clan.getRanks())) + "','"
-        							+ Helper.escapeQuotes(clan.getDescription())+ "'," 
-        							+ (clan.isMemberFeeEnabled() ? 1 : 0) +","
-        							+ Helper.escapeQuotes(String.valueOf(clan.getMemberFee())) + "," 
-        							+ (clan.isVerified() ? 1 : 0) + ",'" 
-        							+ Helper.escapeQuotes(clan.getTag()) + "','" 
-        							+ Helper.escapeQuotes(clan.getColorTag()) + "','" 
-        							+ Helper.escapeQuotes(clan.getName()) + "'," 
-        							+ (clan.isFriendlyFire() ? 1 : 0) + ",'" 
-        							+ clan.getFounded() + "','" 
-        							+ clan.getLastUsed() + "','" 
-        							+ Helper.escapeQuotes(clan.getPackedAllies()) + "','" 
-        							+ Helper.escapeQuotes(clan.getPackedRivals()) + "','" 
-        							+ Helper.escapeQuotes(clan.getPackedBb()) + "','" 
-        							+ Helper.escapeQuotes(clan.getCapeUrl()) + "','" 
-        							+ Helper.escapeQuotes(clan.getFlags()) + "','" 
-        							+ Helper.escapeQuotes(String.valueOf(clan.getBalance())) + "');";
-        core.insert(query + values);
+        clanDAO.insert(clan);
     }
 
     /**
@@ -729,8 +802,7 @@ public final class StorageManager {
      * @param p to update
      */
     public void updatePlayerName(final Player p) {
-        String query = "UPDATE `sc_players` SET `name` = '" + p.getName() + "' WHERE uuid = '" + p.getUniqueId().toString() + "';";
-        core.update(query);
+        clanPlayerDAO.updateName(p.getUniqueId(), p.getName());
     }
 
     /**
@@ -757,22 +829,16 @@ public final class StorageManager {
     		modifiedClans.add(clan);
     		return;
     	}
-        core.update(getUpdateClanQuery(clan));
+        clanDAO.update(clan);
     }
     
-    private String getUpdateClanQuery(Clan clan) {
-        String query = "UPDATE `sc_clans` SET ranks = '"+ Helper.escapeQuotes(Helper.ranksToJson(clan.getRanks())) +"', description = '" + Helper.escapeQuotes(clan.getDescription())+ "', fee_enabled = "+ (clan.isMemberFeeEnabled() ? 1 : 0) +", fee_value = '" + clan.getMemberFee() + "', verified = " + (clan.isVerified() ? 1 : 0) + ", tag = '" + Helper.escapeQuotes(clan.getTag()) + "', color_tag = '" + Helper.escapeQuotes(clan.getColorTag()) + "', name = '" + Helper.escapeQuotes(clan.getName()) + "', friendly_fire = " + (clan.isFriendlyFire() ? 1 : 0) + ", founded = '" + clan.getFounded() + "', last_used = '" + clan.getLastUsed() + "', packed_allies = '" + Helper.escapeQuotes(clan.getPackedAllies()) + "', packed_rivals = '" + Helper.escapeQuotes(clan.getPackedRivals()) + "', packed_bb = '" + Helper.escapeQuotes(clan.getPackedBb()) + "', cape_url = '" + Helper.escapeQuotes(clan.getCapeUrl()) + "', cape_url = '" + Helper.escapeQuotes(String.valueOf(clan.getCapeUrl())) + "', balance = '" + clan.getBalance() + "', flags = '" + Helper.escapeQuotes(clan.getFlags()) + "' WHERE tag = '" + Helper.escapeQuotes(clan.getTag()) + "';";
-        return query;
-    }
-
     /**
      * Delete a clan from the database
      *
      * @param clan
      */
     public void deleteClan(Clan clan) {
-        String query = "DELETE FROM `sc_clans` WHERE tag = '" + clan.getTag() + "';";
-        core.delete(query);
+        clanDAO.delete(clan.getTag());
     }
 
     /**
@@ -781,9 +847,7 @@ public final class StorageManager {
      * @param cp
      */
     public void insertClanPlayer(ClanPlayer cp) {
-    	String query = "INSERT INTO `sc_players` (`resign_times`, `uuid`, `name`, `leader`, `tag`, `friendly_fire`, `neutral_kills`, `rival_kills`, `civilian_kills`, `deaths`, `last_seen`, `join_date`, `packed_past_clans`, `flags`) ";
-        String values = "VALUES ( '"+ Helper.escapeQuotes(Helper.resignTimesToJson(cp.getResignTimes()))+ "', '" + cp.getUniqueId().toString() + "', '" + cp.getName() + "'," + (cp.isLeader() ? 1 : 0) + ",'" + Helper.escapeQuotes(cp.getTag()) + "'," + (cp.isFriendlyFire() ? 1 : 0) + "," + cp.getNeutralKills() + "," + cp.getRivalKills() + "," + cp.getCivilianKills() + "," + cp.getDeaths() + ",'" + cp.getLastSeen() + "',' " + cp.getJoinDate() + "','" + Helper.escapeQuotes(cp.getPackedPastClans()) + "','" + Helper.escapeQuotes(cp.getFlags()) + "');";
-        core.insert(query + values);
+        clanPlayerDAO.insert(cp);
     }
 
     /**
@@ -812,14 +876,9 @@ public final class StorageManager {
         	modifiedClanPlayers.add(cp);
         	return;
         }
-        core.update(getUpdateClanPlayerQuery(cp));
+        clanPlayerDAO.update(cp);
     }
     
-    private String getUpdateClanPlayerQuery(ClanPlayer cp) {
-        String query = "UPDATE `sc_players` SET resign_times = '"+ Helper.escapeQuotes(Helper.resignTimesToJson(cp.getResignTimes())) +"', leader = " + (cp.isLeader() ? 1 : 0) + ", tag = '" + Helper.escapeQuotes(cp.getTag()) + "' , friendly_fire = " + (cp.isFriendlyFire() ? 1 : 0) + ", neutral_kills = " + cp.getNeutralKills() + ", rival_kills = " + cp.getRivalKills() + ", civilian_kills = " + cp.getCivilianKills() + ", deaths = " + cp.getDeaths() + ", last_seen = '" + cp.getLastSeen() + "', packed_past_clans = '" + Helper.escapeQuotes(cp.getPackedPastClans()) + "', trusted = " + (cp.isTrusted() ? 1 : 0) + ", flags = '" + Helper.escapeQuotes(cp.getFlags()) + "', name = '" + cp.getName() + "' WHERE `uuid` = '" + cp.getUniqueId().toString() + "';";
-        return query;
-    }
-
     /**
      * Delete a clan player from the database
      *
@@ -831,11 +890,37 @@ public final class StorageManager {
             clan.addBbWithoutSaving(ChatColor.AQUA + MessageFormat.format(plugin.getLang("has.been.purged"), cp.getName()));
             updateClan(clan, false);
         }
-		String query = "DELETE FROM `sc_players` WHERE uuid = '" + cp.getUniqueId() + "';";
-		core.delete(query);
+		clanPlayerDAO.delete(cp.getUniqueId());
 		deleteKills(cp.getUniqueId());
     }
     
+    /**
+     * Saves the kill and death counters of a player, buffering them when the kill journal is enabled
+     *
+     * @param cp
+     */
+    public void updateKillCounters(ClanPlayer cp) {
+        if (killJournal == null) {
+            updateClanPlayer(cp);
+            return;
+        }
+        cp.updateLastSeen();
+        killJournal.addCounters(cp);
+    }
+
+    /**
+     * Saves the kill and death counters of a player after they were reset.
+     * When the kill journal is enabled the reset goes through it too, so older buffered counters cannot overwrite it.
+     *
+     * @param cp
+     */
+    public void resetKillCounters(ClanPlayer cp) {
+        if (killJournal != null) {
+            killJournal.addCounters(cp);
+        }
+        updateClanPlayer(cp);
+    }
+
     /**
      * Insert a kill into the database
      *
@@ -846,9 +931,11 @@ public final class StorageManager {
      * @param type
      */
     public void insertKill(Player attacker, String attackerTag, Player victim, String victimTag, String type) {
-    	String query = "INSERT INTO `sc_kills` (  `attacker_uuid`, `attacker`, `attacker_tag`, `victim_uuid`, `victim`, `victim_tag`, `kill_type`) ";
-    	String values = "VALUES ( '" + attacker.getUniqueId() + "','" + attacker.getName() + "','" + attackerTag + "','" + victim.getUniqueId() + "','" + victim.getName() + "','" + victimTag + "','" + type + "');";
-    	core.insert(query + values);       
+        if (killJournal != null) {
+            killJournal.addKill(attacker.getUniqueId(), attacker.getName(), attackerTag, victim.getUniqueId(), victim.getName(), victimTag, type);
+            return;
+        }
+    	killDAO.insert(attacker.getUniqueId(), attacker.getName(), attackerTag, victim.getUniqueId(), victim.getName(), victimTag, type);
     }
 
     /**
@@ -858,8 +945,7 @@ public final class StorageManager {
      */
     @Deprecated
     public void deleteKills(String playerName) {
-        String query = "DELETE FROM `sc_kills` WHERE `attacker` = '" + playerName + "'";
-        core.delete(query);
+        killDAO.deleteByAttacker(playerName);
     }
 
     /**
@@ -868,8 +954,13 @@ public final class StorageManager {
      * @param playerUniqueId
      */
     public void deleteKills(UUID playerUniqueId) {
-        String query = "DELETE FROM `sc_kills` WHERE `attacker_uuid` = '" + playerUniqueId + "'";
-        core.delete(query);
+        // through the journal, so the kills it still buffers are not written after the deletion
+        if (killJournal != null) {
+            killJournal.deleteKills(playerUniqueId);
+        } else {
+            killDAO.deleteByAttacker(playerUniqueId);
+        }
+        plugin.getClanManager().getKillCounter().removeAttacker(playerUniqueId);
     }
 
     /**
@@ -879,10 +970,23 @@ public final class StorageManager {
      * @return
      */
     public Map<String, Integer> getKillsPerPlayer(String playerName) {
+        UUID uuid = UUIDMigration.getForcedPlayerUUID(playerName);
+        if (uuid == null) {
+            return new HashMap<>();
+        }
+        return getKillsPerPlayer(uuid);
+    }
+
+    /**
+     * Returns a map of victim->count of all kills that specific player did
+     *
+     * @param playerUniqueId
+     * @return
+     */
+    public Map<String, Integer> getKillsPerPlayer(UUID playerUniqueId) {
         HashMap<String, Integer> out = new HashMap<>();
 
-        String query = "SELECT victim, count(victim) AS kills FROM `sc_kills` WHERE attacker = '" + playerName + "' GROUP BY victim ORDER BY count(victim) DESC;";
-        ResultSet res = core.select(query);
+        ResultSet res = killDAO.selectKillsPerPlayer(playerUniqueId);
 
         if (res != null) {
             try {
@@ -914,8 +1018,7 @@ public final class StorageManager {
     public Map<String, Integer> getMostKilled() {
         HashMap<String, Integer> out = new HashMap<>();
 
-        String query = "SELECT attacker, victim, count(victim) AS kills FROM `sc_kills` GROUP BY attacker, victim ORDER BY 3 DESC;";
-        ResultSet res = core.select(query);
+        ResultSet res = killDAO.selectMostKilled();
 
         if (res != null) {
             try {
@@ -969,6 +1072,21 @@ public final class StorageManager {
 			}
 		}.runTaskAsynchronously(plugin);
     }
+
+    /**
+     * Gets, asynchronously, a map of victim->count of all kills that specific player did and notifies via callback when it's ready
+     * 
+     * @param playerUniqueId
+     * @param callback
+     */
+    public void getKillsPerPlayer(final UUID playerUniqueId, final DataCallback<Map<String, Integer>> callback) {
+    	new BukkitRunnable() {
+			@Override
+			public void run() {
+				callback.onResultReady(getKillsPerPlayer(playerUniqueId));
+			}
+		}.runTaskAsynchronously(plugin);
+    }
     
     /**
      * Callback that returns some data
@@ -1067,6 +1185,58 @@ public final class StorageManager {
             query = "CREATE UNIQUE INDEX IF NOT EXISTS `uq_player_uuid` ON `sc_players` (`uuid`);";
             core.execute(query);
         }
+
+        /**
+         * Indexed kills and pre-aggregated kill counts
+         */
+        String prefixLength = plugin.getSettingsManager().isUseMysql() ? "(36)" : "";
+        if (!core.existsIndex("sc_kills", "idx_sc_kills_attacker_uuid")) {
+            core.execute("CREATE INDEX `idx_sc_kills_attacker_uuid` ON `sc_kills` (`attacker_uuid`" + prefixLength + ");");
+        }
+        if (!core.existsIndex("sc_kills", "idx_sc_kills_victim_uuid")) {
+            core.execute("CREATE INDEX `idx_sc_kills_victim_uuid` ON `sc_kills` (`victim_uuid`" + prefixLength + ");");
+        }
+        if (!core.existsTable("sc_kill_counts")) {
+            plugin.getLogger().info("Creating table: sc_kill_counts");
+
+            query = "CREATE TABLE IF NOT EXISTS `sc_kill_counts` ("
+                    + " `attacker_uuid` varchar(36) NOT NULL,"
+                    + " `victim_uuid` varchar(36) NOT NULL,"
+                    + " `attacker` varchar(16) NOT NULL,"
+                    + " `victim` varchar(16) NOT NULL,"
+                    + " `kills` int(11) NOT NULL default '0',"
+                    + " PRIMARY KEY (`attacker_uuid`, `victim_uuid`));";
+            core.execute(query);
+            core.execute(KillDAO.POPULATE_COUNTS);
+        }
+
+        /**
+         * Kill history retention
+         */
+        if (!core.existsColumn("sc_kills", "created_at")) {
+            query = "ALTER TABLE sc_kills ADD COLUMN `created_at` bigint DEFAULT NULL;";
+            core.execute(query);
+        }
+        if (!core.existsIndex("sc_kills", "idx_sc_kills_created_at")) {
+            core.execute("CREATE INDEX `idx_sc_kills_created_at` ON `sc_kills` (`created_at`);");
+        }
+        // the age of the kills stored before the column existed is unknown, they are kept for the whole retention period.
+        // New kills always have a date, so after the first run this only looks up the index
+        core.execute("UPDATE `sc_kills` SET `created_at` = " + System.currentTimeMillis() + " WHERE `created_at` IS NULL;");
+        if (!core.existsTable("sc_kills_daily")) {
+            plugin.getLogger().info("Creating table: sc_kills_daily");
+
+            query = "CREATE TABLE IF NOT EXISTS `sc_kills_daily` ("
+                    + " `day` int(11) NOT NULL,"
+                    + " `attacker_uuid` varchar(36) NOT NULL,"
+                    + " `victim_uuid` varchar(36) NOT NULL,"
+                    + " `kill_type` varchar(1) NOT NULL,"
+                    + " `attacker` varchar(16) NOT NULL,"
+                    + " `victim` varchar(16) NOT NULL,"
+                    + " `kills` int(11) NOT NULL default '0',"
+                    + " PRIMARY KEY (`day`, `attacker_uuid`, `victim_uuid`, `kill_type`));";
+            core.execute(query);
+        }
     }
 
     /**
@@ -1125,28 +1295,95 @@ public final class StorageManager {
 	 * @since 2.10.2
 	 */
 	public void saveModified() {
-		try (Statement statement = core.getConnection().createStatement()) {
-			List<Clan> allClans = plugin.getClanManager().getClans();
-			for (Clan clan : modifiedClans) {
-				if (!allClans.contains(clan)) {
+		List<Clan> drainedClans = drain(modifiedClans);
+		List<ClanPlayer> drainedClanPlayers = drain(modifiedClanPlayers);
+		Map<Clan, Integer> clans = new HashMap<>();
+		Map<ClanPlayer, Integer> clanPlayers = new HashMap<>();
+		// after the queued writes, e.g. the insert of a player that is updated here
+		boolean saved = core.transactionAfterAll("UPDATE", connection -> {
+			// one batch per combination of changed columns
+			Map<Integer, PreparedStatement> statements = new HashMap<>();
+			for (Clan clan : drainedClans) {
+				if (!plugin.getClanManager().isClan(clan.getTag())) {
+					continue;
+				}
+				int columns = clan.pollDirtyColumns();
+				if (columns == 0) {
 					continue;
 				}
-				statement.addBatch(getUpdateClanQuery(clan));
+				clans.put(clan, columns);
+				PreparedStatement statement = statements.get(columns);
+				if (statement == null) {
+					statement = core.prepare(connection, ClanDAO.getUpdateQuery(columns));
+					statements.put(columns, statement);
+				}
+				StatementBinder.bind(statement, clanDAO.getUpdateParams(clan, columns));
+				statement.addBatch();
+			}
+			for (PreparedStatement statement : statements.values()) {
+				statement.executeBatch();
 			}
-			List<ClanPlayer> allClanPlayers = plugin.getClanManager().getAllClanPlayers();
-			for (ClanPlayer cp : modifiedClanPlayers) {
-				if (!allClanPlayers.contains(cp)) {
+
+			statements.clear();
+			Set<ClanPlayer> allClanPlayers = plugin.getClanManager().getAllClanPlayersSet();
+			// players loaded on demand are not in memory, updating a deleted one is harmless
+			boolean lazy = plugin.getSettingsManager().isLazyPlayers();
+			for (ClanPlayer cp : drainedClanPlayers) {
+				if (!lazy && !allClanPlayers.contains(cp)) {
+					continue;
+				}
+				int columns = cp.pollDirtyColumns();
+				if (columns == 0) {
 					continue;
 				}
-				statement.addBatch(getUpdateClanPlayerQuery(cp));
+				clanPlayers.put(cp, columns);
+				PreparedStatement statement = statements.get(columns);
+				if (statement == null) {
+					statement = core.prepare(connection, ClanPlayerDAO.getUpdateQuery(columns));
+					statements.put(columns, statement);
+				}
+				StatementBinder.bind(statement, clanPlayerDAO.getUpdateParams(cp, columns));
+				statement.addBatch();
 			}
-			statement.executeBatch();
-			
-			modifiedClans.clear();
-			modifiedClanPlayers.clear();
-		} catch (SQLException e) {
-            plugin.getLogger().severe("Error saving modified Clans and ClanPlayers:");
-			e.printStackTrace();
+			for (PreparedStatement statement : statements.values()) {
+				statement.executeBatch();
+			}
+		});
+		if (!saved) {
+            plugin.getLogger().severe("Error saving modified Clans and ClanPlayers");
+			// keep the changes for the next save
+			clans.forEach(Clan::restoreDirtyColumns);
+			clanPlayers.forEach(ClanPlayer::restoreDirtyColumns);
+			modifiedClans.addAll(drainedClans);
+			modifiedClanPlayers.addAll(drainedClanPlayers);
+		}
+		SimpleClans.debug("Connection pool: " + core.getPool().getStats());
+		SimpleClans.debug("Write queue: " + core.getWriteExecutor().getStats());
+		if (plugin.getSettingsManager().isLazyPlayers()) {
+			ClanPlayerCache cache = plugin.getClanManager().getClanPlayerCache();
+			SimpleClans.debug(String.format("Clan players: %d resident, %d cached, %.1f%% cache hit rate",
+					plugin.getClanManager().getResidentClanPlayersCount(), cache.size(), cache.getHitRate() * 100));
+		}
+		PlaceholdersManager placeholders = plugin.getPlaceholdersManager();
+		if (placeholders != null) {
+			SimpleClans.debug(String.format("Placeholder cache: %d hits, %d misses",
+					placeholders.getCache().getHits(), placeholders.getCache().getMisses()));
+		}
+	}
+
+	/**
+	 * Removes the elements of a concurrent set one by one, so anything added while it is drained is either
+	 * returned or kept in the set for the next save
+	 *
+	 * @param set the set to drain
+	 * @return the removed elements
+	 */
+	static <T> List<T> drain(Set<T> set) {
+		List<T> drained = new ArrayList<>();
+		for (Iterator<T> it = set.iterator(); it.hasNext(); ) {
+			drained.add(it.next());
+			it.remove();
 		}
+		return drained;
 	}
 }
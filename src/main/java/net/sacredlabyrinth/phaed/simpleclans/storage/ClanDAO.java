@@ -0,0 +1,188 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.Helper;
+
+/**
+ * Prepared statements of the sc_clans table
+ */
+public class ClanDAO {
+
+    public static final String SELECT_ALL = "SELECT * FROM `sc_clans`;";
+    public static final String SELECT_BY_TAG = "SELECT * FROM `sc_clans` WHERE `tag` = ?;";
+    public static final String INSERT = "INSERT INTO `sc_clans` (`ranks`, `description`, `fee_enabled`, `fee_value`, `verified`, `tag`, `color_tag`, `name`, `friendly_fire`, `founded`, `last_used`, `packed_allies`, `packed_rivals`, `packed_bb`, `cape_url`, `flags`, `balance`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+    public static final String DELETE = "DELETE FROM `sc_clans` WHERE tag = ?;";
+
+    /**
+     * The columns that can be updated, each one is a bit of a clan's dirty mask
+     */
+    public enum Column {
+        RANKS("ranks", clan -> Helper.ranksToJson(clan.getRanks())),
+        DESCRIPTION("description", clan -> text(clan.getDescription())),
+        FEE_ENABLED("fee_enabled", Clan::isMemberFeeEnabled),
+        FEE_VALUE("fee_value", Clan::getMemberFee),
+        VERIFIED("verified", Clan::isVerified),
+        COLOR_TAG("color_tag", clan -> text(clan.getColorTag())),
+        NAME("name", clan -> text(clan.getName())),
+        FRIENDLY_FIRE("friendly_fire", Clan::isFriendlyFire),
+        FOUNDED("founded", Clan::getFounded),
+        LAST_USED("last_used", Clan::getLastUsed),
+        PACKED_ALLIES("packed_allies", clan -> text(clan.getPackedAllies())),
+        PACKED_RIVALS("packed_rivals", clan -> text(clan.getPackedRivals())),
+        PACKED_BB("packed_bb", clan -> text(clan.getPackedBb())),
+        CAPE_URL("cape_url", clan -> text(clan.getCapeUrl())),
+        BALANCE("balance", Clan::getBalance),
+        FLAGS("flags", clan -> text(clan.getFlags()));
+
+        public static final int ALL = (1 << values().length) - 1;
+
+        private final String columnName;
+        private final Function<Clan, Object> value;
+
+        Column(String name, Function<Clan, Object> value) {
+            this.columnName = name;
+            this.value = value;
+        }
+
+        public int getMask() {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final Map<Integer, String> UPDATES = new ConcurrentHashMap<>();
+
+    private final DBCore core;
+
+    public ClanDAO(DBCore core) {
+        this.core = core;
+    }
+
+    /**
+     * @return all the clans rows
+     */
+    public ResultSet selectAll() {
+        return core.select(SELECT_ALL);
+    }
+
+    /**
+     * Reads all the clans rows as they arrive, without buffering them
+     *
+     * @param consumer receives each row
+     * @return whether all the rows were read
+     */
+    public boolean streamAll(DBCore.RowConsumer consumer) {
+        return core.stream(SELECT_ALL, consumer);
+    }
+
+    /**
+     * @param tag the clan tag
+     * @return the rows of the clan
+     */
+    public ResultSet selectByTag(String tag) {
+        return core.select(SELECT_BY_TAG, tag);
+    }
+
+    /**
+     * Inserts the clan
+     *
+     * @param clan
+     */
+    public void insert(Clan clan) {
+        int columns = clan.pollDirtyColumns();
+        core.write(clan.getTag(), "INSERT", () -> clan.restoreDirtyColumns(columns), INSERT, getInsertParams(clan));
+    }
+
+    /**
+     * Updates the columns of the clan that changed since it was last saved
+     *
+     * @param clan
+     */
+    public void update(Clan clan) {
+        int columns = clan.pollDirtyColumns();
+        if (columns == 0) {
+            return;
+        }
+        // the changes are saved again if this fails
+        core.write(clan.getTag(), "UPDATE", () -> clan.restoreDirtyColumns(columns), getUpdateQuery(columns),
+                getUpdateParams(clan, columns));
+    }
+
+    /**
+     * Deletes the clan
+     *
+     * @param tag the clan tag
+     */
+    public void delete(String tag) {
+        core.write(tag, "DELETE", DELETE, tag);
+    }
+
+    /**
+     * @param clan
+     * @return the parameters of {@link #INSERT}
+     */
+    public Object[] getInsertParams(Clan clan) {
+        return new Object[]{
+                Helper.ranksToJson(clan.getRanks()),
+                text(clan.getDescription()),
+                clan.isMemberFeeEnabled(),
+                clan.getMemberFee(),
+                clan.isVerified(),
+                text(clan.getTag()),
+                text(clan.getColorTag()),
+                text(clan.getName()),
+                clan.isFriendlyFire(),
+                clan.getFounded(),
+                clan.getLastUsed(),
+                text(clan.getPackedAllies()),
+                text(clan.getPackedRivals()),
+                text(clan.getPackedBb()),
+                text(clan.getCapeUrl()),
+                text(clan.getFlags()),
+                clan.getBalance()
+        };
+    }
+
+    /**
+     * @param columns the mask of the columns to update
+     * @return an UPDATE statement that sets only the given columns
+     */
+    public static String getUpdateQuery(int columns) {
+        return UPDATES.computeIfAbsent(columns, mask -> {
+            StringJoiner set = new StringJoiner(", ", "UPDATE `sc_clans` SET ", " WHERE `tag` = ?;");
+            for (Column column : COLUMNS) {
+                if ((mask & column.getMask()) != 0) {
+                    set.add("`" + column.columnName + "` = ?");
+                }
+            }
+            return set.toString();
+        });
+    }
+
+    /**
+     * @param clan
+     * @param columns the mask of the columns to update
+     * @return the parameters of {@link #getUpdateQuery(int)}
+     */
+    public Object[] getUpdateParams(Clan clan, int columns) {
+        Object[] params = new Object[Integer.bitCount(columns) + 1];
+        int i = 0;
+        for (Column column : COLUMNS) {
+            if ((columns & column.getMask()) != 0) {
+                params[i++] = column.value.apply(clan);
+            }
+        }
+        params[i] = text(clan.getTag());
+        return params;
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,196 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+import net.sacredlabyrinth.phaed.simpleclans.Helper;
+
+/**
+ * Prepared statements of the sc_players table
+ */
+public class ClanPlayerDAO {
+
+    public static final String SELECT_ALL = "SELECT * FROM `sc_players`;";
+    public static final String SELECT_BY_UUID = "SELECT * FROM `sc_players` WHERE `uuid` = ?;";
+    public static final String INSERT = "INSERT INTO `sc_players` (`resign_times`, `uuid`, `name`, `leader`, `tag`, `friendly_fire`, `neutral_kills`, `rival_kills`, `civilian_kills`, `deaths`, `last_seen`, `join_date`, `packed_past_clans`, `flags`) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+    public static final String UPDATE_COUNTERS = "UPDATE `sc_players` SET neutral_kills = ?, rival_kills = ?, civilian_kills = ?, deaths = ?, last_seen = ? WHERE `uuid` = ?;";
+    public static final String UPDATE_NAME = "UPDATE `sc_players` SET `name` = ? WHERE uuid = ?;";
+    public static final String DELETE = "DELETE FROM `sc_players` WHERE uuid = ?;";
+
+    /**
+     * The columns that can be updated, each one is a bit of a player's dirty mask
+     */
+    public enum Column {
+        RESIGN_TIMES("resign_times", cp -> Helper.resignTimesToJson(cp.getResignTimes())),
+        LEADER("leader", ClanPlayer::isLeader),
+        TAG("tag", cp -> text(cp.getTag())),
+        FRIENDLY_FIRE("friendly_fire", ClanPlayer::isFriendlyFire),
+        NEUTRAL_KILLS("neutral_kills", ClanPlayer::getNeutralKills),
+        RIVAL_KILLS("rival_kills", ClanPlayer::getRivalKills),
+        CIVILIAN_KILLS("civilian_kills", ClanPlayer::getCivilianKills),
+        DEATHS("deaths", ClanPlayer::getDeaths),
+        LAST_SEEN("last_seen", ClanPlayer::getLastSeen),
+        JOIN_DATE("join_date", ClanPlayer::getJoinDate),
+        PACKED_PAST_CLANS("packed_past_clans", cp -> text(cp.getPackedPastClans())),
+        TRUSTED("trusted", ClanPlayer::isTrusted),
+        FLAGS("flags", cp -> text(cp.getFlags())),
+        NAME("name", ClanPlayer::getName);
+
+        public static final int ALL = (1 << values().length) - 1;
+
+        private final String columnName;
+        private final Function<ClanPlayer, Object> value;
+
+        Column(String name, Function<ClanPlayer, Object> value) {
+            this.columnName = name;
+            this.value = value;
+        }
+
+        public int getMask() {
+            return 1 << ordinal();
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    private static final Map<Integer, String> UPDATES = new ConcurrentHashMap<>();
+
+    private final DBCore core;
+
+    public ClanPlayerDAO(DBCore core) {
+        this.core = core;
+    }
+
+    /**
+     * @return all the players rows
+     */
+    public ResultSet selectAll() {
+        return core.select(SELECT_ALL);
+    }
+
+    /**
+     * Reads all the players rows as they arrive, without buffering them
+     *
+     * @param consumer receives each row
+     * @return whether all the rows were read
+     */
+    public boolean streamAll(DBCore.RowConsumer consumer) {
+        return core.stream(SELECT_ALL, consumer);
+    }
+
+    /**
+     * @param uuid the player's UUID
+     * @return the rows of the player
+     */
+    public ResultSet selectByUniqueId(UUID uuid) {
+        return core.select(SELECT_BY_UUID, uuid.toString());
+    }
+
+    /**
+     * Inserts the clan player
+     *
+     * @param cp
+     */
+    public void insert(ClanPlayer cp) {
+        int columns = cp.pollDirtyColumns();
+        core.write(cp.getUniqueId(), "INSERT", () -> cp.restoreDirtyColumns(columns), INSERT, getInsertParams(cp));
+    }
+
+    /**
+     * Updates the columns of the clan player that changed since it was last saved
+     *
+     * @param cp
+     */
+    public void update(ClanPlayer cp) {
+        int columns = cp.pollDirtyColumns();
+        if (columns == 0) {
+            return;
+        }
+        // the changes are saved again if this fails
+        core.write(cp.getUniqueId(), "UPDATE", () -> cp.restoreDirtyColumns(columns), getUpdateQuery(columns),
+                getUpdateParams(cp, columns));
+    }
+
+    /**
+     * Changes the name of a player
+     *
+     * @param uuid the player's UUID
+     * @param name the new name
+     */
+    public void updateName(UUID uuid, String name) {
+        core.write(uuid, "UPDATE", UPDATE_NAME, name, uuid.toString());
+    }
+
+    /**
+     * Deletes the clan player
+     *
+     * @param uuid the player's UUID
+     */
+    public void delete(UUID uuid) {
+        core.write(uuid, "DELETE", DELETE, uuid.toString());
+    }
+
+    /**
+     * @param cp
+     * @return the parameters of {@link #INSERT}
+     */
+    public Object[] getInsertParams(ClanPlayer cp) {
+        return new Object[]{
+                Helper.resignTimesToJson(cp.getResignTimes()),
+                cp.getUniqueId().toString(),
+                cp.getName(),
+                cp.isLeader(),
+                text(cp.getTag()),
+                cp.isFriendlyFire(),
+                cp.getNeutralKills(),
+                cp.getRivalKills(),
+                cp.getCivilianKills(),
+                cp.getDeaths(),
+                cp.getLastSeen(),
+                cp.getJoinDate(),
+                text(cp.getPackedPastClans()),
+                text(cp.getFlags())
+        };
+    }
+
+    /**
+     * @param columns the mask of the columns to update
+     * @return an UPDATE statement that sets only the given columns
+     */
+    public static String getUpdateQuery(int columns) {
+        return UPDATES.computeIfAbsent(columns, mask -> {
+            StringJoiner set = new StringJoiner(", ", "UPDATE `sc_players` SET ", " WHERE `uuid` = ?;");
+            for (Column column : COLUMNS) {
+                if ((mask & column.getMask()) != 0) {
+                    set.add("`" + column.columnName + "` = ?");
+                }
+            }
+            return set.toString();
+        });
+    }
+
+    /**
+     * @param cp
+     * @param columns the mask of the columns to update
+     * @return the parameters of {@link #getUpdateQuery(int)}
+     */
+    public Object[] getUpdateParams(ClanPlayer cp, int columns) {
+        Object[] params = new Object[Integer.bitCount(columns) + 1];
+        int i = 0;
+        for (Column column : COLUMNS) {
+            if ((columns & column.getMask()) != 0) {
+                params[i++] = column.value.apply(cp);
+            }
+        }
+        params[i] = cp.getUniqueId().toString();
+        return params;
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+}
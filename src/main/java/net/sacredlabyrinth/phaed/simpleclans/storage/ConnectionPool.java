@@ -0,0 +1,427 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A bounded pool of JDBC connections.
+ * <p>
+ * Connections are validated when borrowed (unless they were used very recently) and idle
+ * connections above the minimum are closed once they exceed the idle timeout.
+ * Each connection keeps a cache of its prepared statements, so a query is only parsed once per connection.
+ */
+public class ConnectionPool {
+
+    /**
+     * Connections used within this window are handed out without being validated again
+     */
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final int MAX_CACHED_STATEMENTS = 100;
+
+    private final Logger log;
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final int minIdle;
+    private final long idleTimeoutMillis;
+    private final long maxWaitMillis;
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private int total;
+    private int active;
+    private boolean closed;
+    private long lastEviction = System.currentTimeMillis();
+    private final Map<Connection, Map<String, PreparedStatement>> statements = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> streaming = ThreadLocal.withInitial(() -> false);
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * Opens new connections for the pool
+     */
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * @param log the logger used to report failures
+     * @param factory the factory of new connections
+     * @param maxSize the maximum amount of open connections
+     * @param minIdle the amount of idle connections that are never evicted
+     * @param idleTimeoutMillis how long a connection may stay idle before being closed
+     * @param maxWaitMillis how long to wait for a free connection before failing
+     */
+    public ConnectionPool(Logger log, ConnectionFactory factory, int maxSize, int minIdle, long idleTimeoutMillis, long maxWaitMillis) {
+        this.log = log;
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.minIdle = Math.max(0, Math.min(minIdle, this.maxSize));
+        this.idleTimeoutMillis = Math.max(0, idleTimeoutMillis);
+        this.maxWaitMillis = Math.max(0, maxWaitMillis);
+    }
+
+    /**
+     * Opens connections until the minimum idle amount is reached
+     */
+    public void fill() {
+        while (true) {
+            synchronized (this) {
+                if (closed || idle.size() >= minIdle || total >= maxSize) {
+                    return;
+                }
+                total++;
+            }
+            Connection connection;
+            try {
+                connection = factory.create();
+            } catch (SQLException ex) {
+                discardSlot(false);
+                log.severe("Failed to open a database connection: " + ex.getMessage());
+                return;
+            }
+            if (connection == null) {
+                discardSlot(false);
+                return;
+            }
+            synchronized (this) {
+                idle.addFirst(new IdleConnection(connection));
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Marks the current thread as reading a streamed result, no connection can be borrowed until it is done
+     *
+     * @param streaming whether the thread is streaming
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming.set(streaming);
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured max wait if the pool is exhausted.
+     * The connection must be given back with {@link #release(Connection)}.
+     *
+     * @return a valid connection
+     * @throws SQLException if no connection could be obtained
+     * @throws IllegalStateException if called from a stream consumer, see {@link #setStreaming(boolean)}
+     */
+    public Connection borrow() throws SQLException {
+        if (streaming.get()) {
+            // the stream keeps its connection, with a small pool this could wait for one and then fail
+            throw new IllegalStateException("The database can not be used while streaming a result");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        try {
+            while (true) {
+                IdleConnection candidate = null;
+                synchronized (this) {
+                    while (true) {
+                        if (closed) {
+                            throw new SQLException("The connection pool is closed");
+                        }
+                        candidate = idle.pollFirst();
+                        if (candidate != null) {
+                            active++;
+                            break;
+                        }
+                        if (total < maxSize) {
+                            total++;
+                            active++;
+                            break;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeouts.incrementAndGet();
+                            throw new SQLException("Timed out after " + maxWaitMillis + "ms waiting for a database connection (" + getStats() + ")");
+                        }
+                        try {
+                            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection", ex);
+                        }
+                    }
+                }
+
+                if (candidate == null) {
+                    Connection connection;
+                    try {
+                        connection = factory.create();
+                    } catch (SQLException ex) {
+                        discardSlot(true);
+                        throw ex;
+                    }
+                    if (connection == null) {
+                        discardSlot(true);
+                        throw new SQLException("Could not open a database connection");
+                    }
+                    return connection;
+                }
+                if (isValid(candidate)) {
+                    return candidate.connection;
+                }
+                closeQuietly(candidate.connection);
+                discardSlot(true);
+            }
+        } finally {
+            long waited = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            long max;
+            do {
+                max = maxWaitNanos.get();
+            } while (waited > max && !maxWaitNanos.compareAndSet(max, waited));
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool
+     *
+     * @param connection the connection, may be null
+     */
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        boolean reusable;
+        try {
+            reusable = !connection.isClosed();
+            if (reusable && !connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            reusable = false;
+        }
+
+        boolean close = false;
+        synchronized (this) {
+            active--;
+            if (closed || !reusable) {
+                total--;
+                close = true;
+            } else {
+                idle.addFirst(new IdleConnection(connection));
+            }
+            notifyAll();
+        }
+        if (close) {
+            closeQuietly(connection);
+        }
+
+        if (System.currentTimeMillis() - lastEviction > Math.max(idleTimeoutMillis / 2, 1000)) {
+            evictIdle();
+        }
+    }
+
+    /**
+     * Gets a cached prepared statement of a borrowed connection, creating it if needed.
+     * The statement must not be closed by the caller, its parameters and batch are cleared here.
+     *
+     * @param connection a connection borrowed from this pool
+     * @param query the query
+     * @return the prepared statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        Map<String, PreparedStatement> cache = statements.computeIfAbsent(connection, c -> new StatementCache());
+        PreparedStatement statement = cache.get(query);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(query);
+            cache.put(query, statement);
+        } else {
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+        return statement;
+    }
+
+    /**
+     * Closes the connections that have been idle for longer than the idle timeout,
+     * keeping at least the minimum idle amount
+     */
+    public void evictIdle() {
+        List<Connection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            lastEviction = now;
+            Iterator<IdleConnection> oldest = idle.descendingIterator();
+            while (oldest.hasNext() && idle.size() > minIdle) {
+                IdleConnection ic = oldest.next();
+                if (now - ic.since < idleTimeoutMillis) {
+                    break;
+                }
+                oldest.remove();
+                total--;
+                evicted.add(ic.connection);
+            }
+        }
+        for (Connection connection : evicted) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Closes the idle connections, the active ones are closed as soon as they are released
+     */
+    public void close() {
+        List<Connection> toClose = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            for (IdleConnection ic : idle) {
+                toClose.add(ic.connection);
+            }
+            total -= idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        for (Connection connection : toClose) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * @return the amount of connections currently borrowed
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * @return the amount of connections waiting in the pool
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return the amount of open connections
+     */
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the max size of the pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return how many times a connection was borrowed
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return how many times borrowing failed for lack of free connections
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return the average time spent waiting for a connection, in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = borrowCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return totalWaitNanos.get() / (double) count / 1_000_000;
+    }
+
+    /**
+     * @return the longest time spent waiting for a connection, in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000D;
+    }
+
+    /**
+     * @return a summary of the pool metrics
+     */
+    public String getStats() {
+        return String.format("active=%d, idle=%d, max=%d, borrows=%d, avg wait=%.2fms, max wait=%.2fms, timeouts=%d",
+                getActive(), getIdle(), maxSize, getBorrowCount(), getAverageWaitMillis(), getMaxWaitMillis(), getTimeouts());
+    }
+
+    private boolean isValid(IdleConnection ic) {
+        if (System.currentTimeMillis() - ic.since < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return ic.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void discardSlot(boolean wasActive) {
+        synchronized (this) {
+            total--;
+            if (wasActive) {
+                active--;
+            }
+            notifyAll();
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        statements.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            log.warning("Failed to close database connection! " + ex.getMessage());
+        }
+    }
+
+    private class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+        private static final long serialVersionUID = 1L;
+
+        private StatementCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_CACHED_STATEMENTS) {
+                return false;
+            }
+            try {
+                eldest.getValue().close();
+            } catch (SQLException ex) {
+                log.warning("Failed to close prepared statement! " + ex.getMessage());
+            }
+            return true;
+        }
+    }
+
+    private static class IdleConnection {
+        private final Connection connection;
+        private final long since = System.currentTimeMillis();
+
+        private IdleConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
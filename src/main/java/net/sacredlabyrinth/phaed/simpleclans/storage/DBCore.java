@@ -1,7 +1,13 @@
 package net.sacredlabyrinth.phaed.simpleclans.storage;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.sacredlabyrinth.phaed.simpleclans.threads.WriteExecutor;
 
 /**
  *
@@ -10,10 +16,29 @@ import java.sql.ResultSet;
 public interface DBCore
 {
     /**
-     * @return connection
+     * Borrows a connection from the pool, it must be given back with {@link #releaseConnection(Connection)}
+     *
+     * @return connection, or null if none could be obtained
      */
     Connection getConnection();
 
+    /**
+     * Gives a connection obtained with {@link #getConnection()} back to the pool
+     *
+     * @param connection
+     */
+    void releaseConnection(Connection connection);
+
+    /**
+     * @return the connection pool
+     */
+    ConnectionPool getPool();
+
+    /**
+     * @return the executor running the writes when threads are enabled
+     */
+    WriteExecutor getWriteExecutor();
+
     /**
      * @return whether connection can be established
      */
@@ -25,7 +50,7 @@ public interface DBCore
     void close();
 
     /**
-     * Execute a select statement
+     * Execute a select statement, the rows are read before the connection is released
      * @param query
      * @return
      */
@@ -49,6 +74,131 @@ public interface DBCore
      */
     void delete(String query);
 
+    /**
+     * Gets a cached prepared statement of a connection obtained with {@link #getConnection()}, it must not be closed
+     * @param connection
+     * @param query
+     * @return
+     * @throws SQLException
+     */
+    PreparedStatement prepare(Connection connection, String query) throws SQLException;
+
+    /**
+     * Execute a select prepared statement, the rows are read before the connection is released
+     * @param query
+     * @param params
+     * @return
+     */
+    ResultSet select(String query, Object... params);
+
+    /**
+     * Execute a select statement and hand each row to the consumer as it is read, without buffering the result.
+     * The connection stays borrowed until all the rows are read, and the pool may not have another one, so the consumer
+     * must not use the database: collect what needs a query and run it after the stream. Doing so fails, the error is
+     * logged and the rest of the rows are skipped
+     * @param query
+     * @param consumer
+     * @return whether all the rows were read
+     */
+    boolean stream(String query, RowConsumer consumer);
+
+    /**
+     * Receives the rows of {@link #stream(String, RowConsumer)}
+     */
+    interface RowConsumer
+    {
+        void accept(ResultSet row) throws SQLException;
+    }
+
+    /**
+     * Execute an insert prepared statement
+     * @param query
+     * @param params
+     */
+    void insert(String query, Object... params);
+
+    /**
+     * Execute an update prepared statement
+     * @param query
+     * @param params
+     */
+    void update(String query, Object... params);
+
+    /**
+     * Execute a delete prepared statement
+     * @param query
+     * @param params
+     */
+    void delete(String query, Object... params);
+
+    /**
+     * Execute an insert, update or delete prepared statement.
+     * When threads are enabled, writes with the same key are executed in the order they were submitted
+     * @param key the ordering key, e.g. a clan tag or a player UUID
+     * @param sqlType
+     * @param query
+     * @param params
+     */
+    void write(@Nullable Object key, String sqlType, String query, Object... params);
+
+    /**
+     * Execute an insert, update or delete prepared statement like {@link #write(Object, String, String, Object...)},
+     * running onFailure if it fails
+     * @param key the ordering key, e.g. a clan tag or a player UUID
+     * @param sqlType
+     * @param onFailure e.g. marks the changes to be saved again
+     * @param query
+     * @param params
+     */
+    default void write(@Nullable Object key, String sqlType, Runnable onFailure, String query, Object... params)
+    {
+        transaction(key, sqlType, connection -> {
+            PreparedStatement statement = prepare(connection, query);
+            StatementBinder.bind(statement, params);
+            statement.executeUpdate();
+        }, onFailure);
+    }
+
+    /**
+     * Execute statements on one connection in a single transaction, which is rolled back if any of them fails.
+     * When threads are enabled it is ordered with the writes of the same key, like {@link #write(Object, String, String, Object...)}
+     * @param key the ordering key, e.g. a clan tag or a player UUID
+     * @param sqlType
+     * @param transaction
+     */
+    default void transaction(@Nullable Object key, String sqlType, Transaction transaction)
+    {
+        transaction(key, sqlType, transaction, null);
+    }
+
+    /**
+     * Execute statements in a single transaction like {@link #transaction(Object, String, Transaction)},
+     * running onFailure if it could not be committed
+     * @param key the ordering key, e.g. a clan tag or a player UUID
+     * @param sqlType
+     * @param transaction
+     * @param onFailure e.g. marks the changes to be saved again
+     */
+    void transaction(@Nullable Object key, String sqlType, Transaction transaction, @Nullable Runnable onFailure);
+
+    /**
+     * Execute statements on one connection in a single transaction and wait for it.
+     * When threads are enabled it is executed after the writes submitted before it, whatever their key, and before
+     * the ones submitted after it, so it can write rows of many keys. It must not be called from a write
+     * @param sqlType
+     * @param transaction
+     * @return whether the transaction was committed
+     */
+    boolean transactionAfterAll(String sqlType, Transaction transaction);
+
+    /**
+     * The statements of {@link #transaction(Object, String, Transaction)}
+     */
+    interface Transaction
+    {
+        void run(Connection connection) throws SQLException;
+    }
+
     /**
      * Execute a statement
      * @param query
@@ -71,4 +221,13 @@ public interface DBCore
      * @return
      */
     Boolean existsColumn(String tabell, String colum);
+
+    /**
+     * Check whether an index exists
+     *
+     * @param table
+     * @param index
+     * @return
+     */
+    Boolean existsIndex(String table, String index);
 }
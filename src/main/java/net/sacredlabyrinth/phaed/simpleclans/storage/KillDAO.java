@@ -0,0 +1,143 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Prepared statements of the sc_kills, sc_kill_counts and sc_kills_daily tables
+ */
+public class KillDAO {
+
+    public static final String INSERT = "INSERT INTO `sc_kills` (`attacker_uuid`, `attacker`, `attacker_tag`, `victim_uuid`, `victim`, `victim_tag`, `kill_type`, `created_at`) VALUES (?, ?, ?, ?, ?, ?, ?, ?);";
+    public static final String DELETE_BY_ATTACKER = "DELETE FROM `sc_kills` WHERE `attacker` = ?;";
+    public static final String DELETE_BY_ATTACKER_UUID = "DELETE FROM `sc_kills` WHERE `attacker_uuid` = ?;";
+    public static final String UPSERT_COUNT_MYSQL = "INSERT INTO `sc_kill_counts` (`attacker_uuid`, `victim_uuid`, `attacker`, `victim`, `kills`) VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE `kills` = `kills` + VALUES(`kills`), `attacker` = VALUES(`attacker`), `victim` = VALUES(`victim`);";
+    public static final String INSERT_COUNT_SQLITE = "INSERT OR IGNORE INTO `sc_kill_counts` (`attacker_uuid`, `victim_uuid`, `attacker`, `victim`, `kills`) VALUES (?, ?, ?, ?, 0);";
+    public static final String UPDATE_COUNT = "UPDATE `sc_kill_counts` SET `kills` = `kills` + ?, `attacker` = ?, `victim` = ? WHERE `attacker_uuid` = ? AND `victim_uuid` = ?;";
+    public static final String DELETE_COUNTS_BY_ATTACKER = "DELETE FROM `sc_kill_counts` WHERE `attacker` = ?;";
+    public static final String DELETE_COUNTS_BY_ATTACKER_UUID = "DELETE FROM `sc_kill_counts` WHERE `attacker_uuid` = ?;";
+    public static final String DELETE_DAILY_BY_ATTACKER = "DELETE FROM `sc_kills_daily` WHERE `attacker` = ?;";
+    public static final String DELETE_DAILY_BY_ATTACKER_UUID = "DELETE FROM `sc_kills_daily` WHERE `attacker_uuid` = ?;";
+    public static final String POPULATE_COUNTS = "INSERT INTO `sc_kill_counts` (`attacker_uuid`, `victim_uuid`, `attacker`, `victim`, `kills`) SELECT `attacker_uuid`, `victim_uuid`, MAX(`attacker`), MAX(`victim`), COUNT(*) FROM `sc_kills` WHERE `attacker_uuid` IS NOT NULL AND `victim_uuid` IS NOT NULL GROUP BY `attacker_uuid`, `victim_uuid`;";
+    public static final String SELECT_KILLS_PER_PLAYER = "SELECT `victim`, `kills` FROM `sc_kill_counts` WHERE `attacker_uuid` = ? ORDER BY `kills` DESC;";
+    public static final String SELECT_COUNTS = "SELECT `attacker_uuid`, `victim_uuid`, `kills` FROM `sc_kill_counts`;";
+    public static final String SELECT_MOST_KILLED = "SELECT `attacker`, `victim`, `kills` FROM `sc_kill_counts` ORDER BY `kills` DESC;";
+
+    private final DBCore core;
+
+    public KillDAO(DBCore core) {
+        this.core = core;
+    }
+
+    /**
+     * Adds kills to the attackers' counts of the victims, creating the rows that do not exist yet
+     *
+     * @param core the database
+     * @param connection a connection in a transaction
+     * @param counts the attacker's UUID, the victim's UUID, the attacker's name, the victim's name and the kills to add
+     * @throws SQLException
+     */
+    static void addCounts(DBCore core, Connection connection, Collection<Object[]> counts) throws SQLException {
+        if (core instanceof MySQLCore) {
+            PreparedStatement upsert = core.prepare(connection, UPSERT_COUNT_MYSQL);
+            for (Object[] count : counts) {
+                StatementBinder.bind(upsert, count);
+                upsert.addBatch();
+            }
+            upsert.executeBatch();
+            return;
+        }
+        // the SQLite bundled with older servers has no ON CONFLICT upsert, both statements run in the caller's transaction
+        PreparedStatement insert = core.prepare(connection, INSERT_COUNT_SQLITE);
+        for (Object[] count : counts) {
+            StatementBinder.bind(insert, count[0], count[1], count[2], count[3]);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        PreparedStatement update = core.prepare(connection, UPDATE_COUNT);
+        for (Object[] count : counts) {
+            StatementBinder.bind(update, count[4], count[2], count[3], count[0], count[1]);
+            update.addBatch();
+        }
+        update.executeBatch();
+    }
+
+    /**
+     * Inserts a kill and increments the attacker's kill count of the victim, in a single transaction
+     *
+     * @param attackerUniqueId
+     * @param attacker
+     * @param attackerTag
+     * @param victimUniqueId
+     * @param victim
+     * @param victimTag
+     * @param type
+     */
+    public void insert(UUID attackerUniqueId, String attacker, String attackerTag, UUID victimUniqueId, String victim, String victimTag, String type) {
+        long createdAt = System.currentTimeMillis();
+        core.transaction(attackerUniqueId, "INSERT", connection -> {
+            PreparedStatement statement = core.prepare(connection, INSERT);
+            StatementBinder.bind(statement, attackerUniqueId.toString(), attacker, attackerTag, victimUniqueId.toString(), victim, victimTag, type,
+                    createdAt);
+            statement.executeUpdate();
+            addCounts(core, connection, Collections.singletonList(new Object[]{attackerUniqueId.toString(), victimUniqueId.toString(), attacker, victim, 1}));
+        });
+    }
+
+    /**
+     * Deletes the kills made by a player
+     *
+     * @param attacker the attacker's name
+     */
+    @Deprecated
+    public void deleteByAttacker(String attacker) {
+        core.transaction(null, "DELETE", connection -> delete(connection, attacker, DELETE_BY_ATTACKER,
+                DELETE_COUNTS_BY_ATTACKER, DELETE_DAILY_BY_ATTACKER));
+    }
+
+    /**
+     * Deletes the kills made by a player
+     *
+     * @param attacker the attacker's UUID
+     */
+    public void deleteByAttacker(UUID attacker) {
+        // including the rolled up kills, or they would still count in the daily totals
+        core.transaction(attacker, "DELETE", connection -> delete(connection, attacker.toString(),
+                DELETE_BY_ATTACKER_UUID, DELETE_COUNTS_BY_ATTACKER_UUID, DELETE_DAILY_BY_ATTACKER_UUID));
+    }
+
+    private void delete(Connection connection, String attacker, String... queries) throws SQLException {
+        for (String query : queries) {
+            PreparedStatement statement = core.prepare(connection, query);
+            StatementBinder.bind(statement, attacker);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * @param attacker the attacker's UUID
+     * @return rows of victim and kills
+     */
+    public ResultSet selectKillsPerPlayer(UUID attacker) {
+        return core.select(SELECT_KILLS_PER_PLAYER, attacker.toString());
+    }
+
+    /**
+     * @return rows of attacker_uuid, victim_uuid and kills
+     */
+    public ResultSet selectCounts() {
+        return core.select(SELECT_COUNTS);
+    }
+
+    /**
+     * @return rows of attacker, victim and kills
+     */
+    public ResultSet selectMostKilled() {
+        return core.select(SELECT_MOST_KILLED);
+    }
+}
@@ -0,0 +1,345 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Write-behind buffer for kills and the players' kill and death counters.
+ * <p>
+ * Buffered entries are appended to a local journal file as they arrive and written to the database
+ * in a single transaction when {@link #flush()} is called. The journal is rewritten with whatever is still pending
+ * after each successful flush, and replayed by {@link #replay()} if the server stopped before flushing.
+ */
+public class KillJournal {
+
+    private static final String KILL = "K";
+    private static final String COUNTERS = "P";
+    private static final String DELETE = "D";
+    private static final String SEPARATOR = "\t";
+
+    private final Logger log;
+    private final DBCore core;
+    private final File file;
+    private final int maxRows;
+    private final Runnable flushTrigger;
+    private BufferedWriter out;
+
+    private List<String[]> kills = new ArrayList<>();
+    private Map<String, String[]> counters = new LinkedHashMap<>();
+    private Map<String, String[]> deletes = new LinkedHashMap<>();
+    private boolean flushRequested;
+    private final Object flushLock = new Object();
+
+    /**
+     * @param log the logger used to report failures
+     * @param core the database
+     * @param file the journal file
+     * @param maxRows the amount of buffered rows that triggers a flush
+     * @param flushTrigger schedules a flush when the buffer is full
+     */
+    public KillJournal(Logger log, DBCore core, File file, int maxRows, Runnable flushTrigger) {
+        this.log = log;
+        this.core = core;
+        this.file = file;
+        this.maxRows = Math.max(1, maxRows);
+        this.flushTrigger = flushTrigger;
+    }
+
+    /**
+     * Buffers a kill
+     */
+    public void addKill(UUID attackerUniqueId, String attacker, String attackerTag, UUID victimUniqueId, String victim, String victimTag, String type) {
+        add(new String[]{KILL, attackerUniqueId.toString(), attacker, attackerTag, victimUniqueId.toString(), victim, victimTag, type,
+                String.valueOf(System.currentTimeMillis())});
+    }
+
+    /**
+     * Buffers the current kill and death counters of a player, replacing any older values still pending
+     *
+     * @param cp the player
+     */
+    public void addCounters(ClanPlayer cp) {
+        add(new String[]{COUNTERS, cp.getUniqueId().toString(), String.valueOf(cp.getNeutralKills()), String.valueOf(cp.getRivalKills()),
+                String.valueOf(cp.getCivilianKills()), String.valueOf(cp.getDeaths()), String.valueOf(cp.getLastSeen())});
+    }
+
+    /**
+     * Buffers the deletion of the kills made by a player, dropping their kills still pending.
+     * The deletion is written before the kills buffered after it, so it cannot be undone by an earlier flush.
+     *
+     * @param attackerUniqueId the attacker's UUID
+     */
+    public void deleteKills(UUID attackerUniqueId) {
+        add(new String[]{DELETE, attackerUniqueId.toString()});
+    }
+
+    private void add(String[] entry) {
+        boolean trigger;
+        synchronized (this) {
+            buffer(entry);
+            append(entry);
+            trigger = !flushRequested && size() >= maxRows;
+            if (trigger) {
+                flushRequested = true;
+            }
+        }
+        if (trigger) {
+            flushTrigger.run();
+        }
+    }
+
+    /**
+     * @return the amount of buffered rows
+     */
+    public synchronized int size() {
+        return kills.size() + counters.size() + deletes.size();
+    }
+
+    /**
+     * Writes the buffered rows to the database in a single transaction.
+     * If that fails they are kept in the buffer and the journal for the next flush.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<String[]> pendingKills;
+            Map<String, String[]> pendingCounters;
+            Map<String, String[]> pendingDeletes;
+            synchronized (this) {
+                flushRequested = false;
+                if (size() == 0) {
+                    return;
+                }
+                pendingKills = kills;
+                pendingCounters = counters;
+                pendingDeletes = deletes;
+                kills = new ArrayList<>();
+                counters = new LinkedHashMap<>();
+                deletes = new LinkedHashMap<>();
+            }
+
+            boolean written = write(pendingDeletes.keySet(), pendingKills, pendingCounters.values());
+
+            synchronized (this) {
+                if (!written) {
+                    // the deletions buffered meanwhile also drop the kills that are going back to the buffer
+                    for (String attacker : deletes.keySet()) {
+                        pendingKills.removeIf(kill -> kill[1].equals(attacker));
+                    }
+                    pendingDeletes.putAll(deletes);
+                    deletes = pendingDeletes;
+                    pendingKills.addAll(kills);
+                    kills = pendingKills;
+                    for (Map.Entry<String, String[]> entry : counters.entrySet()) {
+                        pendingCounters.put(entry.getKey(), entry.getValue());
+                    }
+                    counters = pendingCounters;
+                    return;
+                }
+                rewrite();
+            }
+            SimpleClans.debug("Flushed " + pendingKills.size() + " kills, " + pendingCounters.size() + " player counters and "
+                    + pendingDeletes.size() + " kill deletions");
+        }
+    }
+
+    /**
+     * Writes the entries left in the journal by a previous run to the database
+     */
+    public void replay() {
+        if (!file.exists()) {
+            return;
+        }
+        synchronized (this) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] entry = line.split(SEPARATOR, -1);
+                    if ((entry[0].equals(KILL) && entry.length == 9) || (entry[0].equals(COUNTERS) && entry.length == 7)
+                            || (entry[0].equals(DELETE) && entry.length == 2)) {
+                        buffer(entry);
+                    }
+                }
+            } catch (IOException ex) {
+                log.severe("Failed to read the kill journal: " + ex.getMessage());
+                return;
+            }
+        }
+        int replayed = size();
+        if (replayed > 0) {
+            log.info("Replaying " + replayed + " unsaved kill journal entries...");
+        }
+        flush();
+    }
+
+    /**
+     * Flushes the buffer and closes the journal
+     */
+    public void close() {
+        flush();
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException ex) {
+                log.warning("Failed to close the kill journal: " + ex.getMessage());
+            }
+            out = null;
+        }
+    }
+
+    private boolean write(Collection<String> pendingDeletes, List<String[]> pendingKills, Iterable<String[]> pendingCounters) {
+        // after the queued writes, e.g. the insert of a player whose counters are updated here
+        boolean written = core.transactionAfterAll("INSERT", connection -> {
+            try {
+                writeRows(connection, pendingDeletes, pendingKills, pendingCounters);
+            } catch (NumberFormatException ex) {
+                throw new SQLException("Invalid kill journal entry: " + ex.getMessage(), ex);
+            }
+        });
+        if (!written) {
+            log.severe("Error flushing the kill journal");
+        }
+        return written;
+    }
+
+    private void writeRows(Connection connection, Collection<String> pendingDeletes, List<String[]> pendingKills,
+                           Iterable<String[]> pendingCounters) throws SQLException {
+        if (!pendingDeletes.isEmpty()) {
+            PreparedStatement kills = core.prepare(connection, KillDAO.DELETE_BY_ATTACKER_UUID);
+            PreparedStatement counts = core.prepare(connection, KillDAO.DELETE_COUNTS_BY_ATTACKER_UUID);
+            PreparedStatement daily = core.prepare(connection, KillDAO.DELETE_DAILY_BY_ATTACKER_UUID);
+            for (String attacker : pendingDeletes) {
+                StatementBinder.bind(kills, attacker);
+                kills.addBatch();
+                StatementBinder.bind(counts, attacker);
+                counts.addBatch();
+                StatementBinder.bind(daily, attacker);
+                daily.addBatch();
+            }
+            kills.executeBatch();
+            counts.executeBatch();
+            daily.executeBatch();
+        }
+        if (!pendingKills.isEmpty()) {
+            PreparedStatement statement = core.prepare(connection, KillDAO.INSERT);
+            for (String[] kill : pendingKills) {
+                StatementBinder.bind(statement, kill[1], kill[2], kill[3], kill[4], kill[5], kill[6], kill[7], Long.parseLong(kill[8]));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            writeKillCounts(connection, pendingKills);
+        }
+        PreparedStatement statement = null;
+        for (String[] c : pendingCounters) {
+            if (statement == null) {
+                statement = core.prepare(connection, ClanPlayerDAO.UPDATE_COUNTERS);
+            }
+            StatementBinder.bind(statement, Integer.parseInt(c[2]), Integer.parseInt(c[3]), Integer.parseInt(c[4]),
+                    Integer.parseInt(c[5]), Long.parseLong(c[6]), c[1]);
+            statement.addBatch();
+        }
+        if (statement != null) {
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Adds the buffered kills to the attackers' kill counts, one row per attacker and victim
+     */
+    private void writeKillCounts(Connection connection, List<String[]> pendingKills) throws SQLException {
+        Map<String, Object[]> counts = new LinkedHashMap<>();
+        for (String[] kill : pendingKills) {
+            Object[] count = counts.get(kill[1] + kill[4]);
+            if (count == null) {
+                count = new Object[]{kill[1], kill[4], kill[2], kill[5], 0};
+                counts.put(kill[1] + kill[4], count);
+            }
+            // the latest names win
+            count[2] = kill[2];
+            count[3] = kill[5];
+            count[4] = (Integer) count[4] + 1;
+        }
+        KillDAO.addCounts(core, connection, counts.values());
+    }
+
+    private void buffer(String[] entry) {
+        if (entry[0].equals(KILL)) {
+            kills.add(entry);
+        } else if (entry[0].equals(DELETE)) {
+            kills.removeIf(kill -> kill[1].equals(entry[1]));
+            deletes.put(entry[1], entry);
+        } else {
+            counters.put(entry[1], entry);
+        }
+    }
+
+    private void append(String[] entry) {
+        try {
+            if (out == null) {
+                out = open(true);
+            }
+            writeEntry(entry);
+            out.flush();
+        } catch (IOException ex) {
+            log.severe("Failed to write to the kill journal: " + ex.getMessage());
+        }
+    }
+
+    private void rewrite() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+            out = open(false);
+            for (String[] delete : deletes.values()) {
+                writeEntry(delete);
+            }
+            for (String[] kill : kills) {
+                writeEntry(kill);
+            }
+            for (String[] c : counters.values()) {
+                writeEntry(c);
+            }
+            out.flush();
+        } catch (IOException ex) {
+            out = null;
+            log.severe("Failed to rewrite the kill journal: " + ex.getMessage());
+        }
+    }
+
+    private BufferedWriter open(boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8));
+    }
+
+    private void writeEntry(String[] entry) throws IOException {
+        for (int i = 0; i < entry.length; i++) {
+            if (i > 0) {
+                out.write(SEPARATOR);
+            }
+            out.write(entry[i] == null ? "" : entry[i].replace(SEPARATOR, " ").replace("\n", " ").replace("\r", " "));
+        }
+        out.newLine();
+    }
+}
@@ -0,0 +1,186 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Rolls old kills up into daily totals per attacker, victim and kill type and deletes them from sc_kills.
+ * <p>
+ * Kills are processed oldest first, in chunks of a bounded size, each one in its own transaction,
+ * so the kills table is never locked for long.
+ */
+public class KillRollup {
+
+    private static final String SELECT_OLDEST = "SELECT %s AS `id`, `attacker_uuid`, `victim_uuid`, `attacker`, `victim`, `kill_type`, `created_at` FROM `sc_kills` ORDER BY %<s LIMIT ?;";
+    private static final String DELETE_ROLLED_UP = "DELETE FROM `sc_kills` WHERE %s <= ? AND `created_at` < ?;";
+    private static final String COUNT_OLD = "SELECT COUNT(*) AS `kills` FROM `sc_kills` WHERE `created_at` < ?;";
+    private static final String INSERT_DAILY_MYSQL = "INSERT IGNORE INTO `sc_kills_daily` (`day`, `attacker_uuid`, `victim_uuid`, `kill_type`, `attacker`, `victim`, `kills`) VALUES (?, ?, ?, ?, ?, ?, 0);";
+    private static final String INSERT_DAILY_SQLITE = "INSERT OR IGNORE INTO `sc_kills_daily` (`day`, `attacker_uuid`, `victim_uuid`, `kill_type`, `attacker`, `victim`, `kills`) VALUES (?, ?, ?, ?, ?, ?, 0);";
+    private static final String UPDATE_DAILY = "UPDATE `sc_kills_daily` SET `kills` = `kills` + ?, `attacker` = ?, `victim` = ? WHERE `day` = ? AND `attacker_uuid` = ? AND `victim_uuid` = ? AND `kill_type` = ?;";
+    private static final int PROGRESS_INTERVAL = 10;
+
+    private final Logger log;
+    private final DBCore core;
+    private final String selectOldest;
+    private final String deleteRolledUp;
+    private final String insertDaily;
+
+    /**
+     * @param log the logger used to report progress and failures
+     * @param core the database
+     */
+    public KillRollup(Logger log, DBCore core) {
+        this.log = log;
+        this.core = core;
+        // kill_id is not auto incremented on SQLite
+        String id = core instanceof MySQLCore ? "`kill_id`" : "`rowid`";
+        selectOldest = String.format(SELECT_OLDEST, id);
+        deleteRolledUp = String.format(DELETE_ROLLED_UP, id);
+        insertDaily = core instanceof MySQLCore ? INSERT_DAILY_MYSQL : INSERT_DAILY_SQLITE;
+    }
+
+    /**
+     * Rolls up the kills older than the max age
+     *
+     * @param maxAgeDays the age after which kills are rolled up
+     * @param chunkSize the max amount of kills per transaction
+     * @param dryRun only log how many kills would be rolled up
+     */
+    public void run(int maxAgeDays, int chunkSize, boolean dryRun) {
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAgeDays);
+        if (dryRun) {
+            log.info(String.format("Kill rollup (dry run): %d kills older than %d days would be rolled up", countOld(cutoff), maxAgeDays));
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long total = 0;
+        int chunks = 0;
+        while (true) {
+            int rolledUp = rollupChunk(cutoff, chunkSize);
+            if (rolledUp <= 0) {
+                break;
+            }
+            total += rolledUp;
+            chunks++;
+            if (chunks % PROGRESS_INTERVAL == 0) {
+                log.info(String.format("Kill rollup: %d kills rolled up so far...", total));
+            }
+            if (rolledUp < chunkSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info(String.format("Kill rollup: %d kills older than %d days rolled up in %d ms", total, maxAgeDays,
+                    System.currentTimeMillis() - start));
+        } else {
+            SimpleClans.debug("Kill rollup: no kills older than " + maxAgeDays + " days");
+        }
+    }
+
+    private long countOld(long cutoff) {
+        Connection connection = core.getConnection();
+        if (connection == null) {
+            return 0;
+        }
+        try {
+            PreparedStatement statement = core.prepare(connection, COUNT_OLD);
+            StatementBinder.bind(statement, cutoff);
+            try (ResultSet res = statement.executeQuery()) {
+                return res.next() ? res.getLong("kills") : 0;
+            }
+        } catch (SQLException ex) {
+            log.severe("Error counting old kills: " + ex.getMessage());
+            return 0;
+        } finally {
+            core.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Rolls up and deletes the oldest kills in a single transaction
+     *
+     * @return the amount of kills rolled up, or -1 if it failed
+     */
+    private int rollupChunk(long cutoff, int chunkSize) {
+        Connection connection = core.getConnection();
+        if (connection == null) {
+            return -1;
+        }
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement select = core.prepare(connection, selectOldest);
+            StatementBinder.bind(select, chunkSize);
+
+            Map<String, Object[]> totals = new LinkedHashMap<>();
+            long lastId = 0;
+            int rows = 0;
+            try (ResultSet res = select.executeQuery()) {
+                while (res.next()) {
+                    long createdAt = res.getLong("created_at");
+                    if (createdAt >= cutoff) {
+                        // kills are stored in chronological order, the rest is newer
+                        break;
+                    }
+                    lastId = res.getLong("id");
+                    rows++;
+
+                    int day = (int) TimeUnit.MILLISECONDS.toDays(createdAt);
+                    String attackerUniqueId = text(res.getString("attacker_uuid"));
+                    String victimUniqueId = text(res.getString("victim_uuid"));
+                    String type = text(res.getString("kill_type"));
+                    String key = day + "|" + attackerUniqueId + "|" + victimUniqueId + "|" + type;
+                    Object[] total = totals.get(key);
+                    if (total == null) {
+                        total = new Object[]{day, attackerUniqueId, victimUniqueId, type, null, null, 0};
+                        totals.put(key, total);
+                    }
+                    total[4] = text(res.getString("attacker"));
+                    total[5] = text(res.getString("victim"));
+                    total[6] = (Integer) total[6] + 1;
+                }
+            }
+            if (rows == 0) {
+                connection.commit();
+                return 0;
+            }
+
+            PreparedStatement insert = core.prepare(connection, insertDaily);
+            for (Object[] total : totals.values()) {
+                StatementBinder.bind(insert, total[0], total[1], total[2], total[3], total[4], total[5]);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            PreparedStatement update = core.prepare(connection, UPDATE_DAILY);
+            for (Object[] total : totals.values()) {
+                StatementBinder.bind(update, total[6], total[4], total[5], total[0], total[1], total[2], total[3]);
+                update.addBatch();
+            }
+            update.executeBatch();
+
+            PreparedStatement delete = core.prepare(connection, deleteRolledUp);
+            StatementBinder.bind(delete, lastId, cutoff);
+            delete.executeUpdate();
+
+            connection.commit();
+            return rows;
+        } catch (SQLException ex) {
+            log.severe("Error rolling up old kills: " + ex.getMessage());
+            return -1;
+        } finally {
+            core.releaseConnection(connection);
+        }
+    }
+
+    private static String text(String value) {
+        return value == null ? "" : value;
+    }
+}
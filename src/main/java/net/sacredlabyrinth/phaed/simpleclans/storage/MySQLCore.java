@@ -2,12 +2,20 @@ package net.sacredlabyrinth.phaed.simpleclans.storage;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
-import net.sacredlabyrinth.phaed.simpleclans.threads.ThreadUpdateSQL;
+import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+import net.sacredlabyrinth.phaed.simpleclans.threads.WriteExecutor;
 
 /**
  * @author cc_madelg
@@ -15,7 +23,10 @@ import net.sacredlabyrinth.phaed.simpleclans.threads.ThreadUpdateSQL;
 public class MySQLCore implements DBCore {
 
     private Logger log;
-    private Connection connection;
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
+    private ConnectionPool pool;
+    private WriteExecutor writer;
     private String host;
     private String username;
     private String password;
@@ -41,12 +52,18 @@ public class MySQLCore implements DBCore {
     private void initialize() {
         try {
             Class.forName("com.mysql.jdbc.Driver");
-            connection = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database + "?useUnicode=true&characterEncoding=utf-8&autoReconnect=true", username, password);
         } catch (ClassNotFoundException e) {
             log.severe("ClassNotFoundException! " + e.getMessage());
-        } catch (SQLException e) {
-            log.severe("SQLException! " + e.getMessage());
         }
+        SettingsManager settings = SimpleClans.getInstance().getSettingsManager();
+        pool = new ConnectionPool(log, this::openConnection, settings.getPoolMaxSize(), settings.getPoolMinIdle(),
+                settings.getPoolIdleTimeout() * 1000L, settings.getPoolMaxWait());
+        pool.fill();
+        writer = new WriteExecutor(log, "SimpleClans-MySQL", settings.getWriterThreads(), settings.getWriteQueueCapacity());
+    }
+
+    private Connection openConnection() throws SQLException {
+        return DriverManager.getConnection("jdbc:mysql://" + host + ":" + port + "/" + database + "?useUnicode=true&characterEncoding=utf-8&useServerPrepStmts=true&rewriteBatchedStatements=true", username, password);
     }
 
     /**
@@ -55,13 +72,31 @@ public class MySQLCore implements DBCore {
     @Override
     public Connection getConnection() {
         try {
-            if (connection == null || connection.isClosed()) {
-                initialize();
-            }
+            return pool.borrow();
         } catch (SQLException e) {
-            initialize();
+            log.severe("SQLException! " + e.getMessage());
+            return null;
         }
-        return connection;
+    }
+
+    @Override
+    public void releaseConnection(Connection connection) {
+        pool.release(connection);
+    }
+
+    @Override
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public WriteExecutor getWriteExecutor() {
+        return writer;
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        return pool.prepare(connection, query);
     }
 
     /**
@@ -69,7 +104,9 @@ public class MySQLCore implements DBCore {
      */
     @Override
     public Boolean checkConnection() {
-        return getConnection() != null;
+        Connection connection = getConnection();
+        releaseConnection(connection);
+        return connection != null;
     }
 
     /**
@@ -77,10 +114,9 @@ public class MySQLCore implements DBCore {
      */
     @Override
     public void close() {
+        writer.shutdown(SHUTDOWN_TIMEOUT);
         try {
-            if (connection != null) {
-                connection.close();
-            }
+            pool.close();
         } catch (Exception e) {
             log.severe("Failed to close database connection! " + e.getMessage());
         }
@@ -94,15 +130,91 @@ public class MySQLCore implements DBCore {
      */
     @Override
     public ResultSet select(String query) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return null;
+        }
+        try (Statement statement = connection.createStatement(); ResultSet res = statement.executeQuery(query)) {
+            CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+            rows.populate(res);
+            return rows;
+        } catch (SQLException ex) {
+            log.severe("Error at SQL Query: " + ex.getMessage());
+            log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Execute a select prepared statement
+     *
+     * @param query
+     * @param params
+     * @return
+     */
+    @Override
+    public ResultSet select(String query, Object... params) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return null;
+        }
         try {
-            return getConnection().createStatement().executeQuery(query);
+            PreparedStatement statement = prepare(connection, query);
+            StatementBinder.bind(statement, params);
+            try (ResultSet res = statement.executeQuery()) {
+                CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+                rows.populate(res);
+                return rows;
+            }
         } catch (SQLException ex) {
             log.severe("Error at SQL Query: " + ex.getMessage());
             log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
         }
         return null;
     }
 
+    /**
+     * Execute a select statement and hand each row to the consumer as it is read.
+     * The consumer must not use the database, see {@link DBCore#stream(String, RowConsumer)}
+     *
+     * @param query
+     * @param consumer
+     * @return whether all the rows were read
+     */
+    @Override
+    public boolean stream(String query, RowConsumer consumer) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J streams the rows one by one instead of reading the whole result first
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet res = statement.executeQuery(query)) {
+                pool.setStreaming(true);
+                while (res.next()) {
+                    consumer.accept(res);
+                }
+            } finally {
+                pool.setStreaming(false);
+            }
+            return true;
+        } catch (SQLException ex) {
+            log.severe("Error at SQL Query: " + ex.getMessage());
+            log.severe("Query: " + query);
+        } catch (RuntimeException ex) {
+            // e.g. the consumer used the database, the rest of the rows are skipped
+            log.log(Level.SEVERE, "Error reading the rows of query: " + query, ex);
+        } finally {
+            releaseConnection(connection);
+        }
+        return false;
+    }
+
     /**
      * Execute an insert statement
      *
@@ -111,17 +223,9 @@ public class MySQLCore implements DBCore {
     @Override
     public void insert(String query) {
         if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-            Thread th = new Thread(new ThreadUpdateSQL(getConnection(), query, "INSERT"));
-            th.start();
+            writer.submit(null, () -> executeUpdate(query, "[Thread] INSERT"));
         } else {
-            try {
-                getConnection().createStatement().executeUpdate(query);
-            } catch (SQLException ex) {
-                if (!ex.toString().contains("not return ResultSet")) {
-                    log.severe("Error at SQL INSERT Query: " + ex);
-                    log.severe("Query: " + query);
-                }
-            }
+            executeUpdate(query, "INSERT");
         }
     }
 
@@ -133,17 +237,9 @@ public class MySQLCore implements DBCore {
     @Override
     public void update(String query) {
         if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-            Thread th = new Thread(new ThreadUpdateSQL(getConnection(), query, "UPDATE"));
-            th.start();
+            writer.submit(null, () -> executeUpdate(query, "[Thread] UPDATE"));
         } else {
-            try {
-                getConnection().createStatement().executeUpdate(query);
-            } catch (SQLException ex) {
-                if (!ex.toString().contains("not return ResultSet")) {
-                    log.severe("Error at SQL UPDATE Query: " + ex);
-                    log.severe("Query: " + query);
-                }
-            }
+            executeUpdate(query, "UPDATE");
         }
     }
 
@@ -155,17 +251,152 @@ public class MySQLCore implements DBCore {
     @Override
     public void delete(String query) {
         if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-            Thread th = new Thread(new ThreadUpdateSQL(getConnection(), query, "DELETE"));
-            th.start();
+            writer.submit(null, () -> executeUpdate(query, "[Thread] DELETE"));
         } else {
-            try {
-                getConnection().createStatement().executeUpdate(query);
-            } catch (SQLException ex) {
-                if (!ex.toString().contains("not return ResultSet")) {
-                    log.severe("Error at SQL DELETE Query: " + ex);
-                    log.severe("Query: " + query);
-                }
+            executeUpdate(query, "DELETE");
+        }
+    }
+
+    /**
+     * Execute an insert prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void insert(String query, Object... params) {
+        write(null, "INSERT", query, params);
+    }
+
+    /**
+     * Execute an update prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void update(String query, Object... params) {
+        write(null, "UPDATE", query, params);
+    }
+
+    /**
+     * Execute a delete prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void delete(String query, Object... params) {
+        write(null, "DELETE", query, params);
+    }
+
+    /**
+     * Execute an insert, update or delete prepared statement
+     *
+     * @param key
+     * @param sqlType
+     * @param query
+     * @param params
+     */
+    @Override
+    public void write(Object key, String sqlType, String query, Object... params) {
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(key, () -> executeUpdate(query, params, "[Thread] " + sqlType));
+        } else {
+            executeUpdate(query, params, sqlType);
+        }
+    }
+
+    /**
+     * Execute statements in a single transaction
+     *
+     * @param key
+     * @param sqlType
+     * @param transaction
+     * @param onFailure
+     */
+    @Override
+    public void transaction(Object key, String sqlType, Transaction transaction, Runnable onFailure) {
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(key, () -> executeTransaction(transaction, "[Thread] " + sqlType, onFailure));
+        } else {
+            executeTransaction(transaction, sqlType, onFailure);
+        }
+    }
+
+    /**
+     * Execute statements in a single transaction after all the writes submitted before
+     *
+     * @param sqlType
+     * @param transaction
+     * @return whether the transaction was committed
+     */
+    @Override
+    public boolean transactionAfterAll(String sqlType, Transaction transaction) {
+        if (!SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            return executeTransaction(transaction, sqlType);
+        }
+        AtomicBoolean committed = new AtomicBoolean();
+        writer.submitAfterAll(() -> committed.set(executeTransaction(transaction, "[Thread] " + sqlType)));
+        return committed.get();
+    }
+
+    private void executeTransaction(Transaction transaction, String sqlType, Runnable onFailure) {
+        if (!executeTransaction(transaction, sqlType) && onFailure != null) {
+            onFailure.run();
+        }
+    }
+
+    private boolean executeTransaction(Transaction transaction, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try {
+            connection.setAutoCommit(false);
+            transaction.run(connection);
+            connection.commit();
+            return true;
+        } catch (SQLException ex) {
+            // the pool rolls back the connection when it is released
+            log.severe("Error at SQL " + sqlType + " transaction: " + ex);
+            return false;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void executeUpdate(String query, Object[] params, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return;
+        }
+        try {
+            PreparedStatement statement = prepare(connection, query);
+            StatementBinder.bind(statement, params);
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            log.severe("Error at SQL " + sqlType + " Query: " + ex);
+            log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void executeUpdate(String query, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(query);
+        } catch (SQLException ex) {
+            if (!ex.toString().contains("not return ResultSet")) {
+                log.severe("Error at SQL " + sqlType + " Query: " + ex);
+                log.severe("Query: " + query);
             }
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -177,13 +408,19 @@ public class MySQLCore implements DBCore {
      */
     @Override
     public Boolean execute(String query) {
-        try {
-            getConnection().createStatement().execute(query);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(query);
             return true;
         } catch (SQLException ex) {
             log.severe(ex.getMessage());
             log.severe("Query: " + query);
             return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -194,12 +431,17 @@ public class MySQLCore implements DBCore {
      * @return
      */
     public Boolean existsTable(String table) {
-        try {
-            ResultSet tables = getConnection().getMetaData().getTables(null, null, table, null);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, table, null)) {
             return tables.next();
         } catch (SQLException e) {
             log.severe("Failed to check if table " + table + " exists: " + e.getMessage());
             return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -211,12 +453,43 @@ public class MySQLCore implements DBCore {
      * @return
      */
     public Boolean existsColumn(String table, String column) {
-        try {
-            ResultSet col = getConnection().getMetaData().getColumns(null, null, table, column);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (ResultSet col = connection.getMetaData().getColumns(null, null, table, column)) {
             return col.next();
         } catch (Exception e) {
             log.severe("Failed to check if column " + column + " exists in table " + table + " : " + e.getMessage());
             return false;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * Check whether an index exists
+     *
+     * @param table
+     * @param index
+     * @return
+     */
+    public Boolean existsIndex(String table, String index) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try {
+            PreparedStatement statement = prepare(connection, "SELECT 1 FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ? LIMIT 1;");
+            StatementBinder.bind(statement, table, index);
+            try (ResultSet res = statement.executeQuery()) {
+                return res.next();
+            }
+        } catch (SQLException e) {
+            log.severe("Failed to check if index " + index + " exists in table " + table + " : " + e.getMessage());
+            return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
 }
@@ -3,20 +3,35 @@ package net.sacredlabyrinth.phaed.simpleclans.storage;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.bukkit.scheduler.BukkitRunnable;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+import net.sacredlabyrinth.phaed.simpleclans.threads.WriteExecutor;
 
 /**
  * @author cc_madelg
  */
 public class SQLiteCore implements DBCore {
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+    private static final int STREAM_FETCH_SIZE = 1000;
+    /**
+     * One connection for the writer thread and the rest for the reads, e.g. on the main thread
+     */
+    private static final int POOL_SIZE = 3;
+
     private Logger log;
-    private Connection connection;
+    private ConnectionPool pool;
+    private WriteExecutor writer;
     private String dbLocation;
     private String dbName;
     private File file;
@@ -51,14 +66,28 @@ public class SQLiteCore implements DBCore {
 
         try {
             Class.forName("org.sqlite.JDBC");
-
-            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
-
-        } catch (SQLException ex) {
-            log.severe("SQLite exception on initialize " + ex);
         } catch (ClassNotFoundException ex) {
             log.severe("You need the SQLite library " + ex);
         }
+        // in WAL mode the reads do not wait for the writes to commit, so they get their own connections
+        SettingsManager settings = SimpleClans.getInstance().getSettingsManager();
+        pool = new ConnectionPool(log, this::openConnection, POOL_SIZE, 1, settings.getPoolIdleTimeout() * 1000L,
+                settings.getPoolMaxWait());
+        pool.fill();
+        writer = new WriteExecutor(log, "SimpleClans-SQLite", 1, settings.getWriteQueueCapacity());
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            // SQLite still allows one writer at a time, a write waits for the other one up to the max wait
+            statement.execute("PRAGMA busy_timeout=" + SimpleClans.getInstance().getSettingsManager().getPoolMaxWait());
+        } catch (SQLException ex) {
+            connection.close();
+            throw ex;
+        }
+        return connection;
     }
 
     /**
@@ -66,11 +95,32 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public Connection getConnection() {
-        if (connection == null) {
-            initialize();
+        try {
+            return pool.borrow();
+        } catch (SQLException ex) {
+            log.severe("SQLite exception on initialize " + ex);
+            return null;
         }
+    }
 
-        return connection;
+    @Override
+    public void releaseConnection(Connection connection) {
+        pool.release(connection);
+    }
+
+    @Override
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public WriteExecutor getWriteExecutor() {
+        return writer;
+    }
+
+    @Override
+    public PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        return pool.prepare(connection, query);
     }
 
     /**
@@ -78,7 +128,9 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public Boolean checkConnection() {
-        return getConnection() != null;
+        Connection connection = getConnection();
+        releaseConnection(connection);
+        return connection != null;
     }
 
     /**
@@ -86,10 +138,9 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public void close() {
+        writer.shutdown(SHUTDOWN_TIMEOUT);
         try {
-            if (connection != null) {
-                connection.close();
-            }
+            pool.close();
         } catch (Exception e) {
             log.severe("Failed to close database connection! " + e.getMessage());
         }
@@ -103,15 +154,90 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public ResultSet select(String query) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return null;
+        }
+        try (Statement statement = connection.createStatement(); ResultSet res = statement.executeQuery(query)) {
+            CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+            rows.populate(res);
+            return rows;
+        } catch (SQLException ex) {
+            log.severe("Error at SQL Query: " + ex.getMessage());
+            log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Execute a select prepared statement
+     *
+     * @param query
+     * @param params
+     * @return
+     */
+    @Override
+    public ResultSet select(String query, Object... params) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return null;
+        }
         try {
-            return getConnection().createStatement().executeQuery(query);
+            PreparedStatement statement = prepare(connection, query);
+            StatementBinder.bind(statement, params);
+            try (ResultSet res = statement.executeQuery()) {
+                CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+                rows.populate(res);
+                return rows;
+            }
         } catch (SQLException ex) {
             log.severe("Error at SQL Query: " + ex.getMessage());
             log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
         }
         return null;
     }
 
+    /**
+     * Execute a select statement and hand each row to the consumer as it is read.
+     * The consumer must not use the database, see {@link DBCore#stream(String, RowConsumer)}
+     *
+     * @param query
+     * @param consumer
+     * @return whether all the rows were read
+     */
+    @Override
+    public boolean stream(String query, RowConsumer consumer) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet res = statement.executeQuery(query)) {
+                pool.setStreaming(true);
+                while (res.next()) {
+                    consumer.accept(res);
+                }
+            } finally {
+                pool.setStreaming(false);
+            }
+            return true;
+        } catch (SQLException ex) {
+            log.severe("Error at SQL Query: " + ex.getMessage());
+            log.severe("Query: " + query);
+        } catch (RuntimeException ex) {
+            // e.g. the consumer used the database, the rest of the rows are skipped
+            log.log(Level.SEVERE, "Error reading the rows of query: " + query, ex);
+        } finally {
+            releaseConnection(connection);
+        }
+        return false;
+    }
+
     /**
      * Execute an insert statement
      *
@@ -119,18 +245,11 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public void insert(String query) {
-    	if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-    		executeAsync(query, "INSERT");    		
-    	} else {
-    		try {
-    			getConnection().createStatement().executeQuery(query);
-    		} catch (SQLException ex) {
-    			if (!ex.toString().contains("not return ResultSet")) {
-    				log.severe("Error at SQL INSERT Query: " + ex);
-    				log.severe("Query: " + query);
-    			}
-    		}
-    	}
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(null, () -> executeUpdate(query, "[Thread] INSERT"));
+        } else {
+            executeUpdate(query, "INSERT");
+        }
     }
 
     /**
@@ -140,17 +259,10 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public void update(String query) {
-    	if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-    		executeAsync(query, "UPDATE");    		
-    	} else {
-    		try {
-    			getConnection().createStatement().executeQuery(query);
-    		} catch (SQLException ex) {
-    			if (!ex.toString().contains("not return ResultSet")) {
-    				log.severe("Error at SQL UPDATE Query: " + ex);
-    				log.severe("Query: " + query);
-    			}
-    		}
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(null, () -> executeUpdate(query, "[Thread] UPDATE"));
+        } else {
+            executeUpdate(query, "UPDATE");
         }
     }
 
@@ -161,17 +273,153 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public void delete(String query) {
-    	if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
-    		executeAsync(query, "DELETE");    		
-    	} else {
-    		try {
-    			getConnection().createStatement().executeQuery(query);
-    		} catch (SQLException ex) {
-    			if (!ex.toString().contains("not return ResultSet")) {
-    				log.severe("Error at SQL DELETE Query: " + ex);
-    				log.severe("Query: " + query);
-    			}
-    		}
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(null, () -> executeUpdate(query, "[Thread] DELETE"));
+        } else {
+            executeUpdate(query, "DELETE");
+        }
+    }
+
+    /**
+     * Execute an insert prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void insert(String query, Object... params) {
+        write(null, "INSERT", query, params);
+    }
+
+    /**
+     * Execute an update prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void update(String query, Object... params) {
+        write(null, "UPDATE", query, params);
+    }
+
+    /**
+     * Execute a delete prepared statement
+     *
+     * @param query
+     * @param params
+     */
+    @Override
+    public void delete(String query, Object... params) {
+        write(null, "DELETE", query, params);
+    }
+
+    /**
+     * Execute an insert, update or delete prepared statement
+     *
+     * @param key
+     * @param sqlType
+     * @param query
+     * @param params
+     */
+    @Override
+    public void write(Object key, String sqlType, String query, Object... params) {
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(key, () -> executeUpdate(query, params, "[Thread] " + sqlType));
+        } else {
+            executeUpdate(query, params, sqlType);
+        }
+    }
+
+    /**
+     * Execute statements in a single transaction
+     *
+     * @param key
+     * @param sqlType
+     * @param transaction
+     * @param onFailure
+     */
+    @Override
+    public void transaction(Object key, String sqlType, Transaction transaction, Runnable onFailure) {
+        if (SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            writer.submit(key, () -> executeTransaction(transaction, "[Thread] " + sqlType, onFailure));
+        } else {
+            executeTransaction(transaction, sqlType, onFailure);
+        }
+    }
+
+    /**
+     * Execute statements in a single transaction after all the writes submitted before
+     *
+     * @param sqlType
+     * @param transaction
+     * @return whether the transaction was committed
+     */
+    @Override
+    public boolean transactionAfterAll(String sqlType, Transaction transaction) {
+        if (!SimpleClans.getInstance().getSettingsManager().getUseThreads()) {
+            return executeTransaction(transaction, sqlType);
+        }
+        AtomicBoolean committed = new AtomicBoolean();
+        writer.submitAfterAll(() -> committed.set(executeTransaction(transaction, "[Thread] " + sqlType)));
+        return committed.get();
+    }
+
+    private void executeTransaction(Transaction transaction, String sqlType, Runnable onFailure) {
+        if (!executeTransaction(transaction, sqlType) && onFailure != null) {
+            onFailure.run();
+        }
+    }
+
+    private boolean executeTransaction(Transaction transaction, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try {
+            connection.setAutoCommit(false);
+            transaction.run(connection);
+            connection.commit();
+            return true;
+        } catch (SQLException ex) {
+            // the pool rolls back the connection when it is released
+            log.severe("Error at SQL " + sqlType + " transaction: " + ex);
+            return false;
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void executeUpdate(String query, Object[] params, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return;
+        }
+        try {
+            PreparedStatement statement = prepare(connection, query);
+            StatementBinder.bind(statement, params);
+            statement.executeUpdate();
+        } catch (SQLException ex) {
+            log.severe("Error at SQL " + sqlType + " Query: " + ex);
+            log.severe("Query: " + query);
+        } finally {
+            releaseConnection(connection);
+        }
+    }
+
+    private void executeUpdate(String query, String sqlType) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(query);
+        } catch (SQLException ex) {
+            if (!ex.toString().contains("not return ResultSet")) {
+                log.severe("Error at SQL " + sqlType + " Query: " + ex);
+                log.severe("Query: " + query);
+            }
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -183,13 +431,19 @@ public class SQLiteCore implements DBCore {
      */
     @Override
     public Boolean execute(String query) {
-        try {
-            getConnection().createStatement().execute(query);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(query);
             return true;
         } catch (SQLException ex) {
             log.severe(ex.getMessage());
             log.severe("Query: " + query);
             return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -200,12 +454,17 @@ public class SQLiteCore implements DBCore {
      * @return
      */
     public Boolean existsTable(String table) {
-        try {
-            ResultSet tables = getConnection().getMetaData().getTables(null, null, table, null);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (ResultSet tables = connection.getMetaData().getTables(null, null, table, null)) {
             return tables.next();
         } catch (SQLException e) {
             log.severe("Failed to check if table " + table + " exists: " + e.getMessage());
             return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
 
@@ -217,33 +476,43 @@ public class SQLiteCore implements DBCore {
      * @return
      */
     public Boolean existsColumn(String table, String column) {
-        try {
-            ResultSet col = getConnection().getMetaData().getColumns(null, null, table, column);
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try (ResultSet col = connection.getMetaData().getColumns(null, null, table, column)) {
             return col.next();
         } catch (Exception e) {
             log.severe("Failed to check if column " + column + " exists in table " + table + " : " + e.getMessage());
             return false;
+        } finally {
+            releaseConnection(connection);
         }
     }
-    
-    private void executeAsync(String query, String sqlType) {
-    	new BukkitRunnable() {
-			@Override
-			public void run() {
-		        try {
-		        	if (connection != null && !connection.isClosed()) {
-		        		connection.createStatement().executeUpdate(query);
-		        	}
-		        }
-		        catch (SQLException ex) {
-		            if (!ex.toString().contains("not return ResultSet"))
-		            {
-		                log.severe("[Thread] Error at SQL " + sqlType + " Query: " + ex);
-		                log.severe("[Thread] Query: " + query);
-		            }
-		        }				
-			}
-		}.runTaskAsynchronously(SimpleClans.getInstance());
 
+    /**
+     * Check whether an index exists
+     *
+     * @param table
+     * @param index
+     * @return
+     */
+    public Boolean existsIndex(String table, String index) {
+        Connection connection = getConnection();
+        if (connection == null) {
+            return false;
+        }
+        try {
+            PreparedStatement statement = prepare(connection, "SELECT 1 FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND name = ? LIMIT 1;");
+            StatementBinder.bind(statement, table, index);
+            try (ResultSet res = statement.executeQuery()) {
+                return res.next();
+            }
+        } catch (SQLException e) {
+            log.severe("Failed to check if index " + index + " exists in table " + table + " : " + e.getMessage());
+            return false;
+        } finally {
+            releaseConnection(connection);
+        }
     }
 }
@@ -0,0 +1,43 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Binds query parameters to prepared statements using the setter matching their type
+ */
+public final class StatementBinder {
+
+    private StatementBinder() {
+    }
+
+    /**
+     * Binds the parameters, in order, to the statement
+     *
+     * @param statement the statement
+     * @param params the parameters, booleans are stored as 1 or 0
+     * @throws SQLException if a parameter could not be bound
+     */
+    public static void bind(PreparedStatement statement, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            int index = i + 1;
+            if (param == null) {
+                statement.setNull(index, Types.VARCHAR);
+            } else if (param instanceof String) {
+                statement.setString(index, (String) param);
+            } else if (param instanceof Integer) {
+                statement.setInt(index, (Integer) param);
+            } else if (param instanceof Long) {
+                statement.setLong(index, (Long) param);
+            } else if (param instanceof Double) {
+                statement.setDouble(index, (Double) param);
+            } else if (param instanceof Boolean) {
+                statement.setInt(index, (Boolean) param ? 1 : 0);
+            } else {
+                statement.setString(index, param.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.sacredlabyrinth.phaed.simpleclans.tasks;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Writes the buffered kills to the database
+ */
+public class FlushKillJournalTask extends BukkitRunnable {
+	SimpleClans plugin = SimpleClans.getInstance();
+
+    /**
+     * Starts the repetitive task
+     */
+	public void start() {
+		long interval = Math.max(1, plugin.getSettingsManager().getKillJournalFlushInterval() / 50);
+		runTaskTimerAsynchronously(plugin, interval, interval);
+	}
+
+	@Override
+	public void run() {
+		plugin.getStorageManager().flushKillJournal();
+	}
+}
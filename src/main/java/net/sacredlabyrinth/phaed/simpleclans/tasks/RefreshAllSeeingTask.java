@@ -0,0 +1,26 @@
+package net.sacredlabyrinth.phaed.simpleclans.tasks;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Checks the all-seeing eye permission of the online players again, as there is no event for permission changes.
+ * It runs on the main thread because not every permissions plugin can be queried from the chat thread.
+ */
+public class RefreshAllSeeingTask extends BukkitRunnable {
+	private static final long INTERVAL = 30 * 20;
+	SimpleClans plugin = SimpleClans.getInstance();
+
+    /**
+     * Starts the repetitive task
+     */
+	public void start() {
+		runTaskTimer(plugin, INTERVAL, INTERVAL);
+	}
+
+	@Override
+	public void run() {
+		plugin.getClanManager().refreshAllSeeing();
+	}
+}
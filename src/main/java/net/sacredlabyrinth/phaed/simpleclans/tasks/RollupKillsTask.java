@@ -0,0 +1,25 @@
+package net.sacredlabyrinth.phaed.simpleclans.tasks;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
+
+/**
+ * Rolls old kills up into daily totals and deletes them
+ */
+public class RollupKillsTask extends BukkitRunnable {
+	SimpleClans plugin = SimpleClans.getInstance();
+
+    /**
+     * Starts the repetitive task
+     */
+	public void start() {
+		long interval = plugin.getSettingsManager().getKillRetentionInterval() * 60 * 20L;
+		runTaskTimerAsynchronously(plugin, 60 * 20, interval);
+	}
+
+	@Override
+	public void run() {
+		plugin.getStorageManager().rollupKills();
+	}
+}
@@ -0,0 +1,318 @@
+package net.sacredlabyrinth.phaed.simpleclans.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs database writes on a fixed amount of writer threads.
+ * <p>
+ * Every writer has its own bounded queue and writes submitted with the same key (e.g. a clan tag or a player UUID)
+ * always go to the same writer, so they are executed in the order they were submitted.
+ * When a queue is full the submitting thread waits for room instead of piling up more work.
+ */
+public class WriteExecutor {
+
+    private static final long POLL_INTERVAL = 500;
+    private static final long FULL_WARNING_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long ABORT_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Logger log;
+    private final List<Writer> writers = new ArrayList<>();
+    private final int capacity;
+    /**
+     * Submitters hold the read lock while queueing, so no write can be queued once shutdown has the write lock
+     */
+    private final ReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+    private volatile boolean shutdown;
+    private volatile boolean aborted;
+    private volatile long lastFullWarning;
+    private final Object barrierLock = new Object();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * @param log the logger used to report failures
+     * @param name the prefix of the writer thread names
+     * @param threads the amount of writer threads
+     * @param capacity the max amount of pending writes per writer
+     */
+    public WriteExecutor(Logger log, String name, int threads, int capacity) {
+        this.log = log;
+        this.capacity = Math.max(1, capacity);
+        threads = Math.max(1, threads);
+        for (int i = 0; i < threads; i++) {
+            Writer writer = new Writer(name + "-" + i, this.capacity);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    /**
+     * Queues a write, waiting for room if the writer's queue is full.
+     * Writes submitted after {@link #shutdown(long)} are run on the calling thread.
+     *
+     * @param key the ordering key, writes without a key all go to the first writer
+     * @param write the write
+     */
+    public void submit(@Nullable Object key, Runnable write) {
+        shutdownLock.readLock().lock();
+        try {
+            Writer writer = writers.get(key == null ? 0 : Math.floorMod(key.hashCode(), writers.size()));
+            if (!shutdown && enqueue(writer, write, true)) {
+                return;
+            }
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        write.run();
+    }
+
+    /**
+     * Queues a write after the ones already queued for every key and waits until it was run.
+     * The writers stop while it runs, so the writes queued after it are run after it too.
+     * Writes submitted after {@link #shutdown(long)} are run on the calling thread.
+     *
+     * @param write the write
+     */
+    public void submitAfterAll(Runnable write) {
+        Barrier barrier = new Barrier(write);
+        boolean queued = false;
+        shutdownLock.readLock().lock();
+        try {
+            if (!shutdown) {
+                // two barriers queued at the same time would wait for each other
+                synchronized (barrierLock) {
+                    for (Writer writer : writers) {
+                        enqueue(writer, barrier::arrive, false);
+                    }
+                }
+                queued = true;
+            }
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        if (!queued) {
+            write.run();
+            return;
+        }
+        barrier.await();
+    }
+
+    /**
+     * @param interruptible whether to give up if the thread is interrupted while waiting for room
+     * @return false if the write could not be queued and must be run by the caller
+     */
+    private boolean enqueue(Writer writer, Runnable write, boolean interruptible) {
+        submitted.incrementAndGet();
+        if (writer.queue.offer(write)) {
+            return true;
+        }
+        blocked.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastFullWarning > FULL_WARNING_INTERVAL) {
+            lastFullWarning = now;
+            log.warning("The database write queue is full, waiting for the writers to catch up (" + getStats() + ")");
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    writer.queue.put(write);
+                    return true;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                    if (interruptible) {
+                        submitted.decrementAndGet();
+                        return false;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be written.
+     * Writes still queued after the timeout are dropped and the writers are interrupted, this only returns once
+     * they stopped (or did not react to the interruption either), so the connections can be closed afterwards.
+     *
+     * @param timeoutMillis how long to wait for the queues to drain
+     * @return whether all the queued writes were written
+     */
+    public boolean shutdown(long timeoutMillis) {
+        shutdownLock.writeLock().lock();
+        try {
+            if (shutdown) {
+                return !aborted;
+            }
+            shutdown = true;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        if (join(timeoutMillis)) {
+            return true;
+        }
+
+        aborted = true;
+        int dropped = 0;
+        for (Writer writer : writers) {
+            dropped += writer.queue.size();
+            writer.queue.clear();
+            writer.interrupt();
+        }
+        log.severe(dropped + " database writes could not be completed before shutting down");
+        if (!join(ABORT_TIMEOUT)) {
+            log.severe("The database writers did not stop, their connections are closed once they are done");
+        }
+        return false;
+    }
+
+    /**
+     * @return whether all the writers stopped before the timeout
+     */
+    private boolean join(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean stopped = true;
+        for (Writer writer : writers) {
+            try {
+                writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            stopped &= !writer.isAlive();
+        }
+        return stopped;
+    }
+
+    /**
+     * @return the amount of writes waiting in the queues
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Writer writer : writers) {
+            depth += writer.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * @return how many writes had to wait for room in a full queue
+     */
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    /**
+     * @return a summary of the queue metrics
+     */
+    public String getStats() {
+        return String.format("writers=%d, queued=%d, capacity=%d, submitted=%d, completed=%d, blocked=%d",
+                writers.size(), getQueueDepth(), capacity * writers.size(), submitted.get(), completed.get(), blocked.get());
+    }
+
+    /**
+     * Queued on every writer, the last one to reach it runs the write while the others wait
+     */
+    private class Barrier {
+        private final Runnable write;
+        private int waiting;
+        private boolean done;
+
+        private Barrier(Runnable write) {
+            this.write = write;
+        }
+
+        private void arrive() {
+            synchronized (this) {
+                if (++waiting < writers.size()) {
+                    while (!done && !aborted) {
+                        try {
+                            wait(POLL_INTERVAL);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                    return;
+                }
+            }
+            try {
+                write.run();
+            } finally {
+                synchronized (this) {
+                    done = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        private synchronized void await() {
+            boolean interrupted = false;
+            // the write is dropped if the shutdown times out before reaching it
+            while (!done && !aborted) {
+                try {
+                    wait(POLL_INTERVAL);
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class Writer extends Thread {
+        private final BlockingQueue<Runnable> queue;
+
+        private Writer(String name, int capacity) {
+            super(name);
+            setDaemon(true);
+            queue = new LinkedBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            while (!aborted) {
+                Runnable write;
+                try {
+                    write = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    write = queue.poll();
+                }
+                if (write != null) {
+                    execute(write);
+                } else if (shutdown) {
+                    // nothing is queued after the flag is set, so this empties the queue for good
+                    while (!aborted && (write = queue.poll()) != null) {
+                        execute(write);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private void execute(Runnable write) {
+            try {
+                write.run();
+            } catch (RuntimeException ex) {
+                log.severe("Error on database writer " + getName() + ": " + ex);
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.bukkit.Material;
 import org.bukkit.entity.Player;
 
 import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanRanking;
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import net.sacredlabyrinth.phaed.simpleclans.ui.InventoryDrawer;
@@ -20,13 +21,12 @@ import static net.sacredlabyrinth.phaed.simpleclans.SimpleClans.lang;
 
 public class ClanListFrame extends SCFrame {
 	private final SimpleClans plugin = SimpleClans.getInstance();
-	private final List<Clan> clans = plugin.getClanManager().getClans();
+	private final List<Clan> clans = plugin.getClanManager().getClanRanking().getRanking(ClanRanking.Order.KDR, false);
 	private final Paginator paginator;
 
 	public ClanListFrame(SCFrame parent, Player viewer) {
 		super(parent, viewer);
 		paginator = new Paginator(getSize() - 9, clans.size());
-		plugin.getClanManager().sortClansByKDR(clans);
 	}
 
 	@Override
@@ -100,8 +100,8 @@ public class Components {
                     lang("gui.clandetails.clan.lore.deaths", clan.getTotalDeaths()),
                     lang("gui.clandetails.clan.lore.fee", clan.isMemberFeeEnabled()
                             ? lang("fee.enabled") : lang("fee.disabled"), clan.getMemberFee()),
-                    lang("gui.clandetails.clan.lore.allies", clan.getAllies().isEmpty() ? lang("none") : clan.getAllyString(lang("gui.clandetails.clan.lore.allies.separator"))),
-                    lang("gui.clandetails.clan.lore.rivals", clan.getRivals().isEmpty() ? lang("none") : clan.getRivalString(lang("gui.clandetails.clan.lore.rivals.separator"))),
+                    lang("gui.clandetails.clan.lore.allies", clan.getAlliesCount() == 0 ? lang("none") : clan.getAllyString(lang("gui.clandetails.clan.lore.allies.separator"))),
+                    lang("gui.clandetails.clan.lore.rivals", clan.getRivalsCount() == 0 ? lang("none") : clan.getRivalString(lang("gui.clandetails.clan.lore.rivals.separator"))),
                     lang("gui.clandetails.clan.lore.founded", clan.getFoundedString()),
                     lang("gui.clandetails.clan.lore.inactive", clan.getInactiveDays(), (clan.isVerified() ?
                             pl.getSettingsManager().getPurgeClan() : pl.getSettingsManager().getPurgeUnverified())
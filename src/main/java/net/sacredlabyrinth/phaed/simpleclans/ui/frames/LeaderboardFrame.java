@@ -12,6 +12,7 @@ import org.bukkit.inventory.meta.SkullMeta;
 
 import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
 import net.sacredlabyrinth.phaed.simpleclans.Helper;
+import net.sacredlabyrinth.phaed.simpleclans.PlayerRanking;
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import net.sacredlabyrinth.phaed.simpleclans.ui.InventoryDrawer;
 import net.sacredlabyrinth.phaed.simpleclans.ui.SCComponent;
@@ -25,13 +26,11 @@ import static net.sacredlabyrinth.phaed.simpleclans.SimpleClans.lang;
 public class LeaderboardFrame extends SCFrame {
 
 	private final Paginator paginator;
-	private final List<ClanPlayer> clanPlayers = SimpleClans.getInstance().getClanManager().getAllClanPlayers();
+	private final PlayerRanking ranking = SimpleClans.getInstance().getClanManager().getPlayerRanking();
 
 	public LeaderboardFrame(Player viewer, SCFrame parent) {
 		super(parent, viewer);
-		paginator = new Paginator(getSize() - 9, clanPlayers.size());
-		SimpleClans plugin = SimpleClans.getInstance();
-		plugin.getClanManager().sortClanPlayersByKDR(clanPlayers);
+		paginator = new Paginator(getSize() - 9, ranking.size());
 	}
 
 	@Override
@@ -47,8 +46,9 @@ public class LeaderboardFrame extends SCFrame {
 		add(Components.getNextPageComponent(7, this::nextPage, paginator));
 
 		int slot = 9;
-		for (int i = paginator.getMinIndex(); paginator.isValidIndex(i); i++) {
-			ClanPlayer cp = clanPlayers.get(i);
+		List<ClanPlayer> page = ranking.getPage(paginator.getMinIndex(), getSize() - 9);
+		for (int i = paginator.getMinIndex(); paginator.isValidIndex(i) && i - paginator.getMinIndex() < page.size(); i++) {
+			ClanPlayer cp = page.get(i - paginator.getMinIndex());
 			SCComponent c = new SCComponentImpl(
 					lang("gui.leaderboard.player.title", i + 1, cp.getName()),
 					Arrays.asList(
@@ -90,7 +90,7 @@ public class LeaderboardFrame extends SCFrame {
 
 	@Override
 	public @NotNull String getTitle() {
-		return lang("gui.leaderboard.title", clanPlayers.size());
+		return lang("gui.leaderboard.title", ranking.size());
 	}
 
 	@Override
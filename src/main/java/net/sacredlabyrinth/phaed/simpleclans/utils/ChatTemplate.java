@@ -0,0 +1,92 @@
+package net.sacredlabyrinth.phaed.simpleclans.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A chat format compiled into literal text and %placeholder% segments
+ * <p>
+ * The colors are translated once, when the format is compiled, and a message is rendered in a single pass.
+ * Placeholders are only looked up in the format, so a value that contains a placeholder is never replaced again.
+ */
+public class ChatTemplate {
+
+    private final String[] literals;
+    private final String[] placeholders;
+
+    private ChatTemplate(String[] literals, String[] placeholders) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Compiles a chat format, translating its color codes
+     *
+     * @param format the format, e.g. from the config, or null for an empty template
+     * @return the template
+     */
+    public static ChatTemplate compile(String format) {
+        String text = format == null ? "" : ChatColor.translateAlternateColorCodes('&', format);
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            int end = c == '%' ? findPlaceholderEnd(text, i + 1) : -1;
+            if (end == -1) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            placeholders.add(text.substring(i + 1, end));
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+
+        return new ChatTemplate(literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template
+     *
+     * @param values returns the value of a placeholder, or null to keep it as it is
+     * @return the message
+     */
+    public String render(Function<String, String> values) {
+        StringBuilder out = new StringBuilder(64);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            String value = values.apply(placeholders[i]);
+            if (value != null) {
+                out.append(value);
+            } else {
+                out.append('%').append(placeholders[i]).append('%');
+            }
+        }
+        out.append(literals[placeholders.length]);
+        return out.toString();
+    }
+
+    /**
+     * @return the index of the % closing a placeholder name, or -1 if there is none
+     */
+    private static int findPlaceholderEnd(String text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%') {
+                return i > start ? i : -1;
+            }
+            if (Character.isWhitespace(c)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,91 @@
+package net.sacredlabyrinth.phaed.simpleclans.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * An immutable copy of a collection, taken again only after the collection changed
+ * <p>
+ * The owner of the collection calls {@link #invalidate()} after each change, which bumps the version.
+ * Readers share the same copy until then, so reading is lock-free and does not allocate.
+ *
+ * @param <T> the type of the elements
+ */
+public class Snapshot<T> {
+
+    private final Supplier<Collection<T>> source;
+    private final AtomicInteger version = new AtomicInteger();
+    private volatile Content<T> content = new Content<>(Collections.emptyList(), -1);
+
+    /**
+     * @param source the live collection, safe to iterate while it changes
+     */
+    public Snapshot(Supplier<Collection<T>> source) {
+        this.source = source;
+    }
+
+    /**
+     * Marks the copy as outdated, called after the collection changed
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return the version, which changes every time the collection changes
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return an unmodifiable copy of the collection
+     */
+    public List<T> getList() {
+        return get().list;
+    }
+
+    /**
+     * @return an unmodifiable set of the elements, for fast contains checks
+     */
+    public Set<T> getSet() {
+        return get().getSet();
+    }
+
+    private Content<T> get() {
+        // the version is read before the copy, so a change during the copy is seen by the next read
+        int currentVersion = version.get();
+        Content<T> current = content;
+        if (current.version != currentVersion) {
+            current = new Content<>(new ArrayList<>(source.get()), currentVersion);
+            content = current;
+        }
+        return current;
+    }
+
+    private static final class Content<T> {
+        private final List<T> list;
+        private final int version;
+        private volatile Set<T> set;
+
+        private Content(List<T> list, int version) {
+            this.list = Collections.unmodifiableList(list);
+            this.version = version;
+        }
+
+        private Set<T> getSet() {
+            Set<T> result = set;
+            if (result == null) {
+                result = Collections.unmodifiableSet(new HashSet<>(list));
+                set = result;
+            }
+            return result;
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package net.sacredlabyrinth.phaed.simpleclans.uuid;
 
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
 import net.sacredlabyrinth.phaed.simpleclans.SimpleClans;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
 
 /**
  *
@@ -13,6 +19,10 @@ import org.bukkit.entity.Player;
  */
 public class UUIDMigration {
 
+    private static final int MAX_RESOLVED = 10000;
+    private static final Map<String, UUID> resolved = new ConcurrentHashMap<>();
+    private static final Set<String> resolving = ConcurrentHashMap.newKeySet();
+
 	private UUIDMigration() {}
 	
     public static boolean canReturnUUID() {
@@ -24,25 +34,87 @@ public class UUIDMigration {
         }
     }
 
+    /**
+     * Returns the UUID of an online player or a clan player in memory, or of a name resolved before.
+     * Other names are resolved in the background and can be found by a later call, so this never blocks.
+     *
+     * @param playerDisplayName the player's name
+     * @return the UUID, or null if it is not known yet
+     */
     public static UUID getForcedPlayerUUID(String playerDisplayName) {
-        Player onlinePlayer = SimpleClans.getInstance().getServer().getPlayerExact(playerDisplayName);
-        @SuppressWarnings("deprecation")
-		OfflinePlayer offlinePlayer = SimpleClans.getInstance().getServer().getOfflinePlayer(playerDisplayName);
+        if (playerDisplayName == null) {
+            return null;
+        }
+        UUID uuid = getKnownUUID(playerDisplayName);
+        if (uuid == null) {
+            resolve(playerDisplayName, null);
+        }
+        return uuid;
+    }
+
+    /**
+     * Returns a player's UUID through the callback, resolving unknown names in the background
+     *
+     * @param playerDisplayName the player's name
+     * @param callback called on the main thread with the UUID, or null if it could not be resolved
+     */
+    public static void getForcedPlayerUUID(String playerDisplayName, Consumer<UUID> callback) {
+        UUID uuid = playerDisplayName == null ? null : getKnownUUID(playerDisplayName);
+        if (uuid != null || playerDisplayName == null) {
+            callback.accept(uuid);
+            return;
+        }
+        resolve(playerDisplayName, callback);
+    }
 
+    private static UUID getKnownUUID(String playerDisplayName) {
+        Player onlinePlayer = SimpleClans.getInstance().getServer().getPlayerExact(playerDisplayName);
         if (onlinePlayer != null) {
-        	return onlinePlayer.getUniqueId();
-        } else {
-        	for (ClanPlayer cp : SimpleClans.getInstance().getClanManager().getAllClanPlayers()) {
-        		if (cp.getName().equalsIgnoreCase(playerDisplayName)) {
-        			return cp.getUniqueId();
-        		}
-        	}
-        	if (offlinePlayer != null) {
-        		return offlinePlayer.getUniqueId();
-        	} else {
-        		return null;
-        	}
+            return onlinePlayer.getUniqueId();
+        }
+        UUID uuid = SimpleClans.getInstance().getClanManager().getPlayerUniqueId(playerDisplayName);
+        if (uuid != null) {
+            return uuid;
+        }
+        return resolved.get(playerDisplayName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Looks the name up with {@link Bukkit#getOfflinePlayer(String)} off the main thread, since it may query Mojang
+     */
+    private static void resolve(String playerDisplayName, Consumer<UUID> callback) {
+        String key = playerDisplayName.toLowerCase(Locale.ROOT);
+        if (callback == null && !resolving.add(key)) {
+            return;
         }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                UUID uuid = null;
+                try {
+                    @SuppressWarnings("deprecation")
+                    OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerDisplayName);
+                    if (offlinePlayer != null) {
+                        uuid = offlinePlayer.getUniqueId();
+                        if (resolved.size() >= MAX_RESOLVED) {
+                            resolved.clear();
+                        }
+                        resolved.put(key, uuid);
+                    }
+                } finally {
+                    resolving.remove(key);
+                }
+                if (callback != null) {
+                    UUID result = uuid;
+                    new BukkitRunnable() {
+                        @Override
+                        public void run() {
+                            callback.accept(result);
+                        }
+                    }.runTask(SimpleClans.getInstance());
+                }
+            }
+        }.runTaskAsynchronously(SimpleClans.getInstance());
     }
 
 }
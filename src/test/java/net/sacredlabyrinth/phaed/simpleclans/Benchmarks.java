@@ -0,0 +1,75 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A small timing harness for the *Benchmark classes, which are run by hand with their main method
+ * and are not picked up by the test run.
+ * <p>
+ * Each benchmark is warmed up and then timed for a number of rounds; the mean and the best round are
+ * printed in nanoseconds per operation. A call should batch enough operations to take well over the
+ * cost of reading the clock. Results are folded into a sink so the JIT cannot drop the work.
+ */
+public final class Benchmarks {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final long ROUND_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("sc.bench.roundMillis", 200));
+
+    private static volatile int sink;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Times the operation and prints the result
+     *
+     * @param name the name printed with the result
+     * @param opsPerCall how many operations one call of the supplier does
+     * @param operation the operation, its result is consumed
+     * @return the mean nanoseconds per operation
+     */
+    public static double run(String name, int opsPerCall, Supplier<?> operation) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(operation);
+        }
+        double total = 0;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            double nanos = round(operation) / opsPerCall;
+            total += nanos;
+            best = Math.min(best, nanos);
+        }
+        double mean = total / ROUNDS;
+        System.out.println(String.format(Locale.ROOT, "%-48s %12.1f ns/op (best %.1f)", name, mean, best));
+        return mean;
+    }
+
+    /**
+     * Prints how many times faster the second result is
+     */
+    public static void compare(double before, double after) {
+        System.out.println(String.format(Locale.ROOT, "%-48s %12.2fx", "speedup", before / after));
+        System.out.println();
+    }
+
+    /**
+     * @return the mean nanoseconds of one call in a round
+     */
+    private static double round(Supplier<?> operation) {
+        long calls = 0;
+        int hash = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            Object result = operation.get();
+            hash += result == null ? 0 : System.identityHashCode(result);
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ROUND_NANOS);
+        sink += hash;
+        return (double) elapsed / calls;
+    }
+}
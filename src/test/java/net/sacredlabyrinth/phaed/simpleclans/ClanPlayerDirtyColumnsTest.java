@@ -0,0 +1,107 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanPlayerDAO.Column;
+
+public class ClanPlayerDirtyColumnsTest {
+
+    @Test
+    public void pollReturnsTheMarkedColumnsAndClearsThem() {
+        ClanPlayer cp = new ClanPlayer();
+        cp.markDirty(Column.NAME);
+        cp.markDirty(Column.DEATHS);
+
+        assertEquals(Column.NAME.getMask() | Column.DEATHS.getMask(), cp.pollDirtyColumns());
+        assertEquals(0, cp.pollDirtyColumns());
+    }
+
+    @Test
+    public void restoreKeepsTheColumnsMarkedAfterThePoll() {
+        ClanPlayer cp = new ClanPlayer();
+        cp.markDirty(Column.NAME);
+        int polled = cp.pollDirtyColumns();
+
+        // changed while the failed save was running
+        cp.markDirty(Column.FLAGS);
+        cp.restoreDirtyColumns(polled);
+
+        assertEquals(Column.NAME.getMask() | Column.FLAGS.getMask(), cp.pollDirtyColumns());
+    }
+
+    @Test
+    public void markAllDirtyMarksEveryColumn() {
+        ClanPlayer cp = new ClanPlayer();
+        cp.markAllDirty();
+
+        assertEquals(Column.ALL, cp.pollDirtyColumns());
+    }
+
+    @Test(timeout = 30000)
+    public void noColumnIsLostWhenSavesFailConcurrently() throws InterruptedException {
+        ClanPlayer cp = new ClanPlayer();
+        Column[] columns = Column.values();
+        int markers = 4;
+        int marksPerThread = 100000;
+        AtomicInteger marked = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread[] threads = new Thread[markers];
+        for (int t = 0; t < markers; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                awaitQuietly(start);
+                Random random = new Random(seed);
+                for (int i = 0; i < marksPerThread; i++) {
+                    Column column = columns[random.nextInt(columns.length)];
+                    cp.markDirty(column);
+                    marked.accumulateAndGet(column.getMask(), (a, b) -> a | b);
+                }
+            });
+            threads[t].start();
+        }
+
+        int[] saved = {0};
+        Thread saver = new Thread(() -> {
+            awaitQuietly(start);
+            Random random = new Random(42);
+            while (!done.get()) {
+                int polled = cp.pollDirtyColumns();
+                if (random.nextBoolean()) {
+                    // a failed save puts the columns back
+                    cp.restoreDirtyColumns(polled);
+                } else {
+                    saved[0] |= polled;
+                }
+            }
+        });
+        saver.start();
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        saver.join();
+        saved[0] |= cp.pollDirtyColumns();
+
+        assertEquals(marked.get(), saved[0]);
+        assertEquals(0, cp.pollDirtyColumns());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
+
+/**
+ * Readers on other threads, like the async chat, against commands changing the clans and players.
+ * With plain collections this fails with ConcurrentModificationExceptions or inconsistent reads
+ */
+public class ClanStoreStressTest {
+
+    private static final int CLANS = 20;
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int PLAYERS_PER_WRITER = 50;
+    private static final long DURATION = TimeUnit.SECONDS.toMillis(2);
+
+    private ClanManager clanManager;
+    private final List<Clan> clans = new ArrayList<>();
+    private final List<UUID> players = new ArrayList<>();
+    private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        TestServer.install();
+        clanManager = new ClanManager();
+        for (int i = 0; i < CLANS; i++) {
+            Clan clan = newClan("clan" + i);
+            clans.add(clan);
+            clanManager.importClan(clan);
+        }
+        for (int i = 0; i < WRITERS * PLAYERS_PER_WRITER; i++) {
+            players.add(new UUID(1, i));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void readersNeverSeeConcurrentModifications() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            threads.add(thread("writer-" + i, start, new Writer(i)));
+        }
+        for (int i = 0; i < READERS; i++) {
+            threads.add(thread("reader-" + i, start, new Reader(i)));
+        }
+
+        start.countDown();
+        Thread.sleep(DURATION);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!errors.isEmpty()) {
+            Throwable first = errors.peek();
+            AssertionError error = new AssertionError(errors.size() + " errors on the readers and writers, first: " + first);
+            error.initCause(first);
+            throw error;
+        }
+        assertTrue(reads.get() > 0);
+        assertTrue(writes.get() > 0);
+        checkConsistency();
+    }
+
+    /**
+     * Once the writers stopped, the members of each clan must match the clan of each player
+     */
+    private void checkConsistency() {
+        int members = 0;
+        for (Clan clan : clanManager.getClans()) {
+            for (ClanPlayer cp : clan.getMembers()) {
+                assertEquals(clan, cp.getClan());
+                assertTrue(cp == clanManager.getClanPlayer(cp.getUniqueId()));
+            }
+            members += clan.getMembers().size();
+        }
+        int inClan = 0;
+        for (ClanPlayer cp : clanManager.getAllClanPlayers()) {
+            if (cp.getClan() != null) {
+                inClan++;
+                assertTrue(cp.getClan().isMember(cp.getUniqueId()));
+            }
+        }
+        assertEquals(inClan, members);
+    }
+
+    /**
+     * Does what the commands do to the in-memory store, each writer with its own players
+     */
+    private class Writer implements Runnable {
+        private final int index;
+        private final Random random;
+        // getAnyClanPlayer asks the settings on a miss
+        private final Map<UUID, ClanPlayer> loaded = new HashMap<>();
+        private int created;
+
+        private Writer(int index) {
+            this.index = index;
+            this.random = new Random(index);
+        }
+
+        @Override
+        public void run() {
+            List<UUID> own = players.subList(index * PLAYERS_PER_WRITER, (index + 1) * PLAYERS_PER_WRITER);
+            List<Clan> ownClans = new ArrayList<>();
+            while (running.get()) {
+                Clan clan = clans.get(random.nextInt(CLANS));
+                Clan other = clans.get(random.nextInt(CLANS));
+                UUID uuid = own.get(random.nextInt(own.size()));
+                switch (random.nextInt(6)) {
+                    case 0:
+                        join(uuid, clan);
+                        break;
+                    case 1:
+                        leave(uuid);
+                        break;
+                    case 2:
+                        if (clan != other) {
+                            clan.removeRival(other.getTag());
+                            clan.addAlly(other.getTag());
+                        }
+                        break;
+                    case 3:
+                        if (clan != other) {
+                            clan.removeAlly(other.getTag());
+                            clan.addRival(other.getTag());
+                        }
+                        break;
+                    case 4:
+                        clan.addBbWithoutSaving("message " + random.nextInt(), 10);
+                        break;
+                    default:
+                        // create and disband clans of this writer
+                        if (ownClans.size() < 5 && random.nextBoolean()) {
+                            Clan created = newClan("w" + index + "c" + this.created++);
+                            ownClans.add(created);
+                            clanManager.importClan(created);
+                        } else if (!ownClans.isEmpty()) {
+                            Clan disbanded = ownClans.remove(random.nextInt(ownClans.size()));
+                            clanManager.removeClan(disbanded.getTag());
+                        }
+                }
+                writes.incrementAndGet();
+            }
+        }
+
+        private void join(UUID uuid, Clan clan) {
+            ClanPlayer cp = loaded.get(uuid);
+            if (cp == null) {
+                cp = new Member(uuid);
+                loaded.put(uuid, cp);
+                clanManager.importClanPlayer(cp);
+            }
+            if (cp.getClan() != null) {
+                return;
+            }
+            cp.setClan(clan);
+            clan.importMember(cp);
+        }
+
+        private void leave(UUID uuid) {
+            ClanPlayer cp = loaded.get(uuid);
+            if (cp == null || cp.getClan() == null) {
+                return;
+            }
+            Clan clan = cp.getClan();
+            clan.removeMember(uuid);
+            cp.setClan(null);
+            if (random.nextBoolean()) {
+                loaded.remove(uuid);
+                clanManager.deleteClanPlayerFromMemory(uuid);
+            }
+        }
+    }
+
+    /**
+     * Does what the chat and the async tasks do, e.g. finding the receivers of a clan or ally message
+     */
+    private class Reader implements Runnable {
+        private final Random random;
+
+        private Reader(int index) {
+            this.random = new Random(1000 + index);
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                ClanPlayer cp = clanManager.getClanPlayer(players.get(random.nextInt(players.size())));
+                Clan clan = cp == null ? null : cp.getClan();
+                if (clan != null) {
+                    for (ClanPlayer member : clan.getMembers()) {
+                        member.getUniqueId();
+                    }
+                    for (String tag : clan.getAllies()) {
+                        Clan ally = clanManager.getClan(tag);
+                        if (ally != null) {
+                            ally.getMembers().size();
+                        }
+                    }
+                }
+                for (Clan c : clanManager.getClans()) {
+                    for (String tag : c.getRivals()) {
+                        tag.length();
+                    }
+                    for (String message : c.getBb()) {
+                        message.length();
+                    }
+                    c.getPackedAllies();
+                    c.getPackedBb();
+                    c.getOnlineMembers();
+                }
+                for (ClanPlayer any : clanManager.getAllClanPlayers()) {
+                    any.getName();
+                }
+                reads.incrementAndGet();
+            }
+        }
+    }
+
+    private Thread thread(String name, CountDownLatch start, Runnable task) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            } catch (Throwable ex) {
+                errors.add(ex);
+                running.set(false);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static Clan newClan(String tag) {
+        Clan clan = new Clan();
+        clan.setTag(tag);
+        clan.setName(tag);
+        return clan;
+    }
+
+    /**
+     * The real KDR reads the kill weights from the settings
+     */
+    private static final class Member extends ClanPlayer {
+        private static final long serialVersionUID = 1L;
+
+        private Member(UUID uuid) {
+            setUniqueId(uuid);
+            setName(uuid.toString());
+        }
+
+        @Override
+        public float getKDR() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
+
+/**
+ * Times the sort of {@code /clan list kdr} over 5,000 clans: the KDR summed from the members on every
+ * comparison like before, against the totals kept up to date by {@link Clan}
+ */
+public class ClanTotalsBenchmark {
+
+    private static final int CLANS = 5000;
+    private static final int MAX_MEMBERS = 20;
+    private static final double KW_RIVAL = 2;
+    private static final double KW_NEUTRAL = 1;
+    private static final double KW_CIVILIAN = 0;
+
+    public static void main(String[] args) {
+        TestServer.install();
+        TestPlugin.set("kwRival", KW_RIVAL);
+        TestPlugin.set("kwNeutral", KW_NEUTRAL);
+        TestPlugin.set("kwCivilian", KW_CIVILIAN);
+        ClanManager clanManager = new ClanManager();
+        Map<String, ClanPlayer> players = new HashMap<>();
+        // the UUID strings each clan stored before, by identity as the clan hash codes collide a lot
+        Map<Clan, List<String>> members = new IdentityHashMap<>();
+        List<Clan> clans = new ArrayList<>();
+        Random random = new Random(15);
+        for (int i = 0; i < CLANS; i++) {
+            Clan clan = new Clan();
+            clan.setTag("clan" + i);
+            int size = 1 + random.nextInt(MAX_MEMBERS);
+            List<String> memberIds = new ArrayList<>();
+            for (int j = 0; j < size; j++) {
+                ClanPlayer cp = new ClanPlayer();
+                cp.setUniqueId(new UUID(random.nextLong(), random.nextLong()));
+                cp.setRivalKills(random.nextInt(100));
+                cp.setNeutralKills(random.nextInt(100));
+                cp.setCivilianKills(random.nextInt(100));
+                cp.setDeaths(random.nextInt(100));
+                cp.setClan(clan);
+                clan.importMember(cp);
+                players.put(cp.getUniqueId().toString(), cp);
+                memberIds.add(cp.getUniqueId().toString());
+            }
+            members.put(clan, memberIds);
+            clans.add(clan);
+        }
+
+        double before = Benchmarks.run("/clan list kdr, summed from the members", 1, () -> {
+            List<Clan> sorted = new ArrayList<>(clans);
+            sorted.sort((c1, c2) -> Float.compare(legacyKdr(members.get(c2), players),
+                    legacyKdr(members.get(c1), players)));
+            return sorted;
+        });
+        double after = Benchmarks.run("/clan list kdr, maintained totals", 1, () -> {
+            List<Clan> sorted = new ArrayList<>(clans);
+            clanManager.sortClansByKDR(sorted);
+            return sorted;
+        });
+        Benchmarks.compare(before, after);
+    }
+
+    /**
+     * The KDR as Clan computed it before, looking each member up by the UUID string it stored
+     */
+    private static float legacyKdr(List<String> members, Map<String, ClanPlayer> players) {
+        double weightedKills = 0;
+        int deaths = 0;
+        for (String member : members) {
+            ClanPlayer cp = players.get(UUID.fromString(member).toString());
+            if (cp == null) {
+                continue;
+            }
+            weightedKills += cp.getRivalKills() * KW_RIVAL + cp.getNeutralKills() * KW_NEUTRAL
+                    + cp.getCivilianKills() * KW_CIVILIAN;
+            deaths += cp.getDeaths();
+        }
+        if (deaths == 0) {
+            deaths = 1;
+        }
+        return (float) weightedKills / deaths;
+    }
+}
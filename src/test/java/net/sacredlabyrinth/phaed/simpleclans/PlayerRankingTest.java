@@ -0,0 +1,185 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class PlayerRankingTest {
+
+    private static final Comparator<ClanPlayer> ORDER = Comparator.comparing(ClanPlayer::getKDR).reversed()
+            .thenComparing(ClanPlayer::getUniqueId);
+
+    @Test
+    public void positionsFollowTheKdrHighestFirst() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer low = add(ranking, 0.5f);
+        RankedPlayer high = add(ranking, 3f);
+        RankedPlayer middle = add(ranking, 1f);
+
+        assertEquals(1, ranking.getPosition(high.getUniqueId()));
+        assertEquals(2, ranking.getPosition(middle.getUniqueId()));
+        assertEquals(3, ranking.getPosition(low.getUniqueId()));
+        assertEquals(3, ranking.size());
+    }
+
+    @Test
+    public void tiesAreBrokenByUuid() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer second = add(ranking, new UUID(0, 2), 1f);
+        RankedPlayer first = add(ranking, new UUID(0, 1), 1f);
+
+        assertEquals(1, ranking.getPosition(first.getUniqueId()));
+        assertEquals(2, ranking.getPosition(second.getUniqueId()));
+    }
+
+    @Test
+    public void unrankedPlayersHaveNoPosition() {
+        PlayerRanking ranking = new PlayerRanking();
+        add(ranking, 1f);
+
+        assertEquals(0, ranking.getPosition(UUID.randomUUID()));
+    }
+
+    @Test
+    public void updateMovesThePlayer() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer a = add(ranking, 1f);
+        RankedPlayer b = add(ranking, 2f);
+
+        a.kdr = 5f;
+        ranking.update(a);
+
+        assertEquals(1, ranking.getPosition(a.getUniqueId()));
+        assertEquals(2, ranking.getPosition(b.getUniqueId()));
+        assertEquals(2, ranking.size());
+    }
+
+    @Test
+    public void updateIgnoresUnrankedAndStalePlayers() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer ranked = add(ranking, 2f);
+        add(ranking, 1f);
+
+        RankedPlayer unranked = new RankedPlayer(UUID.randomUUID(), 9f);
+        ranking.update(unranked);
+        assertEquals(2, ranking.size());
+
+        // another instance of the same player, e.g. before a reload
+        RankedPlayer stale = new RankedPlayer(ranked.getUniqueId(), 0f);
+        ranking.update(stale);
+        assertEquals(1, ranking.getPosition(ranked.getUniqueId()));
+    }
+
+    @Test
+    public void addReplacesThePreviousInstance() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer old = add(ranking, 2f);
+        add(ranking, 1f);
+
+        RankedPlayer reloaded = new RankedPlayer(old.getUniqueId(), 0f);
+        ranking.add(reloaded);
+
+        assertEquals(2, ranking.size());
+        assertEquals(2, ranking.getPosition(reloaded.getUniqueId()));
+    }
+
+    @Test
+    public void removeAndClear() {
+        PlayerRanking ranking = new PlayerRanking();
+        RankedPlayer a = add(ranking, 1f);
+        RankedPlayer b = add(ranking, 2f);
+
+        ranking.remove(b.getUniqueId());
+        assertEquals(1, ranking.size());
+        assertEquals(1, ranking.getPosition(a.getUniqueId()));
+        assertEquals(0, ranking.getPosition(b.getUniqueId()));
+
+        ranking.clear();
+        assertEquals(0, ranking.size());
+        assertEquals(0, ranking.getPosition(a.getUniqueId()));
+    }
+
+    @Test
+    public void pagesAreSlicesOfTheRanking() {
+        PlayerRanking ranking = new PlayerRanking();
+        List<ClanPlayer> expected = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            expected.add(add(ranking, i));
+        }
+        expected.sort(ORDER);
+
+        assertEquals(uuids(expected.subList(0, 10)), uuids(ranking.getPage(0, 10)));
+        assertEquals(uuids(expected.subList(10, 20)), uuids(ranking.getPage(10, 10)));
+        assertEquals(uuids(expected.subList(20, 25)), uuids(ranking.getPage(20, 10)));
+        assertTrue(ranking.getPage(25, 10).isEmpty());
+        assertTrue(ranking.getPage(0, 0).isEmpty());
+    }
+
+    @Test
+    public void matchesASortedListAfterRandomUpdates() {
+        PlayerRanking ranking = new PlayerRanking();
+        Random random = new Random(7);
+        List<RankedPlayer> players = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            // few distinct values, so there are many ties
+            players.add(add(ranking, random.nextInt(20) / 4f));
+        }
+
+        for (int round = 0; round < 2000; round++) {
+            RankedPlayer player = players.get(random.nextInt(players.size()));
+            player.kdr = random.nextInt(20) / 4f;
+            ranking.update(player);
+        }
+
+        List<ClanPlayer> expected = new ArrayList<>(players);
+        expected.sort(ORDER);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(i + 1, ranking.getPosition(expected.get(i).getUniqueId()));
+        }
+        assertEquals(uuids(expected), uuids(ranking.getPage(0, expected.size())));
+        assertEquals(uuids(expected.subList(137, 187)), uuids(ranking.getPage(137, 50)));
+    }
+
+    private static List<UUID> uuids(List<ClanPlayer> players) {
+        List<UUID> out = new ArrayList<>();
+        for (ClanPlayer cp : players) {
+            out.add(cp.getUniqueId());
+        }
+        return out;
+    }
+
+    private static RankedPlayer add(PlayerRanking ranking, float kdr) {
+        return add(ranking, UUID.randomUUID(), kdr);
+    }
+
+    private static RankedPlayer add(PlayerRanking ranking, UUID uuid, float kdr) {
+        RankedPlayer player = new RankedPlayer(uuid, kdr);
+        ranking.add(player);
+        return player;
+    }
+
+    /**
+     * A player with a fixed KDR, as the real one depends on the kill weights in the settings
+     */
+    private static final class RankedPlayer extends ClanPlayer {
+        private static final long serialVersionUID = 1L;
+        private float kdr;
+
+        private RankedPlayer(UUID uuid, float kdr) {
+            setUniqueId(uuid);
+            this.kdr = kdr;
+        }
+
+        @Override
+        public float getKDR() {
+            return kdr;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+
+/**
+ * The plugin instance for the code that reads its settings through {@link SimpleClans#getInstance()}.
+ * <p>
+ * The real plugin and settings need a running server and a config file, so both are allocated without
+ * their constructors and only the settings given with {@link #set(String, Object)} have a value.
+ */
+public final class TestPlugin {
+
+    private static SettingsManager settings;
+
+    private TestPlugin() {
+    }
+
+    /**
+     * Installs the plugin, once for the JVM
+     *
+     * @return the settings, all off or zero until set
+     */
+    public static synchronized SettingsManager install() {
+        if (settings != null) {
+            return settings;
+        }
+        try {
+            Field theUnsafe = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            Method allocate = unsafe.getClass().getMethod("allocateInstance", Class.class);
+
+            SettingsManager settingsManager = (SettingsManager) allocate.invoke(unsafe, SettingsManager.class);
+            SimpleClans plugin = (SimpleClans) allocate.invoke(unsafe, SimpleClans.class);
+            set(SimpleClans.class, plugin, "settingsManager", settingsManager);
+            set(SimpleClans.class, null, "instance", plugin);
+            settings = settingsManager;
+            return settings;
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Could not allocate the plugin", ex);
+        }
+    }
+
+    /**
+     * Sets a field of the settings
+     *
+     * @param name the name of the field, e.g. kwRival
+     * @param value the value
+     */
+    public static void set(String name, Object value) {
+        try {
+            set(SettingsManager.class, install(), name, value);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalArgumentException("No setting " + name, ex);
+        }
+    }
+
+    private static void set(Class<?> type, Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
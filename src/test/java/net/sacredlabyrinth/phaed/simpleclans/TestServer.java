@@ -0,0 +1,51 @@
+package net.sacredlabyrinth.phaed.simpleclans;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+
+/**
+ * A server where nobody is online, for the code that asks Bukkit about players, e.g. to track the online
+ * members of a clan
+ */
+public final class TestServer {
+
+    private TestServer() {
+    }
+
+    /**
+     * Installs the server, once for the JVM as Bukkit does not allow replacing it
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        Logger logger = Logger.getLogger(TestServer.class.getName());
+        Bukkit.setServer((Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLogger":
+                            return logger;
+                        case "getName":
+                        case "getVersion":
+                        case "getBukkitVersion":
+                        case "toString":
+                            return "test";
+                        case "getOnlinePlayers":
+                            return Collections.emptyList();
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            Class<?> type = method.getReturnType();
+                            // zero for the primitives, null for the rest
+                            return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+                    }
+                }));
+    }
+}
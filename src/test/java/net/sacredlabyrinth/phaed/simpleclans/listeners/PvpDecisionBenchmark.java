@@ -0,0 +1,175 @@
+package net.sacredlabyrinth.phaed.simpleclans.listeners;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import net.sacredlabyrinth.phaed.simpleclans.Benchmarks;
+import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+import net.sacredlabyrinth.phaed.simpleclans.TestPlugin;
+import net.sacredlabyrinth.phaed.simpleclans.TestServer;
+import net.sacredlabyrinth.phaed.simpleclans.managers.ClanManager;
+import net.sacredlabyrinth.phaed.simpleclans.managers.SettingsManager;
+
+/**
+ * Replays a recorded mix of player hits through the decision of {@link SCEntityListener#onEntityDamage}:
+ * the blacklisted world scan, String-keyed player lookups and ally list of before, against the world set,
+ * UUID-keyed lookups and ally set used now.
+ * <p>
+ * The mix has hits between members of the same clan, allies, other clans and players without a clan,
+ * some of them in blacklisted worlds. Bukkit players and events are left out, only the decision is timed.
+ */
+public class PvpDecisionBenchmark {
+
+    private static final int CLANS = 100;
+    private static final int ALLIES = 10;
+    private static final int PLAYERS = 2000;
+    private static final int HITS = 4096;
+    private static final List<String> BLACKLISTED_WORLDS = Arrays.asList("lobby", "spawn", "creative", "event",
+            "shop");
+    private static final String[] WORLDS = {"world", "world", "world", "world_nether", "world_the_end", "Spawn"};
+
+    public static void main(String[] args) {
+        TestServer.install();
+        Set<String> blacklist = new HashSet<>();
+        for (String world : BLACKLISTED_WORLDS) {
+            blacklist.add(world.toLowerCase(Locale.ROOT));
+        }
+        TestPlugin.set("blacklistedWorlds", blacklist);
+        SettingsManager settings = TestPlugin.install();
+
+        ClanManager clanManager = new ClanManager();
+        Map<String, ClanPlayer> legacyPlayers = new HashMap<>();
+        Map<Clan, List<String>> legacyAllies = new IdentityHashMap<>();
+        Random random = new Random(20);
+
+        List<Clan> clans = new ArrayList<>();
+        for (int i = 0; i < CLANS; i++) {
+            Clan clan = new Clan();
+            clan.setTag("clan" + i);
+            clans.add(clan);
+            clanManager.importClan(clan);
+        }
+        for (Clan clan : clans) {
+            List<String> allies = new ArrayList<>();
+            while (allies.size() < ALLIES) {
+                String ally = clans.get(random.nextInt(CLANS)).getTag();
+                if (!ally.equals(clan.getTag()) && !allies.contains(ally)) {
+                    allies.add(ally);
+                }
+            }
+            clan.setPackedAllies(String.join("|", allies));
+            legacyAllies.put(clan, allies);
+        }
+
+        UUID[] uuids = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            ClanPlayer cp = new Member();
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            uuids[i] = uuid;
+            cp.setUniqueId(uuid);
+            cp.setName("player" + i);
+            // one in five players has no clan
+            if (random.nextInt(5) != 0) {
+                Clan clan = clans.get(random.nextInt(CLANS));
+                cp.setClan(clan);
+                clan.importMember(cp);
+            }
+            clanManager.importClanPlayer(cp);
+            legacyPlayers.put(uuid.toString(), cp);
+        }
+
+        UUID[] attackers = new UUID[HITS];
+        UUID[] victims = new UUID[HITS];
+        String[] worlds = new String[HITS];
+        for (int i = 0; i < HITS; i++) {
+            attackers[i] = uuids[random.nextInt(PLAYERS)];
+            victims[i] = uuids[random.nextInt(PLAYERS)];
+            worlds[i] = WORLDS[random.nextInt(WORLDS.length)];
+        }
+
+        double before = Benchmarks.run("damage decision, lists and String keys", HITS, () -> {
+            int cancelled = 0;
+            for (int i = 0; i < HITS; i++) {
+                if (isLegacyBlacklisted(worlds[i])) {
+                    continue;
+                }
+                ClanPlayer acp = legacyClanPlayer(legacyPlayers, attackers[i]);
+                ClanPlayer vcp = legacyClanPlayer(legacyPlayers, victims[i]);
+                Clan aclan = acp == null ? null : acp.getClan();
+                Clan vclan = vcp == null ? null : vcp.getClan();
+                if (cancel(acp, vcp, aclan, vclan) || (aclan != null && vclan != null
+                        && legacyAllies.get(vclan).contains(aclan.getTag()))) {
+                    cancelled++;
+                }
+            }
+            return cancelled;
+        });
+        double after = Benchmarks.run("damage decision, sets and UUID keys", HITS, () -> {
+            int cancelled = 0;
+            for (int i = 0; i < HITS; i++) {
+                if (settings.isBlacklistedWorld(worlds[i])) {
+                    continue;
+                }
+                ClanPlayer acp = clanManager.getClanPlayer(attackers[i]);
+                ClanPlayer vcp = clanManager.getClanPlayer(victims[i]);
+                Clan aclan = acp == null ? null : acp.getClan();
+                Clan vclan = vcp == null ? null : vcp.getClan();
+                if (cancel(acp, vcp, aclan, vclan) || (aclan != null && vclan != null
+                        && vclan.isAlly(aclan.getTag()))) {
+                    cancelled++;
+                }
+            }
+            return cancelled;
+        });
+        Benchmarks.compare(before, after);
+    }
+
+    /**
+     * The checks that did not change: friendly fire and the same clan
+     */
+    private static boolean cancel(ClanPlayer acp, ClanPlayer vcp, Clan aclan, Clan vclan) {
+        if (vclan == null || aclan == null) {
+            return false;
+        }
+        if (vcp.isFriendlyFire() || vclan.isFriendlyFire()) {
+            return false;
+        }
+        return vclan.equals(aclan);
+    }
+
+    private static boolean isLegacyBlacklisted(String world) {
+        for (String w : BLACKLISTED_WORLDS) {
+            if (w.equalsIgnoreCase(world)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ClanPlayer legacyClanPlayer(Map<String, ClanPlayer> players, UUID uuid) {
+        ClanPlayer cp = players.get(uuid.toString());
+        return cp == null || cp.getClan() == null ? null : cp;
+    }
+
+    /**
+     * The real KDR reads the kill weights from the settings
+     */
+    private static final class Member extends ClanPlayer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public float getKDR() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package net.sacredlabyrinth.phaed.simpleclans.managers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import net.sacredlabyrinth.phaed.simpleclans.Benchmarks;
+import net.sacredlabyrinth.phaed.simpleclans.Clan;
+import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+
+/**
+ * Compares the two player lookups of every damage event: the map keyed by {@code uuid.toString()} that
+ * ClanManager had before, with the UUID-keyed {@link ClanManager#getClanPlayer(UUID)}
+ */
+public class ClanPlayerLookupBenchmark {
+
+    private static final int PLAYERS = 2000;
+    private static final int HITS = 1024;
+
+    public static void main(String[] args) {
+        ClanManager clanManager = new ClanManager();
+        Map<String, ClanPlayer> legacy = new HashMap<>();
+        Clan clan = new Clan();
+        clan.setTag("clan");
+        clanManager.importClan(clan);
+
+        UUID[] uuids = new UUID[PLAYERS];
+        Random random = new Random(12);
+        for (int i = 0; i < PLAYERS; i++) {
+            UUID uuid = new UUID(random.nextLong(), random.nextLong());
+            uuids[i] = uuid;
+            ClanPlayer cp = new Member();
+            cp.setUniqueId(uuid);
+            cp.setName("player" + i);
+            cp.setClan(clan);
+            clanManager.importClanPlayer(cp);
+            legacy.put(uuid.toString(), cp);
+        }
+
+        // the attacker and the victim of each hit, as handed by the event
+        UUID[] attackers = new UUID[HITS];
+        UUID[] victims = new UUID[HITS];
+        for (int i = 0; i < HITS; i++) {
+            attackers[i] = uuids[random.nextInt(PLAYERS)];
+            victims[i] = uuids[random.nextInt(PLAYERS)];
+        }
+
+        double before = Benchmarks.run("damage event, String keys", HITS, () -> {
+            int found = 0;
+            for (int i = 0; i < HITS; i++) {
+                ClanPlayer attacker = legacy.get(attackers[i].toString());
+                ClanPlayer victim = legacy.get(victims[i].toString());
+                if (attacker != null && victim != null && attacker.getClan() != null && victim.getClan() != null) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        double after = Benchmarks.run("damage event, UUID keys", HITS, () -> {
+            int found = 0;
+            for (int i = 0; i < HITS; i++) {
+                ClanPlayer attacker = clanManager.getClanPlayer(attackers[i]);
+                ClanPlayer victim = clanManager.getClanPlayer(victims[i]);
+                if (attacker != null && victim != null) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        Benchmarks.compare(before, after);
+    }
+
+    /**
+     * The real KDR reads the kill weights from the settings
+     */
+    private static final class Member extends ClanPlayer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public float getKDR() {
+            return 1;
+        }
+    }
+}
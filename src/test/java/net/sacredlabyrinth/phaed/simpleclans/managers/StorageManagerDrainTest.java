@@ -0,0 +1,91 @@
+package net.sacredlabyrinth.phaed.simpleclans.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class StorageManagerDrainTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int ELEMENTS_PER_PRODUCER = 50000;
+
+    @Test
+    public void drainEmptiesTheSet() {
+        Set<Integer> set = ConcurrentHashMap.newKeySet();
+        set.add(1);
+        set.add(2);
+        set.add(3);
+
+        List<Integer> drained = StorageManager.drain(set);
+
+        assertEquals(3, drained.size());
+        assertTrue(set.isEmpty());
+    }
+
+    @Test(timeout = 30000)
+    public void elementsAddedWhileDrainingAreNeitherLostNorDuplicated() throws InterruptedException {
+        Set<Integer> set = ConcurrentHashMap.newKeySet();
+        Set<Integer> seen = new HashSet<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int offset = p * ELEMENTS_PER_PRODUCER;
+            producers[p] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < ELEMENTS_PER_PRODUCER; i++) {
+                    set.add(offset + i);
+                }
+            });
+            producers[p].start();
+        }
+
+        int[] duplicates = {0};
+        Thread saver = new Thread(() -> {
+            awaitQuietly(start);
+            while (!done.get()) {
+                for (Integer element : StorageManager.drain(set)) {
+                    if (!seen.add(element)) {
+                        duplicates[0]++;
+                    }
+                }
+            }
+        });
+        saver.start();
+
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        done.set(true);
+        saver.join();
+
+        // the last save picks up whatever was added after the saver's last pass
+        for (Integer element : StorageManager.drain(set)) {
+            if (!seen.add(element)) {
+                duplicates[0]++;
+            }
+        }
+
+        assertEquals(0, duplicates[0]);
+        assertEquals(PRODUCERS * ELEMENTS_PER_PRODUCER, seen.size());
+        assertTrue(set.isEmpty());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
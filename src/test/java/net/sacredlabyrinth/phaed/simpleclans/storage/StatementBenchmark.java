@@ -0,0 +1,154 @@
+package net.sacredlabyrinth.phaed.simpleclans.storage;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import net.sacredlabyrinth.phaed.simpleclans.Benchmarks;
+import net.sacredlabyrinth.phaed.simpleclans.ClanPlayer;
+import net.sacredlabyrinth.phaed.simpleclans.Helper;
+import net.sacredlabyrinth.phaed.simpleclans.storage.ClanPlayerDAO.Column;
+
+/**
+ * Compares the player updates of a periodic save, built as concatenated SQL like before, with the
+ * cached prepared statements and bound parameters of {@link ClanPlayerDAO}.
+ * <p>
+ * Without arguments only the work done by the plugin is timed: building the SQL strings against
+ * binding the parameters. With a JDBC URL whose driver is on the classpath, e.g.
+ * {@code jdbc:sqlite::memory:}, the batches are also executed, so the parsing of the statements is
+ * included.
+ */
+public class StatementBenchmark {
+
+    private static final int PLAYERS = 500;
+    // what a kill or a death changes, the usual content of a save
+    private static final int COLUMNS = Column.NEUTRAL_KILLS.getMask() | Column.DEATHS.getMask()
+            | Column.LAST_SEEN.getMask();
+
+    private final List<ClanPlayer> players = new ArrayList<>();
+    private final ClanPlayerDAO dao = new ClanPlayerDAO(null);
+
+    public static void main(String[] args) throws SQLException {
+        StatementBenchmark benchmark = new StatementBenchmark();
+        benchmark.buildOnly();
+        if (args.length > 0) {
+            benchmark.execute(args[0]);
+        }
+    }
+
+    private StatementBenchmark() {
+        for (int i = 0; i < PLAYERS; i++) {
+            ClanPlayer cp = new ClanPlayer();
+            cp.setUniqueId(new UUID(7, i));
+            cp.setName("player" + i);
+            cp.setNeutralKills(i);
+            cp.setDeaths(i / 2);
+            cp.setLastSeen(System.currentTimeMillis());
+            players.add(cp);
+        }
+    }
+
+    private void buildOnly() {
+        PreparedStatement statement = noOpStatement();
+        double legacy = Benchmarks.run("save " + PLAYERS + " players, concatenated SQL", PLAYERS, () -> {
+            int length = 0;
+            for (ClanPlayer cp : players) {
+                length += legacyUpdate(cp).length();
+            }
+            return length;
+        });
+        double prepared = Benchmarks.run("save " + PLAYERS + " players, bound parameters", PLAYERS, () -> {
+            int length = 0;
+            for (ClanPlayer cp : players) {
+                length += ClanPlayerDAO.getUpdateQuery(COLUMNS).length();
+                try {
+                    StatementBinder.bind(statement, dao.getUpdateParams(cp, COLUMNS));
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+            return length;
+        });
+        Benchmarks.compare(legacy, prepared);
+    }
+
+    private void execute(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS `sc_players` (`id` INTEGER PRIMARY KEY, `name` varchar(16),"
+                        + " `uuid` varchar(255), `leader` tinyint(1), `tag` varchar(25), `friendly_fire` tinyint(1),"
+                        + " `neutral_kills` int(11), `rival_kills` int(11), `civilian_kills` int(11), `deaths` int(11),"
+                        + " `last_seen` bigint, `join_date` bigint, `trusted` tinyint(1), `flags` text,"
+                        + " `packed_past_clans` text, `resign_times` text);");
+                statement.execute("CREATE UNIQUE INDEX IF NOT EXISTS `uq_sc_players_uuid` ON `sc_players` (`uuid`);");
+            }
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(ClanPlayerDAO.INSERT)) {
+                for (ClanPlayer cp : players) {
+                    StatementBinder.bind(insert, dao.getInsertParams(cp));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+
+            double legacy = Benchmarks.run("execute " + PLAYERS + " updates, concatenated SQL", PLAYERS, () -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (ClanPlayer cp : players) {
+                        statement.addBatch(legacyUpdate(cp));
+                    }
+                    statement.executeBatch();
+                    connection.commit();
+                    return statement;
+                } catch (SQLException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            // prepared once, like the statements cached by the cores for each connection
+            try (PreparedStatement update = connection.prepareStatement(ClanPlayerDAO.getUpdateQuery(COLUMNS))) {
+                double prepared = Benchmarks.run("execute " + PLAYERS + " updates, bound parameters", PLAYERS, () -> {
+                    try {
+                        for (ClanPlayer cp : players) {
+                            StatementBinder.bind(update, dao.getUpdateParams(cp, COLUMNS));
+                            update.addBatch();
+                        }
+                        update.executeBatch();
+                        connection.commit();
+                        return update;
+                    } catch (SQLException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                });
+                Benchmarks.compare(legacy, prepared);
+            }
+        }
+    }
+
+    /**
+     * The query StorageManager built for every modified player before the DAOs
+     */
+    private static String legacyUpdate(ClanPlayer cp) {
+        return "UPDATE `sc_players` SET resign_times = '" + Helper.escapeQuotes(Helper.resignTimesToJson(cp.getResignTimes()))
+                + "', leader = " + (cp.isLeader() ? 1 : 0) + ", tag = '" + Helper.escapeQuotes(cp.getTag())
+                + "' , friendly_fire = " + (cp.isFriendlyFire() ? 1 : 0) + ", neutral_kills = " + cp.getNeutralKills()
+                + ", rival_kills = " + cp.getRivalKills() + ", civilian_kills = " + cp.getCivilianKills()
+                + ", deaths = " + cp.getDeaths() + ", last_seen = '" + cp.getLastSeen() + "', packed_past_clans = '"
+                + Helper.escapeQuotes(cp.getPackedPastClans()) + "', trusted = " + (cp.isTrusted() ? 1 : 0)
+                + ", flags = '" + Helper.escapeQuotes(cp.getFlags()) + "', name = '" + cp.getName()
+                + "' WHERE `uuid` = '" + cp.getUniqueId().toString() + "';";
+    }
+
+    /**
+     * A statement that ignores the parameters, so only the plugin's side of the binding is timed
+     */
+    private static PreparedStatement noOpStatement() {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> null);
+    }
+}
@@ -0,0 +1,267 @@
+package net.sacredlabyrinth.phaed.simpleclans.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WriteExecutorTest {
+
+    private static final Logger LOG = Logger.getLogger(WriteExecutorTest.class.getName());
+
+    private WriteExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown(5000);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void keepsTheOrderPerKey() throws InterruptedException {
+        executor = new WriteExecutor(LOG, "test-writer", 4, 16);
+        int keys = 20;
+        int writesPerKey = 200;
+        Map<Integer, List<Integer>> written = new ConcurrentHashMap<>();
+        for (int key = 0; key < keys; key++) {
+            written.put(key, Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        // one submitter per key, all of them competing for the same writers
+        List<Thread> submitters = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            int k = key;
+            Thread submitter = new Thread(() -> {
+                for (int i = 0; i < writesPerKey; i++) {
+                    int value = i;
+                    executor.submit("key-" + k, () -> written.get(k).add(value));
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        executor.shutdown(10000);
+
+        for (int key = 0; key < keys; key++) {
+            List<Integer> values = written.get(key);
+            assertEquals(writesPerKey, values.size());
+            for (int i = 0; i < writesPerKey; i++) {
+                assertEquals(i, (int) values.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void shutdownDrainsTheQueues() {
+        executor = new WriteExecutor(LOG, "test-writer", 2, 1000);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger done = new AtomicInteger();
+        // hold the writers so everything below is still queued when shutting down
+        for (int i = 0; i < 2; i++) {
+            executor.submit(i, () -> await(gate));
+        }
+        int writes = 1000;
+        for (int i = 0; i < writes; i++) {
+            executor.submit(i, done::incrementAndGet);
+        }
+        assertTrue(executor.getQueueDepth() > 0);
+
+        gate.countDown();
+        executor.shutdown(10000);
+
+        assertEquals(writes, done.get());
+        assertEquals(0, executor.getQueueDepth());
+        assertTrue(executor.getStats(), executor.getStats().contains("submitted=1002, completed=1002"));
+    }
+
+    @Test(timeout = 30000)
+    public void runsWritesOnTheCallerAfterShutdown() {
+        executor = new WriteExecutor(LOG, "test-writer", 1, 10);
+        executor.shutdown(5000);
+
+        Thread[] ranOn = new Thread[1];
+        executor.submit("key", () -> ranOn[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+
+    @Test(timeout = 30000)
+    public void failedWritesDoNotStopTheWriter() {
+        executor = new WriteExecutor(LOG, "test-writer", 1, 10);
+        AtomicInteger done = new AtomicInteger();
+        executor.submit("key", () -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        executor.submit("key", done::incrementAndGet);
+        executor.shutdown(5000);
+
+        assertEquals(1, done.get());
+    }
+
+    @Test(timeout = 30000)
+    public void waitsWhenTheQueueIsFull() throws InterruptedException {
+        executor = new WriteExecutor(LOG, "test-writer", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger done = new AtomicInteger();
+        executor.submit("key", () -> {
+            started.countDown();
+            await(gate);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // fills the queue
+        executor.submit("key", done::incrementAndGet);
+
+        Thread submitter = new Thread(() -> executor.submit("key", done::incrementAndGet));
+        submitter.start();
+        while (executor.getBlockedCount() == 0) {
+            Thread.sleep(10);
+        }
+        assertTrue(submitter.isAlive());
+
+        gate.countDown();
+        submitter.join();
+        executor.shutdown(5000);
+        assertEquals(1, executor.getBlockedCount());
+        assertEquals(2, done.get());
+    }
+
+    @Test(timeout = 30000)
+    public void submitsRacingTheShutdownAreNotLost() throws InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            executor = new WriteExecutor(LOG, "test-writer", 2, 10);
+            AtomicInteger submitted = new AtomicInteger();
+            AtomicInteger done = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int k = i;
+                Thread submitter = new Thread(() -> {
+                    started.countDown();
+                    for (int j = 0; j < 2000; j++) {
+                        submitted.incrementAndGet();
+                        executor.submit(k, done::incrementAndGet);
+                    }
+                });
+                submitters.add(submitter);
+                submitter.start();
+            }
+            started.await();
+            executor.shutdown(10000);
+            for (Thread submitter : submitters) {
+                submitter.join();
+            }
+            // the writes submitted after the shutdown ran on the submitters
+            assertEquals(submitted.get(), done.get());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void shutdownStopsTheWritersOnTimeout() {
+        executor = new WriteExecutor(LOG, "test-writer", 1, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger interrupted = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        executor.submit("key", () -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException ex) {
+                interrupted.incrementAndGet();
+            }
+        });
+        executor.submit("key", done::incrementAndGet);
+        await(started);
+
+        assertFalse(executor.shutdown(100));
+        // the writer was stopped before returning, so the connections can be closed
+        assertEquals(1, interrupted.get());
+        assertEquals(0, done.get());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test(timeout = 30000)
+    public void submitAfterAllWaitsForEveryKey() {
+        executor = new WriteExecutor(LOG, "test-writer", 4, 1000);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 400; i++) {
+            String write = "before-" + i;
+            executor.submit(i, () -> {
+                Thread.yield();
+                written.add(write);
+            });
+        }
+        executor.submitAfterAll(() -> written.add("barrier"));
+        // it waited for the barrier
+        assertEquals(401, written.size());
+        assertEquals("barrier", written.get(400));
+
+        for (int i = 0; i < 400; i++) {
+            String write = "after-" + i;
+            executor.submit(i, () -> written.add(write));
+        }
+        executor.shutdown(10000);
+        assertEquals(801, written.size());
+        for (int i = 401; i < 801; i++) {
+            assertTrue(written.get(i).startsWith("after-"));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentBarriersDoNotDeadlock() throws InterruptedException {
+        executor = new WriteExecutor(LOG, "test-writer", 3, 5);
+        AtomicInteger barriers = new AtomicInteger();
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int k = i;
+            Thread submitter = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    executor.submit(k * 1000 + j, Thread::yield);
+                    if (j % 10 == 0) {
+                        executor.submitAfterAll(barriers::incrementAndGet);
+                    }
+                }
+            });
+            submitters.add(submitter);
+            submitter.start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+        assertEquals(80, barriers.get());
+    }
+
+    @Test(timeout = 30000)
+    public void submitAfterAllRunsOnTheCallerAfterShutdown() {
+        executor = new WriteExecutor(LOG, "test-writer", 2, 10);
+        executor.shutdown(5000);
+
+        Thread[] ranOn = new Thread[1];
+        executor.submitAfterAll(() -> ranOn[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), ranOn[0]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.sacredlabyrinth.phaed.simpleclans.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bukkit.ChatColor;
+
+import net.sacredlabyrinth.phaed.simpleclans.Benchmarks;
+
+/**
+ * Compares the formatting of a clan chat message with the default format: translating the colors and
+ * chaining String#replace on every message like before, against a {@link ChatTemplate} compiled once.
+ * <p>
+ * The values of the placeholders are fixed strings, so only the formatting is timed.
+ */
+public class ChatTemplateBenchmark {
+
+    private static final String FORMAT = "&b[%clan%&b] &4<%nick-color%%player%&4> %rank%: &b%message%";
+    private static final String RANK_FORMAT = "&f[%rank%&f]";
+    private static final int MESSAGES = 1000;
+
+    private static final String CLAN = ChatColor.translateAlternateColorCodes('&', "&aSC");
+    private static final String NICK_COLOR = ChatColor.translateAlternateColorCodes('&', "&4");
+    private static final String PLAYER = "Notch";
+    private static final String RANK = "Officer";
+
+    public static void main(String[] args) {
+        String[] messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = "hello clan, meet at the base in " + i + " minutes";
+        }
+        // as added by a ChatEvent listener
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("world", "world_nether");
+        placeholders.put("kdr", "1.5");
+
+        double before = Benchmarks.run("clan chat, String#replace", MESSAGES, () -> {
+            int length = 0;
+            for (String msg : messages) {
+                length += legacyFormat(msg, placeholders).length();
+            }
+            return length;
+        });
+
+        ChatTemplate format = ChatTemplate.compile(FORMAT);
+        ChatTemplate rankFormat = ChatTemplate.compile(RANK_FORMAT);
+        double after = Benchmarks.run("clan chat, compiled template", MESSAGES, () -> {
+            int length = 0;
+            for (String msg : messages) {
+                length += format(format, rankFormat, msg, placeholders).length();
+            }
+            return length;
+        });
+        Benchmarks.compare(before, after);
+    }
+
+    /**
+     * Helper.formatClanChat before the templates
+     */
+    private static String legacyFormat(String msg, Map<String, String> placeholders) {
+        String rankFormat = ChatColor.translateAlternateColorCodes('&', RANK_FORMAT).replace("%rank%", RANK);
+        String message = ChatColor.translateAlternateColorCodes('&', FORMAT)
+                .replace("%clan%", CLAN)
+                .replace("%nick-color%", NICK_COLOR)
+                .replace("%player%", PLAYER)
+                .replace("%rank%", rankFormat)
+                .replace("%message%", msg);
+        for (Entry<String, String> e : placeholders.entrySet()) {
+            message = message.replace("%" + e.getKey() + "%", e.getValue());
+        }
+        return message;
+    }
+
+    /**
+     * Helper.formatClanChat now
+     */
+    private static String format(ChatTemplate format, ChatTemplate rankFormat, String msg,
+                                 Map<String, String> placeholders) {
+        String rankText = rankFormat.render(name -> name.equals("rank") ? RANK : null);
+        return format.render(name -> {
+            switch (name) {
+                case "clan":
+                    return CLAN;
+                case "nick-color":
+                    return NICK_COLOR;
+                case "player":
+                    return PLAYER;
+                case "rank":
+                    return rankText;
+                case "message":
+                    return msg;
+                default:
+                    return placeholders.get(name);
+            }
+        });
+    }
+}
@@ -0,0 +1,88 @@
+package net.sacredlabyrinth.phaed.simpleclans.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ChatTemplateTest {
+
+    private static String render(String format, String... values) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < values.length; i += 2) {
+            map.put(values[i], values[i + 1]);
+        }
+        return ChatTemplate.compile(format).render(map::get);
+    }
+
+    @Test
+    public void replacesPlaceholders() {
+        assertEquals("[TAG] Steve: hi", render("[%clan%] %player%: %message%", "clan", "TAG", "player", "Steve", "message", "hi"));
+    }
+
+    @Test
+    public void loneSignsAreLiteral() {
+        assertEquals("100% off", render("100% off"));
+        assertEquals("50%", render("50%"));
+        assertEquals("%", render("%"));
+        assertEquals("100% off for Steve", render("100% off for %player%", "player", "Steve"));
+    }
+
+    @Test
+    public void emptyNamesAreLiteral() {
+        assertEquals("%%", render("%%"));
+        assertEquals("100%Steve", render("100%%player%", "player", "Steve"));
+    }
+
+    @Test
+    public void namesCanNotContainWhitespace() {
+        assertEquals("% player %", render("% player %", "player", "Steve"));
+        assertEquals("5% to 10% Steve", render("5% to 10% %player%", "player", "Steve"));
+    }
+
+    @Test
+    public void adjacentPlaceholders() {
+        assertEquals("AB", render("%a%%b%", "a", "A", "b", "B"));
+        assertEquals("ABA", render("%a%%b%%a%", "a", "A", "b", "B"));
+    }
+
+    @Test
+    public void unknownPlaceholdersAreKept() {
+        assertEquals("Steve %unknown%", render("%player% %unknown%", "player", "Steve"));
+    }
+
+    @Test
+    public void valuesAreNotReplacedAgain() {
+        assertEquals("%player% said hi", render("%message% said hi", "message", "%player%", "player", "Steve"));
+    }
+
+    @Test
+    public void emptyValues() {
+        assertEquals("[] : hi", render("[%clan%] %player%: %message%", "clan", "", "player", "", "message", "hi"));
+    }
+
+    @Test
+    public void translatesColors() {
+        assertEquals("\u00A7cSteve\u00A7f", render("&c%player%&f", "player", "Steve"));
+    }
+
+    @Test
+    public void colorsInValuesAreNotTranslated() {
+        assertEquals("&cSteve", render("%player%", "player", "&cSteve"));
+    }
+
+    @Test
+    public void nullFormatIsEmpty() {
+        assertEquals("", render(null));
+        assertEquals("", render(""));
+    }
+
+    @Test
+    public void templatesCanBeRenderedManyTimes() {
+        ChatTemplate template = ChatTemplate.compile("%player%: %message%");
+        assertEquals("a: 1", template.render(name -> name.equals("player") ? "a" : "1"));
+        assertEquals("b: 2", template.render(name -> name.equals("player") ? "b" : "2"));
+    }
+}